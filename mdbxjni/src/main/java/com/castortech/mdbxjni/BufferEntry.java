@@ -0,0 +1,54 @@
+package com.castortech.mdbxjni;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Key and value exposed as read-only direct buffers over the memory returned by MDBX.
+ * <p>
+ * The buffers are only valid while the transaction that produced them is active (and, for a write
+ * transaction, until the next update). Copy the content if it must outlive the transaction.
+ * </p>
+ *
+ * @author Alain Picard
+ */
+public class BufferEntry implements Map.Entry<ByteBuffer, ByteBuffer> {
+	private final ByteBuffer key;
+	private final ByteBuffer value;
+
+	public BufferEntry(ByteBuffer key, ByteBuffer value) {
+		this.key = key;
+		this.value = value;
+	}
+
+	@Override
+	public ByteBuffer getKey() {
+		return key;
+	}
+
+	@Override
+	public ByteBuffer getValue() {
+		return value;
+	}
+
+	@Override
+	public ByteBuffer setValue(ByteBuffer value) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * @return a heap copy of this entry that remains valid after the transaction ends
+	 */
+	public Entry toEntry() {
+		return new Entry(toBytes(key), toBytes(value));
+	}
+
+	/*package*/ static byte[] toBytes(ByteBuffer buffer) {
+		if (buffer == null) {
+			return null;
+		}
+		byte[] rc = new byte[buffer.remaining()];
+		buffer.duplicate().get(rc);
+		return rc;
+	}
+}
@@ -0,0 +1,43 @@
+package com.castortech.mdbxjni;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Key creator working on views of the primary entry instead of copies of it.
+ * <p>
+ * The primary key and value are handed as read-only direct views, over the memory map for the old value of an
+ * entry being overwritten or deleted and over the native copy of the new one, and the secondary key is written
+ * into a native output buffer, so deriving the key of each secondary of a write copies nothing but the
+ * secondary key itself. The views and the output buffer are only valid for the duration of the call.
+ * </p>
+ *
+ * @author Alain Picard
+ */
+public interface BufferSecondaryKeyCreator extends SecondaryKeyCreator {
+	/**
+	 * Write the secondary key of a primary entry.
+	 *
+	 * @param secondary the secondary database the key is for
+	 * @param key read-only view of the primary key
+	 * @param data read-only view of the primary value
+	 * @param out buffer to write the secondary key into, from position 0 up to its position on return, with
+	 *          room for the maximum key size of the secondary, that of a {@link Constants#DUPSORT} database
+	 *          for the usual secondaries with duplicates
+	 * @return false if the entry has no key in this secondary, in which case out is ignored
+	 */
+	boolean createSecondaryKey(SecondaryDatabase secondary, ByteBuffer key, ByteBuffer data, ByteBuffer out);
+
+	/**
+	 * Adapts the buffer contract for callers working with arrays.
+	 */
+	@Override
+	default byte[] createSecondaryKey(SecondaryDatabase secondary, byte[] key, byte[] data) {
+		ByteBuffer out = ByteBuffer.allocate(secondary.getMaxKeySize());
+		if (!createSecondaryKey(secondary, ByteBuffer.wrap(key).asReadOnlyBuffer(),
+				ByteBuffer.wrap(data).asReadOnlyBuffer(), out)) {
+			return null;
+		}
+		return Arrays.copyOf(out.array(), out.position());
+	}
+}
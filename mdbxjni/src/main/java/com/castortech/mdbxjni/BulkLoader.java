@@ -0,0 +1,456 @@
+package com.castortech.mdbxjni;
+
+import static com.castortech.mdbxjni.JNI.*;
+import static com.castortech.mdbxjni.Util.checkArgNotNull;
+import static com.castortech.mdbxjni.Util.checkErrorCode;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fast loader of large volumes of key/value pairs into a database.
+ * <p>
+ * Pairs are accumulated in an off-heap buffer, then sorted in the database order and written with
+ * {@link Constants#APPEND} (and {@link Constants#APPENDDUP} for {@link Constants#DUPSORT} databases) through
+ * a single cursor, committing every {@link BulkLoaderConfig#getCommitSize()} pairs. Appending skips the
+ * B-tree search and fills pages completely, which is much faster than individual puts. Pairs that cannot be
+ * appended, because the database already holds greater keys, fall back to a regular put so the result is the
+ * same as putting the pairs one by one, with the last pair added winning for a given key.
+ * </p>
+ * <p>
+ * The database order is that of the comparators of the {@link BulkLoaderConfig} if set, otherwise that of
+ * the Java buffer comparators the database was opened with. Databases ordered by other comparators given on
+ * open, or by {@link Constants#REVERSEKEY}, {@link Constants#INTEGERKEY} and their duplicate counterparts,
+ * are sorted through MDBX itself, and the others in unsigned lexicographic order.
+ * </p>
+ * <p>
+ * Secondary databases are maintained in a second pass: the secondary keys of the appended pairs are
+ * themselves bulk loaded once the primary pairs are committed. A loader manages its own write transactions,
+ * so it must be used from a single thread that doesn't already have a write transaction opened, and it must
+ * be closed to write the remaining pairs.
+ * </p>
+ *
+ * @author Alain Picard
+ */
+public class BulkLoader implements AutoCloseable {
+	private static final Logger log = LoggerFactory.getLogger(BulkLoader.class);
+	private static final int INITIAL_RECORDS = 1024;
+
+	private final Env env;
+	private final Database db;
+	private final BulkLoaderConfig config;
+	private final boolean dupSort;
+	private final Comparator<ByteBuffer> keyComparator;
+	private final Comparator<ByteBuffer> dataComparator;
+	private final boolean nativeOrder;
+	private final Map<SecondaryDatabase, BulkLoader> secondaryLoaders = new LinkedHashMap<>();
+
+	private NativeBuffer buffer;
+	private long used;
+	private int count;
+	private long[] offsets = new long[INITIAL_RECORDS];
+	private int[] keyLengths = new int[INITIAL_RECORDS];
+	private int[] dataLengths = new int[INITIAL_RECORDS];
+
+	private final ByteBuffer view1 = DirectBuffers.wrap(0, 0);
+	private final ByteBuffer view2 = DirectBuffers.wrap(0, 0);
+	private final ByteBuffer writeView = DirectBuffers.wrapWritable(0, 0);
+	private final Value keyValue = new Value();
+	private final Value dataValue = new Value();
+	private final Value compareValue1 = new Value();
+	private final Value compareValue2 = new Value();
+	private Transaction sortTx;
+
+	private long loaded;
+	private long appended;
+
+	public BulkLoader(Database db) {
+		this(db, new BulkLoaderConfig());
+	}
+
+	public BulkLoader(Database db, BulkLoaderConfig config) {
+		checkArgNotNull(db, "db"); //$NON-NLS-1$
+		checkArgNotNull(config, "config"); //$NON-NLS-1$
+		this.env = db.getEnv();
+		this.db = db;
+		this.config = config;
+		int flags = db.getFlags();
+		this.dupSort = (flags & MDBX_DUPSORT) != 0;
+		this.keyComparator = order(config.getKeyComparator(), db.getKeyBufferComparator(),
+				db.hasCustomKeyOrder() || (flags & (MDBX_REVERSEKEY | MDBX_INTEGERKEY)) != 0);
+		this.dataComparator = order(config.getDataComparator(), db.getDataBufferComparator(),
+				db.hasCustomDataOrder() || (flags & (MDBX_REVERSEDUP | MDBX_INTEGERDUP)) != 0);
+		this.nativeOrder = keyComparator == null || (dupSort && dataComparator == null);
+		this.buffer = NativeBuffer.create(config.getBufferSize());
+	}
+
+	/**
+	 * Add a pair to load. The pair is copied off-heap and written when the buffer is full, on
+	 * {@link #flush()} or on {@link #close()}.
+	 *
+	 * @param key key to store
+	 * @param value value to store
+	 */
+	public void add(byte[] key, byte[] value) {
+		checkArgNotNull(key, "key"); //$NON-NLS-1$
+		checkArgNotNull(value, "value"); //$NON-NLS-1$
+		checkOpen();
+
+		long address = reserve(key.length, value.length);
+		DirectBuffers.put(address, key);
+		DirectBuffers.put(address + key.length, value);
+	}
+
+	/**
+	 * Add a pair held off-heap, copying it.
+	 */
+	/*package*/ void add(Value key, Value value) {
+		int keyLength = (int)key.iov_len;
+		int valueLength = (int)value.iov_len;
+		long address = reserve(keyLength, valueLength);
+		DirectBuffers.retarget(writeView, address, (long)keyLength + valueLength)
+				.put(DirectBuffers.retarget(view1, key.iov_base, keyLength))
+				.put(DirectBuffers.retarget(view2, value.iov_base, valueLength));
+	}
+
+	/**
+	 * Make room for a pair, writing the pending pairs first if the buffer is full.
+	 *
+	 * @return address to copy the key to, followed by the value
+	 */
+	private long reserve(int keyLength, int valueLength) {
+		long size = (long)keyLength + valueLength;
+		if (used + size > buffer.capacity()) {
+			writePending();
+			if (size > buffer.capacity()) {
+				buffer.delete();
+				buffer = NativeBuffer.create(size);
+			}
+		}
+		if (count == offsets.length) {
+			int capacity = count * 2;
+			offsets = Arrays.copyOf(offsets, capacity);
+			keyLengths = Arrays.copyOf(keyLengths, capacity);
+			dataLengths = Arrays.copyOf(dataLengths, capacity);
+		}
+
+		long address = buffer.pointer() + used;
+		offsets[count] = used;
+		keyLengths[count] = keyLength;
+		dataLengths[count] = valueLength;
+		count++;
+		used += size;
+		return address;
+	}
+
+	/**
+	 * Add all the pairs.
+	 *
+	 * @param entries pairs to load
+	 * @see #add(byte[], byte[])
+	 */
+	public void addAll(Iterable<? extends Map.Entry<byte[], byte[]>> entries) {
+		checkArgNotNull(entries, "entries"); //$NON-NLS-1$
+		for (Map.Entry<byte[], byte[]> entry : entries) {
+			add(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Write all the pairs added so far, along with their secondary keys.
+	 */
+	public void flush() {
+		checkOpen();
+		writePending();
+		for (BulkLoader loader : secondaryLoaders.values()) {
+			loader.flush();
+		}
+	}
+
+	/**
+	 * @return number of pairs written so far
+	 */
+	public long getCount() {
+		return loaded;
+	}
+
+	/**
+	 * @return number of pairs written so far through the append fast path
+	 */
+	public long getAppendedCount() {
+		return appended;
+	}
+
+	/**
+	 * Write the remaining pairs and release the off-heap buffers.
+	 */
+	@Override
+	public void close() {
+		if (buffer == null) {
+			return;
+		}
+
+		try {
+			flush();
+		}
+		finally {
+			for (BulkLoader loader : secondaryLoaders.values()) {
+				loader.release();
+			}
+			release();
+		}
+	}
+
+	private void release() {
+		if (buffer != null) {
+			buffer.delete();
+			buffer = null;
+		}
+	}
+
+	private void checkOpen() {
+		if (buffer == null) {
+			throw new IllegalStateException("Loader is closed"); //$NON-NLS-1$
+		}
+	}
+
+	private void writePending() {
+		if (count == 0) {
+			return;
+		}
+
+		int[] order;
+		int size;
+		sortTx = nativeOrder ? env.createReadTransaction() : null;
+		try {
+			order = IndexSort.sort(count, this::compareRecords);
+			size = dupSort ? count : dedupe(order);
+		}
+		finally {
+			if (sortTx != null) {
+				sortTx.abort();  // a thread can't hold a read transaction while writing
+				sortTx = null;
+			}
+		}
+
+		// a key written by a previous pass may be replaced by a regular put below, which deletes its secondary
+		// keys, so they must have been written by then
+		for (BulkLoader loader : secondaryLoaders.values()) {
+			loader.writePending();
+		}
+
+		if (log.isTraceEnabled())
+			log.trace("Bulk loading {} pairs into {}", size, db); //$NON-NLS-1$
+
+		int appendFlags = dupSort ? MDBX_APPEND | MDBX_APPENDDUP : MDBX_APPEND;
+		List<SecondaryDatabase> secondaries = db.getSecondaries();
+		for (int from = 0; from < size; from += config.getCommitSize()) {
+			int to = Math.min(size, from + config.getCommitSize());
+			BitSet appendedRecords = new BitSet(to - from);
+
+			Transaction tx = env.createWriteTransaction();
+			boolean ok = false;
+			try {
+				long[] cursor = new long[1];
+				checkErrorCode(env, tx, mdbx_cursor_open(tx.pointer(), db.pointer(), cursor));
+				try {
+					for (int i = from; i < to; i++) {
+						if (write(tx, cursor[0], order[i], appendFlags)) {
+							appendedRecords.set(i - from);
+						}
+					}
+				}
+				finally {
+					mdbx_cursor_close(cursor[0]);
+				}
+				ok = true;
+			}
+			finally {
+				if (ok) {
+					tx.commit();
+				}
+				else {
+					tx.abort();
+				}
+			}
+
+			loaded += to - from;
+			appended += appendedRecords.cardinality();
+			if (secondaries != null) {
+				addSecondaryKeys(secondaries, order, from, appendedRecords);
+			}
+		}
+
+		count = 0;
+		used = 0;
+	}
+
+	/**
+	 * @return true if the pair was appended, false if it went through a regular put
+	 */
+	private boolean write(Transaction tx, long cursor, int record, int appendFlags) {
+		int rc = mdbx_cursor_put(cursor, keySlice(keyValue, record), dataSlice(dataValue, record), appendFlags);
+		if (rc == MDBX_SUCCESS) {
+			return true;
+		}
+		if (rc != MDBX_EKEYMISMATCH) {
+			checkErrorCode(env, tx, rc);
+		}
+
+		byte[] key = key(record);
+		byte[] value = data(record);
+		if (db instanceof SecondaryDatabase) {
+			((SecondaryDatabase)db).internalPut(tx, key, value);
+		}
+		else {
+			db.put(tx, key, value, 0);
+		}
+		return false;
+	}
+
+	/**
+	 * Regular puts maintain the secondaries on their own, so only the appended pairs are handled here.
+	 */
+	private void addSecondaryKeys(List<SecondaryDatabase> secondaries, int[] order, int from,
+			BitSet appendedRecords) {
+		NativeArena arena = NativeArena.get();
+		SecondaryEntries secEntries = new SecondaryEntries();
+		Value[] secEntry = new Value[2];
+		for (int i = appendedRecords.nextSetBit(0); i >= 0; i = appendedRecords.nextSetBit(i + 1)) {
+			int record = order[from + i];
+			secEntries.on(keySlice(keyValue, record), dataSlice(dataValue, record));
+			for (SecondaryDatabase secDb : secondaries) {
+				long mark = arena.mark();
+				try {
+					if (secEntries.derive(secDb, secEntry, 0)) {
+						secondaryLoader(secDb).add(secEntry[0], secEntry[1]);
+					}
+				}
+				finally {
+					arena.release(mark);
+				}
+			}
+		}
+	}
+
+	private BulkLoader secondaryLoader(SecondaryDatabase secDb) {
+		return secondaryLoaders.computeIfAbsent(secDb, sec -> {
+			BulkLoaderConfig secConfig = new BulkLoaderConfig();
+			secConfig.setBufferSize(config.getBufferSize());
+			secConfig.setCommitSize(config.getCommitSize());
+			return new BulkLoader(sec, secConfig);
+		});
+	}
+
+	/**
+	 * Keep only the last of the pairs sharing the same key.
+	 *
+	 * @return number of pairs left at the head of order
+	 */
+	private int dedupe(int[] order) {
+		int size = 0;
+		for (int i = 0; i < count; i++) {
+			if (i + 1 < count && compareKeys(order[i], order[i + 1]) == 0) {
+				continue;
+			}
+			order[size++] = order[i];
+		}
+		return size;
+	}
+
+	/**
+	 * Order of the pairs in the database, then the order they were added in, so that the last pair added
+	 * comes last among equals.
+	 */
+	private int compareRecords(int r1, int r2) {
+		int rc = compareKeys(r1, r2);
+		if (rc == 0 && dupSort) {
+			rc = compareData(r1, r2);
+		}
+		return rc != 0 ? rc : Integer.compare(r1, r2);
+	}
+
+	private int compareKeys(int r1, int r2) {
+		if (keyComparator != null) {
+			return keyComparator.compare(keyView(view1, r1), keyView(view2, r2));
+		}
+		return mdbx_cmp(sortTx.pointer(), db.pointer(), keySlice(compareValue1, r1), keySlice(compareValue2, r2));
+	}
+
+	private int compareData(int r1, int r2) {
+		if (dataComparator != null) {
+			return dataComparator.compare(dataView(view1, r1), dataView(view2, r2));
+		}
+		return mdbx_dcmp(sortTx.pointer(), db.pointer(), dataSlice(compareValue1, r1),
+				dataSlice(compareValue2, r2));
+	}
+
+	private Value keySlice(Value slice, int record) {
+		slice.iov_base = buffer.pointer() + offsets[record];
+		slice.iov_len = keyLengths[record];
+		return slice;
+	}
+
+	private Value dataSlice(Value slice, int record) {
+		slice.iov_base = buffer.pointer() + offsets[record] + keyLengths[record];
+		slice.iov_len = dataLengths[record];
+		return slice;
+	}
+
+	private ByteBuffer keyView(ByteBuffer view, int record) {
+		return DirectBuffers.retarget(view, buffer.pointer() + offsets[record], keyLengths[record]);
+	}
+
+	private ByteBuffer dataView(ByteBuffer view, int record) {
+		return DirectBuffers.retarget(view, buffer.pointer() + offsets[record] + keyLengths[record],
+				dataLengths[record]);
+	}
+
+	private byte[] key(int record) {
+		byte[] rc = new byte[keyLengths[record]];
+		keyView(view1, record).get(rc);
+		return rc;
+	}
+
+	private byte[] data(int record) {
+		byte[] rc = new byte[dataLengths[record]];
+		dataView(view1, record).get(rc);
+		return rc;
+	}
+
+	/**
+	 * @return the comparator to sort with, null if the database order is only known to MDBX
+	 */
+	private static Comparator<ByteBuffer> order(Comparator<ByteBuffer> configured,
+			Comparator<ByteBuffer> registered, boolean custom) {
+		if (configured != null) {
+			return configured;
+		}
+		if (registered != null) {
+			return registered;
+		}
+		return custom ? null : BulkLoader::compareUnsigned;
+	}
+
+	/**
+	 * Unsigned lexicographic order, shorter first on a common prefix, i.e. the default MDBX order.
+	 */
+	private static int compareUnsigned(ByteBuffer b1, ByteBuffer b2) {
+		int i = b1.mismatch(b2);
+		if (i < 0) {
+			return 0;
+		}
+		if (i < b1.remaining() && i < b2.remaining()) {
+			return Integer.compare(b1.get(b1.position() + i) & 0xFF, b2.get(b2.position() + i) & 0xFF);
+		}
+		return b1.remaining() - b2.remaining();
+	}
+}
@@ -0,0 +1,79 @@
+package com.castortech.mdbxjni;
+
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+
+/**
+ * Settings of a {@link BulkLoader}.
+ *
+ * @author Alain Picard
+ */
+public class BulkLoaderConfig {
+	public static final long DEFAULT_BUFFER_SIZE = 64L * 1024 * 1024;
+	public static final int DEFAULT_COMMIT_SIZE = 100_000;
+
+	/** Size of the off-heap buffer accumulating the pairs before they are sorted and written */
+	private long bufferSize = DEFAULT_BUFFER_SIZE;
+
+	/** Number of pairs written per transaction */
+	private int commitSize = DEFAULT_COMMIT_SIZE;
+
+	/** Order of the keys in the database, taken from the database if null */
+	private Comparator<ByteBuffer> keyComparator;
+
+	/** Order of the duplicates in the database, taken from the database if null */
+	private Comparator<ByteBuffer> dataComparator;
+
+	public BulkLoaderConfig() {
+	}
+
+	public long getBufferSize() {
+		return bufferSize;
+	}
+
+	public void setBufferSize(long bufferSize) {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("bufferSize must be positive"); //$NON-NLS-1$
+		}
+		this.bufferSize = bufferSize;
+	}
+
+	public int getCommitSize() {
+		return commitSize;
+	}
+
+	public void setCommitSize(int commitSize) {
+		if (commitSize <= 0) {
+			throw new IllegalArgumentException("commitSize must be positive"); //$NON-NLS-1$
+		}
+		this.commitSize = commitSize;
+	}
+
+	public Comparator<ByteBuffer> getKeyComparator() {
+		return keyComparator;
+	}
+
+	/**
+	 * Set the order in which keys are sorted before being appended. It must match the order of the database,
+	 * otherwise the pairs are still loaded correctly but through regular puts, losing the benefit of the
+	 * append fast path. Only needed to sort faster in Java than through MDBX for a database opened with a
+	 * native comparator or a byte array comparator, the order of the database being used otherwise.
+	 */
+	public void setKeyComparator(Comparator<ByteBuffer> keyComparator) {
+		this.keyComparator = keyComparator;
+	}
+
+	public Comparator<ByteBuffer> getDataComparator() {
+		return dataComparator;
+	}
+
+	/**
+	 * Set the order in which duplicates are sorted before being appended, only used for
+	 * {@link Constants#DUPSORT} databases.
+	 *
+	 * @see #setKeyComparator(Comparator)
+	 */
+	public void setDataComparator(Comparator<ByteBuffer> dataComparator) {
+		this.dataComparator = dataComparator;
+	}
+}
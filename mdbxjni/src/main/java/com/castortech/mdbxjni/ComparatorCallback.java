@@ -0,0 +1,85 @@
+package com.castortech.mdbxjni;
+
+import static com.castortech.mdbxjni.JNI.map_val;
+
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+
+import org.fusesource.hawtjni.runtime.Callback;
+
+/**
+ * Trampoline between MDBX and a Java comparator. Every database opened with a Java comparator owns its own
+ * instance, so concurrent comparisons on different databases share no mutable state and dispatch straight
+ * to the right comparator without any lookup or locking.
+ *
+ * @author Alain Picard
+ */
+/*package*/ final class ComparatorCallback {
+	/** Flyweights handed to the buffer comparators, comparisons never nest on a given thread */
+	private static final ThreadLocal<ByteBuffer[]> COMPARE_VIEWS = ThreadLocal
+			.withInitial(() -> new ByteBuffer[] { DirectBuffers.wrap(0, 0), DirectBuffers.wrap(0, 0) });
+
+	private final Comparator<byte[]> comparator;
+	private final Comparator<ByteBuffer> bufferComparator;
+	private final Callback callback;
+
+	private ComparatorCallback(Comparator<byte[]> comparator, Comparator<ByteBuffer> bufferComparator) {
+		this.comparator = comparator;
+		this.bufferComparator = bufferComparator;
+		this.callback = new Callback(this, comparator != null ? "compare" : "compareBuffers", 2); //$NON-NLS-1$ //$NON-NLS-2$
+		if (callback.getAddress() == 0) {
+			throw new MDBXException("No more comparator callback available", JNI.MDBX_ENOMEM); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * @return a trampoline copying the values into byte arrays for the comparator
+	 */
+	static ComparatorCallback create(Comparator<byte[]> comparator) {
+		return new ComparatorCallback(comparator, null);
+	}
+
+	/**
+	 * @return a trampoline handing views over the values in place to the comparator
+	 */
+	static ComparatorCallback createForBuffers(Comparator<ByteBuffer> bufferComparator) {
+		return new ComparatorCallback(null, bufferComparator);
+	}
+
+	/**
+	 * @return the comparator of views over the values, null if the values are copied into byte arrays
+	 */
+	Comparator<ByteBuffer> getBufferComparator() {
+		return bufferComparator;
+	}
+
+	/**
+	 * @return address of the native function to hand over to MDBX
+	 */
+	long getAddress() {
+		return callback.getAddress();
+	}
+
+	/**
+	 * Release the native callback. Must only be called once the database using it is closed.
+	 */
+	void dispose() {
+		callback.dispose();
+	}
+
+	public long compare(long o1, long o2) {  //NOUCD: Called via Callback constructor
+		Value v1 = new Value();
+		map_val(o1, v1);
+
+		Value v2 = new Value();
+		map_val(o2, v2);
+
+		return comparator.compare(v1.toByteArray(), v2.toByteArray());
+	}
+
+	public long compareBuffers(long o1, long o2) {  //NOUCD: Called via Callback constructor
+		ByteBuffer[] views = COMPARE_VIEWS.get();
+		return bufferComparator.compare(DirectBuffers.retargetVal(views[0], o1),
+				DirectBuffers.retargetVal(views[1], o2));
+	}
+}
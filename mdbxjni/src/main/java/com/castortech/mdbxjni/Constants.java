@@ -74,6 +74,22 @@ public class Constants {
 	/** See {@link JNI#MDBX_MULTIPLE}. */
 	public static final int MULTIPLE    = MDBX_MULTIPLE    ;
 
+	//====================================================//
+	// Warmup Flags
+	//====================================================//
+	/** See {@link JNI#MDBX_warmup_default}. */
+	public static final int WARMUP_DEFAULT    = MDBX_warmup_default    ;
+	/** See {@link JNI#MDBX_warmup_force}. */
+	public static final int WARMUP_FORCE      = MDBX_warmup_force      ;
+	/** See {@link JNI#MDBX_warmup_oomsafe}. */
+	public static final int WARMUP_OOMSAFE    = MDBX_warmup_oomsafe    ;
+	/** See {@link JNI#MDBX_warmup_lock}. */
+	public static final int WARMUP_LOCK       = MDBX_warmup_lock       ;
+	/** See {@link JNI#MDBX_warmup_touchlimit}. */
+	public static final int WARMUP_TOUCHLIMIT = MDBX_warmup_touchlimit ;
+	/** See {@link JNI#MDBX_warmup_release}. */
+	public static final int WARMUP_RELEASE    = MDBX_warmup_release    ;
+
 	// ====================================================//
 	// Cursor Operations
 	// ====================================================//
@@ -22,8 +22,9 @@ import static com.castortech.mdbxjni.JNI.*;
 import static com.castortech.mdbxjni.Util.checkArgNotNull;
 import static com.castortech.mdbxjni.Util.checkErrorCode;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.function.Predicate;
 
 import org.slf4j.Logger;
@@ -154,6 +155,23 @@ public class Cursor extends NativeObject implements AutoCloseable {
 		checkErrorCode(env, tx, mdbx_cursor_bind(tx.pointer(), pointer(), db.pointer()));
 	}
 
+	/**
+	 * <p>
+	 * Unbind cursor from its transaction.
+	 * </p>
+	 *
+	 * <p>
+	 * The cursor is left ready to be bound again with {@link #bind(Database, Transaction)}, possibly from another
+	 * thread, and is no longer tied to the lifetime of the transaction. It must still be closed eventually.
+	 * </p>
+	 */
+	public void unbind() {
+		if (log.isTraceEnabled())
+			log.trace("Calling cursor unbind for {}", this); //$NON-NLS-1$
+		checkErrorCode(env, mdbx_cursor_unbind(pointer()));
+		this.tx = null;
+	}
+
 	/**
 	 * <p>
 	 * Retrieve by cursor.
@@ -189,9 +207,10 @@ public class Cursor extends NativeObject implements AutoCloseable {
 	 */
 	public Entry get(CursorOp op, byte[] key) {
 		checkArgNotNull(op, "op"); //$NON-NLS-1$
-		NativeBuffer keyBuffer = NativeBuffer.create(key);
+		NativeArena arena = NativeArena.get();
+		long mark = arena.mark();
 		try {
-			Value keyValue = new Value(keyBuffer);
+			Value keyValue = key != null ? arena.slice(key) : new Value();
 			Value value = new Value();
 			if (log.isTraceEnabled())
 				log.trace("Calling cursor get op/key for {}", this); //$NON-NLS-1$
@@ -203,11 +222,161 @@ public class Cursor extends NativeObject implements AutoCloseable {
 			return new Entry(keyValue.toByteArray(), value.toByteArray());
 		}
 		finally {
-			if (keyBuffer != null)
-				keyBuffer.delete();
+			arena.release(mark);
 		}
 	}
 
+	/**
+	 * <p>
+	 * Retrieve by cursor without copying the data.
+	 * </p>
+	 * Same as {@link #get(CursorOp)} but the key and data are returned as read-only direct buffers pointing
+	 * into the memory map. The buffers are valid for the life of the transaction; within a write transaction,
+	 * only until the next update. They must not be accessed after the transaction is committed, aborted or
+	 * reset.
+	 *
+	 * @param op
+	 *          A cursor operation #MDB_cursor_op
+	 * @return Entry representing the key value pair or null if not found
+	 *
+	 * @see EnvConfig#setDebugBufferViews(boolean)
+	 */
+	public BufferEntry getBuffer(CursorOp op) {
+		checkArgNotNull(op, "op"); //$NON-NLS-1$
+
+		Value key = new Value();
+		Value value = new Value();
+		if (log.isTraceEnabled())
+			log.trace("Calling cursor get buffer op for {}", this); //$NON-NLS-1$
+		int rc = mdbx_cursor_get(pointer(), key, value, op.getValue());
+		if (rc == MDBX_NOTFOUND) {
+			return null;
+		}
+		checkErrorCode(env, tx, rc);
+		return new BufferEntry(tx.track(key.toByteBuffer()), tx.track(value.toByteBuffer()));
+	}
+
+	/**
+	 * Get cursor entry without copying the data
+	 * @param op operation
+	 * @param key seed key
+	 * @return entry or null if not found
+	 *
+	 * @see #getBuffer(CursorOp)
+	 */
+	public BufferEntry getBuffer(CursorOp op, byte[] key) {
+		checkArgNotNull(op, "op"); //$NON-NLS-1$
+		NativeArena arena = NativeArena.get();
+		long mark = arena.mark();
+		try {
+			Value keyValue = key != null ? arena.slice(key) : new Value();
+			long keyAddress = keyValue.iov_base;
+			Value value = new Value();
+			if (log.isTraceEnabled())
+				log.trace("Calling cursor get buffer op/key for {}", this); //$NON-NLS-1$
+			int rc = mdbx_cursor_get(pointer(), keyValue, value, op.getValue());
+			if (rc == MDBX_NOTFOUND) {
+				return null;
+			}
+			checkErrorCode(env, tx, rc);
+
+			ByteBuffer keyView;
+			if (key != null && keyValue.iov_base == keyAddress) {
+				//key left untouched by the operation, our temporary copy is about to be released
+				keyView = ByteBuffer.wrap(key).asReadOnlyBuffer();
+			}
+			else {
+				keyView = tx.track(keyValue.toByteBuffer());
+			}
+			return new BufferEntry(keyView, tx.track(value.toByteBuffer()));
+		}
+		finally {
+			arena.release(mark);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Retrieve multiple key/value pairs by cursor in a single call.
+	 * </p>
+	 * Fills the batch with up to {@link CursorBatch#capacity()} pairs, starting at the first entry for
+	 * {@link CursorOp#FIRST} or after the current cursor position for {@link CursorOp#NEXT}. Only databases
+	 * without {@link Constants#DUPSORT} are supported.
+	 *
+	 * @param batch
+	 *          batch to fill
+	 * @param op
+	 *          {@link CursorOp#FIRST} or {@link CursorOp#NEXT}
+	 * @return number of pairs returned, 0 when there is nothing left to read
+	 *
+	 * @see JNI#mdbx_cursor_get_batch(long, long[], long, long, int)
+	 */
+	public int getBatch(CursorBatch batch, CursorOp op) {
+		checkArgNotNull(batch, "batch"); //$NON-NLS-1$
+		checkArgNotNull(op, "op"); //$NON-NLS-1$
+
+		long[] count = new long[1];
+		if (log.isTraceEnabled())
+			log.trace("Calling cursor get batch for {}", this); //$NON-NLS-1$
+		int rc = mdbx_cursor_get_batch(pointer(), count, batch.pointer(), batch.capacity() * 2L, op.getValue());
+		if (rc == MDBX_NOTFOUND || rc == MDBX_ENODATA) {
+			batch.update(0, true);
+			return 0;
+		}
+		checkErrorCode(env, tx, rc);
+		batch.update(count[0], rc == MDBX_RESULT_TRUE);
+		return batch.size();
+	}
+
+	/**
+	 * Iterate over the whole database, fetching the entries a batch at a time so that the JNI transition is
+	 * amortized over the batch capacity. The iteration restarts from the first entry and moves the cursor.
+	 * <p>
+	 * The entries returned are views into the memory map, valid while the transaction is active. The batch is
+	 * owned by the caller and must stay open for the duration of the iteration.
+	 * </p>
+	 *
+	 * @param batch
+	 *          batch used to fetch the entries
+	 * @return iterator over all the entries of the database
+	 *
+	 * @see #getBatch(CursorBatch, CursorOp)
+	 */
+	public Iterator<BufferEntry> scanBatches(CursorBatch batch) {
+		checkArgNotNull(batch, "batch"); //$NON-NLS-1$
+
+		return new Iterator<BufferEntry>() {
+			private CursorOp op = CursorOp.FIRST;
+			private int index;
+			private boolean done;
+
+			@Override
+			public boolean hasNext() {
+				if (index < batch.size() && op != CursorOp.FIRST) {
+					return true;
+				}
+				if (done) {
+					return false;
+				}
+				index = 0;
+				int cnt = getBatch(batch, op);
+				op = CursorOp.NEXT;
+				done = cnt == 0 || batch.isLast();
+				return cnt > 0;
+			}
+
+			@Override
+			public BufferEntry next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				BufferEntry entry = new BufferEntry(tx.track(batch.getKey(index)), tx.track(batch.getValue(index)));
+				index++;
+				return entry;
+			}
+		};
+	}
+
 	/**
 	 * Get cursor entry
 	 * @param op operation
@@ -233,12 +402,11 @@ public class Cursor extends NativeObject implements AutoCloseable {
 	 */
 	public Entry get(CursorOp op, byte[] key, byte[] value, Predicate<byte[]> matchPredicate) {
 		checkArgNotNull(op, "op"); //$NON-NLS-1$
-		NativeBuffer keyBuffer = NativeBuffer.create(key);
-		NativeBuffer valBuffer = NativeBuffer.create(value);
-
+		NativeArena arena = NativeArena.get();
+		long mark = arena.mark();
 		try {
-			Value keyValue = keyBuffer != null ? new Value(keyBuffer) : new Value();
-			Value valValue = valBuffer != null ? new Value(valBuffer) : new Value();
+			Value keyValue = key != null ? arena.slice(key) : new Value();
+			Value valValue = value != null ? arena.slice(value) : new Value();
 			if (log.isTraceEnabled())
 				log.trace("Calling cursor get op/key/val for {}", this); //$NON-NLS-1$
 			int rc = mdbx_cursor_get(pointer(), keyValue, valValue, op.getValue());
@@ -253,10 +421,7 @@ public class Cursor extends NativeObject implements AutoCloseable {
 			return new Entry(keyValue.toByteArray(), valValue.toByteArray());
 		}
 		finally {
-			if (keyBuffer != null)
-				keyBuffer.delete();
-			if (valBuffer != null)
-				valBuffer.delete();
+			arena.release(mark);
 		}
 	}
 
@@ -283,12 +448,11 @@ public class Cursor extends NativeObject implements AutoCloseable {
 	public OperationStatus get(CursorOp op, DatabaseEntry key, DatabaseEntry value,
 			Predicate<DatabaseEntry> keyMatchPredicate, Predicate<DatabaseEntry> valMatchPredicate) {
 		checkArgNotNull(op, "op"); //$NON-NLS-1$
-		NativeBuffer keyBuffer = NativeBuffer.create(key.getData());
-		NativeBuffer valBuffer = NativeBuffer.create(value.getData());
-
+		NativeArena arena = NativeArena.get();
+		long mark = arena.mark();
 		try {
-			Value keyValue = keyBuffer != null ? new Value(keyBuffer) : new Value();
-			Value valValue = valBuffer != null ? new Value(valBuffer) : new Value();
+			Value keyValue = key.getData() != null ? arena.slice(key.getData()) : new Value();
+			Value valValue = value.getData() != null ? arena.slice(value.getData()) : new Value();
 			if (log.isTraceEnabled())
 				log.trace("Calling cursor get op:{}/de key:{}/val:{} for {}", op, key, value, this); //$NON-NLS-1$
 			int rc = mdbx_cursor_get(pointer(), keyValue, valValue, op.getValue());
@@ -309,10 +473,7 @@ public class Cursor extends NativeObject implements AutoCloseable {
 			return OperationStatus.SUCCESS;
 		}
 		finally {
-			if (keyBuffer != null)
-				keyBuffer.delete();
-			if (valBuffer != null)
-				valBuffer.delete();
+			arena.release(mark);
 		}
 	}
 
@@ -365,62 +526,47 @@ public class Cursor extends NativeObject implements AutoCloseable {
 	public byte[] put(byte[] key, byte[] value, int flags) {
 		checkArgNotNull(key, "key"); //$NON-NLS-1$
 		checkArgNotNull(value, "value"); //$NON-NLS-1$
-		NativeBuffer keyBuffer = NativeBuffer.create(key);
-
+		NativeArena arena = NativeArena.get();
+		long mark = arena.mark();
 		try {
-			NativeBuffer valBuffer = NativeBuffer.create(value);
-			try {
-				return put(keyBuffer, valBuffer, flags);
-			}
-			finally {
-				if (valBuffer != null)
-					valBuffer.delete();
-			}
+			return put(arena.slice(key), arena.slice(value), flags);
 		}
 		finally {
-			if (keyBuffer != null)
-				keyBuffer.delete();
+			arena.release(mark);
 		}
 	}
 
-	private byte[] put(NativeBuffer keyBuffer, NativeBuffer valueBuffer, int flags) {
-		return put(new Value(keyBuffer), new Value(valueBuffer), flags);
-	}
-
 	private byte[] put(Value keySlice, Value valueSlice, int flags) {
-		boolean hasSec = db.getSecondaries() != null;
-		Set<Value> valueSlices = new HashSet<>();
-
-		if (hasSec && (flags & MDBX_NOOVERWRITE) == 0 && (flags & MDBX_NODUPDATA) == 0) {
-			try (Cursor cursor = db.openCursor(tx)) {
-				byte[] key = keySlice.toByteArray();
-				Entry entry = cursor.get(CursorOp.SET, key);
+		NativeArena arena = NativeArena.get();
+		long mark = arena.mark();  // the secondary entries
+		try {
+			boolean hasSec = db.getSecondaries() != null;
+			Value[] oldSecEntries = null;
 
-				if (entry != null) {
-					NativeBuffer valueBuffer = NativeBuffer.create(entry.getValue());
-					valueSlices.add(Value.create(valueBuffer));
-				}
+			if (hasSec && (flags & MDBX_NOOVERWRITE) == 0 && (flags & MDBX_NODUPDATA) == 0) {
+				oldSecEntries = db.secondaryEntries(tx, keySlice);
 			}
-		}
 
-		if (log.isTraceEnabled())
-			log.trace("Calling cursor put key/val/flags for {}", this); //$NON-NLS-1$
-		int rc = mdbx_cursor_put(pointer(), keySlice, valueSlice, flags);
-
-		if (((flags & MDBX_NOOVERWRITE) != 0 || (flags & MDBX_NODUPDATA) != 0) && rc == MDBX_KEYEXIST) {
-			// Return the existing value if it was a dup insert attempt.
-			return valueSlice.toByteArray();
-		}
-		else {
-			// If the put failed, throw an exception..
-			checkErrorCode(env, tx, rc);
+			if (log.isTraceEnabled())
+				log.trace("Calling cursor put key/val/flags for {}", this); //$NON-NLS-1$
+			int rc = mdbx_cursor_put(pointer(), keySlice, valueSlice, flags);
 
-			if (!valueSlices.isEmpty()) {
-				db.deleteSecondaries(tx, keySlice, valueSlices);
+			if (((flags & MDBX_NOOVERWRITE) != 0 || (flags & MDBX_NODUPDATA) != 0) && rc == MDBX_KEYEXIST) {
+				// Return the existing value if it was a dup insert attempt.
+				return valueSlice.toByteArray();
 			}
+			else {
+				// If the put failed, throw an exception..
+				checkErrorCode(env, tx, rc);
 
-			db.putSecondaries(tx, keySlice, valueSlice);
-			return valueSlice.toByteArray();
+				if (hasSec) {
+					db.updateSecondaries(tx, keySlice, oldSecEntries, valueSlice);
+				}
+				return valueSlice.toByteArray();
+			}
+		}
+		finally {
+			arena.release(mark);
 		}
 	}
 
@@ -432,25 +578,31 @@ public class Cursor extends NativeObject implements AutoCloseable {
 	 * This function deletes the key/data pair to which the cursor refers.
 	 */
 	public void delete() {
-		boolean hasSec = db.getSecondaries() != null;
-		Entry entry = null;
-
-		if (hasSec) {
-			entry = get(CursorOp.GET_CURRENT);
+		if (db.getSecondaries() == null) {
+			if (log.isTraceEnabled())
+				log.trace("Calling cursor del for {}", this); //$NON-NLS-1$
+			checkErrorCode(env, tx, mdbx_cursor_del(pointer(), 0));
+			return;
 		}
 
-		if (log.isTraceEnabled())
-			log.trace("Calling cursor del for {}", this); //$NON-NLS-1$
-		int rc = mdbx_cursor_del(pointer(), 0);
-		checkErrorCode(env, tx, rc);
+		NativeArena arena = NativeArena.get();
+		long mark = arena.mark();  // the primary key and the secondary entries
+		try {
+			// the secondary entries are derived in place, before the delete may reuse the page
+			Value key = new Value();
+			Value data = new Value();
+			checkErrorCode(env, tx, mdbx_cursor_get(pointer(), key, data, CursorOp.GET_CURRENT.getValue()));
+			Value keySlice = arena.slice(key.toByteArray());
+			Value[] secEntries = db.secondaryEntries(keySlice, data);
 
-		if (hasSec) {
-			for (SecondaryDatabase secDb : db.getSecondaries()) {
-				SecondaryDbConfig secConfig = (SecondaryDbConfig)secDb.getConfig();
-				byte[] pKey = entry.getKey();
-				byte[] secKey = secConfig.getKeyCreator().createSecondaryKey(secDb, pKey, entry.getValue());
-				secDb.delete(tx, secKey, pKey);
-			}
+			if (log.isTraceEnabled())
+				log.trace("Calling cursor del for {}", this); //$NON-NLS-1$
+			checkErrorCode(env, tx, mdbx_cursor_del(pointer(), 0));
+
+			db.deleteSecondaries(tx, secEntries);
+		}
+		finally {
+			arena.release(mark);
 		}
 	}
 
@@ -511,6 +663,68 @@ public class Cursor extends NativeObject implements AutoCloseable {
 		return cnt;
 	}
 
+	/**
+	 * <p>
+	 * Estimate the number of entries between the positions of this cursor and another one.
+	 * </p>
+	 *
+	 * Both cursors must be positioned on the same database and within the same transaction. The estimate is
+	 * computed from the B-tree pages on their paths, without reading the entries in between.
+	 *
+	 * @param other
+	 *            cursor positioned at the end of the range
+	 * @return estimated number of entries from this cursor to the other one, negative if the other one is before
+	 */
+	public long estimateDistance(Cursor other) {
+		checkArgNotNull(other, "other"); //$NON-NLS-1$
+		long[] rc = new long[1];
+		if (log.isTraceEnabled())
+			log.trace("Calling cursor estimate distance for {}", this); //$NON-NLS-1$
+		checkErrorCode(env, tx, mdbx_estimate_distance(pointer(), other.pointer(), rc));
+		return rc[0];
+	}
+
+	/**
+	 * Estimate the number of entries the cursor would move over with an operation not requiring a key.
+	 *
+	 * @see #estimateMove(CursorOp, byte[])
+	 */
+	public long estimateMove(CursorOp op) {
+		return estimateMove(op, null);
+	}
+
+	/**
+	 * <p>
+	 * Estimate the number of entries the cursor would move over with an operation, without moving it.
+	 * </p>
+	 *
+	 * The cursor must be positioned. For instance {@link CursorOp#SET_RANGE} gives an estimate of the entries
+	 * between the current position and a key, and {@link CursorOp#LAST} of the entries left after it.
+	 *
+	 * @param op
+	 *            operation the move would be done with
+	 * @param key
+	 *            key used by the operation, null if it doesn't use one
+	 * @return estimated number of entries from the current position to the one after the move, negative if
+	 *         moving backward
+	 */
+	public long estimateMove(CursorOp op, byte[] key) {
+		checkArgNotNull(op, "op"); //$NON-NLS-1$
+		NativeArena arena = NativeArena.get();
+		long mark = arena.mark();
+		try {
+			long[] rc = new long[1];
+			Value keyValue = key != null ? arena.slice(key) : new Value();
+			if (log.isTraceEnabled())
+				log.trace("Calling cursor estimate move for {}", this); //$NON-NLS-1$
+			checkErrorCode(env, tx, mdbx_estimate_move(pointer(), keyValue, new Value(), op.getValue(), rc));
+			return rc[0];
+		}
+		finally {
+			arena.release(mark);
+		}
+	}
+
 	/**
 	 * Get cursor database
 	 * @return cursor database
@@ -0,0 +1,150 @@
+package com.castortech.mdbxjni;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.BiConsumer;
+
+/**
+ * Reusable native array of key/value pairs filled by {@link Cursor#getBatch(CursorBatch, CursorOp)}.
+ * <p>
+ * The pairs point into the memory map, so the buffers returned are only valid while the transaction is
+ * active (and, for a write transaction, until the next update). The batch itself can be reused for any
+ * number of calls and must be closed to release its native array.
+ * </p>
+ *
+ * @author Alain Picard
+ */
+public class CursorBatch implements AutoCloseable {
+	private static final int FIELD_SIZE = JNI.SIZEOF_VAL / 2;
+
+	private final int capacity;
+	private NativeBuffer pairs;
+	private final ByteBuffer pairsView;
+	private int size;
+	private boolean last;
+
+	/**
+	 * @param capacity maximum number of key/value pairs returned per call
+	 */
+	public CursorBatch(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("The capacity argument must be positive"); //$NON-NLS-1$
+		}
+		this.capacity = capacity;
+		pairs = NativeBuffer.create((long)capacity * 2 * JNI.SIZEOF_VAL);
+		pairsView = DirectBuffers.wrap(pairs.pointer(), pairs.capacity()).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * @return maximum number of key/value pairs returned per call
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return number of key/value pairs returned by the last call
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if the last call returned the final chunk, i.e. there is nothing left to read
+	 */
+	public boolean isLast() {
+		return last;
+	}
+
+	/**
+	 * @param index pair index, from 0 to {@link #size()} excluded
+	 * @return read-only view over the key
+	 */
+	public ByteBuffer getKey(int index) {
+		return view(checkIndex(index) * 2);
+	}
+
+	/**
+	 * @param index pair index, from 0 to {@link #size()} excluded
+	 * @return read-only view over the value
+	 */
+	public ByteBuffer getValue(int index) {
+		return view(checkIndex(index) * 2 + 1);
+	}
+
+	/**
+	 * @param index pair index, from 0 to {@link #size()} excluded
+	 * @return heap copy of the key/value pair
+	 */
+	public Entry getEntry(int index) {
+		return new Entry(toBytes(getKey(index)), toBytes(getValue(index)));
+	}
+
+	/**
+	 * Visit all the pairs of the batch. The same two buffers are retargeted for every pair, so they must not be
+	 * retained past the call to the consumer.
+	 *
+	 * @param consumer receives the key and value of each pair
+	 */
+	public void forEach(BiConsumer<ByteBuffer, ByteBuffer> consumer) {
+		ByteBuffer key = DirectBuffers.wrap(0, 0);
+		ByteBuffer value = DirectBuffers.wrap(0, 0);
+		for (int i = 0; i < size; i++) {
+			consumer.accept(retarget(key, i * 2), retarget(value, i * 2 + 1));
+		}
+	}
+
+	@Override
+	public void close() {
+		if (pairs != null) {
+			DirectBuffers.invalidate(pairsView);
+			pairs.delete();
+			pairs = null;
+		}
+	}
+
+	/*package*/ long pointer() {
+		if (pairs == null) {
+			throw new IllegalStateException("The batch has been closed"); //$NON-NLS-1$
+		}
+		return pairs.pointer();
+	}
+
+	/*package*/ void update(long count, boolean last) {
+		this.size = (int)(count / 2);
+		this.last = last;
+	}
+
+	private int checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return index;
+	}
+
+	private ByteBuffer view(int item) {
+		return DirectBuffers.wrap(base(item), length(item));
+	}
+
+	private ByteBuffer retarget(ByteBuffer view, int item) {
+		return DirectBuffers.retarget(view, base(item), length(item));
+	}
+
+	private long base(int item) {
+		return read(item * JNI.SIZEOF_VAL);
+	}
+
+	private long length(int item) {
+		return read(item * JNI.SIZEOF_VAL + FIELD_SIZE);
+	}
+
+	private long read(int offset) {
+		return FIELD_SIZE == Long.BYTES ? pairsView.getLong(offset) : Integer.toUnsignedLong(pairsView.getInt(offset));
+	}
+
+	private static byte[] toBytes(ByteBuffer buffer) {
+		byte[] rc = new byte[buffer.remaining()];
+		buffer.get(rc);
+		return rc;
+	}
+}
@@ -19,15 +19,24 @@
 package com.castortech.mdbxjni;
 
 import java.io.Closeable;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.castortech.mdbxjni.pool.CursorKey;
 import static com.castortech.mdbxjni.JNI.*;
 import static com.castortech.mdbxjni.Util.checkArgNotNull;
 import static com.castortech.mdbxjni.Util.checkErrorCode;
@@ -43,6 +52,10 @@ public class Database extends NativeObject implements Closeable {
 	private final Env env;
 	private final String name;
 	private List<SecondaryDatabase> secondaries = null;
+	private ComparatorCallback keyComparatorCallback;
+	private ComparatorCallback dataComparatorCallback;
+	private boolean customKeyOrder;
+	private boolean customDataOrder;
 
 	/*package*/Database(Env env, long self, String name) {
 		super(self);
@@ -72,22 +85,69 @@ public class Database extends NativeObject implements Closeable {
 				log.trace("Calling db close for {}", this); //$NON-NLS-1$
 			mdbx_dbi_close(env.pointer(), self);
 			self = 0;
+			env.releaseComparatorCallback(keyComparatorCallback);
+			env.releaseComparatorCallback(dataComparatorCallback);
 		}
 	}
 
+	/*package*/ void setComparatorCallbacks(ComparatorCallback keyCallback, ComparatorCallback dataCallback) {
+		this.keyComparatorCallback = keyCallback;
+		this.dataComparatorCallback = dataCallback;
+	}
+
 	/**
-	 * Get database statistics using of new temporary transaction
+	 * Record that the database was opened with a comparator of its own, native or Java, for its keys and/or
+	 * duplicates.
+	 */
+	/*package*/ void setCustomOrder(boolean keyOrder, boolean dataOrder) {
+		this.customKeyOrder = keyOrder;
+		this.customDataOrder = dataOrder;
+	}
+
+	/**
+	 * @return true if the keys are ordered by a comparator given on open rather than by the database flags
+	 */
+	/*package*/ boolean hasCustomKeyOrder() {
+		return customKeyOrder;
+	}
+
+	/**
+	 * @return true if the duplicates are ordered by a comparator given on open rather than by the database
+	 *         flags
+	 */
+	/*package*/ boolean hasCustomDataOrder() {
+		return customDataOrder;
+	}
+
+	/**
+	 * @return the Java comparator of views ordering the keys, null if there is none
+	 */
+	/*package*/ Comparator<ByteBuffer> getKeyBufferComparator() {
+		return keyComparatorCallback != null ? keyComparatorCallback.getBufferComparator() : null;
+	}
+
+	/**
+	 * @return the Java comparator of views ordering the duplicates, null if there is none
+	 */
+	/*package*/ Comparator<ByteBuffer> getDataBufferComparator() {
+		return dataComparatorCallback != null ? dataComparatorCallback.getBufferComparator() : null;
+	}
+
+	/**
+	 * Get database statistics using the cached read transaction of the current thread
 	 * @return Statistics for a database.
 	 *
+	 * @see Env#acquireReadTransaction()
+	 *
 	 * @see #stat(Transaction)
 	 */
 	public Stat stat() {
-		Transaction tx = env.createTransaction();
+		Transaction tx = env.acquireReadTransaction();
 		try {
 			return new Stat(stat(tx));
 		}
 		finally {
-			tx.commit();
+			tx.close();
 		}
 	}
 
@@ -106,6 +166,74 @@ public class Database extends NativeObject implements Closeable {
 		return new Stat(rc);
 	}
 
+	/**
+	 * Estimate the number of entries between two keys using the cached read transaction of the current thread
+	 *
+	 * @see Env#acquireReadTransaction()
+	 *
+	 * @see #estimateRange(Transaction, byte[], byte[])
+	 */
+	public long estimateRange(byte[] from, byte[] to) {
+		Transaction tx = env.acquireReadTransaction();
+		try {
+			return estimateRange(tx, from, to);
+		}
+		finally {
+			tx.close();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Estimate the number of entries between two keys.
+	 * </p>
+	 *
+	 * The estimate is computed from the B-tree pages on the path to each key, in O(log n) and without reading
+	 * the entries, so it is cheap enough for choosing between access paths. It is exact for small databases and
+	 * within a few percent otherwise.
+	 *
+	 * @param tx
+	 *            transaction to use
+	 * @param from
+	 *            key where the range starts, null for the first key
+	 * @param to
+	 *            key where the range ends, excluded, null for past the last key
+	 * @return estimated number of entries in the range, negative if from is after to
+	 */
+	public long estimateRange(Transaction tx, byte[] from, byte[] to) {
+		checkArgNotNull(tx, "tx"); //$NON-NLS-1$
+		NativeArena arena = NativeArena.get();
+		long mark = arena.mark();
+		try {
+			long[] rc = new long[1];
+			if (log.isTraceEnabled())
+				log.trace("Calling estimate range for {}", this); //$NON-NLS-1$
+			checkErrorCode(env, tx, mdbx_estimate_range(tx.pointer(), pointer(), arena.slice(from), null,
+					arena.slice(to), null, rc));
+			return rc[0];
+		}
+		finally {
+			arena.release(mark);
+		}
+	}
+
+	/**
+	 * Estimate the number of entries within a range. Whether its bounds are inclusive is below the precision of
+	 * the estimate and is ignored.
+	 *
+	 * @param tx
+	 *            transaction to use
+	 * @param range
+	 *            range of keys, in any order
+	 * @return estimated number of entries in the range
+	 * @see #estimateRange(Transaction, byte[], byte[])
+	 */
+	public long estimateRange(Transaction tx, KeyRange range) {
+		checkArgNotNull(range, "range"); //$NON-NLS-1$
+		byte[] upperKey = range.isPrefix() ? KeyRange.successor(range.getLowerKey()) : range.getUpperKey();
+		return Math.max(0, estimateRange(tx, range.getLowerKey(), upperKey));
+	}
+
 	/**
 	 * <p>
 	 * Empty or delete+close a database using of new temporary transaction.
@@ -147,6 +275,18 @@ public class Database extends NativeObject implements Closeable {
 		}
 	}
 
+	/*package*/ Env getEnv() {
+		return env;
+	}
+
+	/**
+	 * Get the database handle, which is a small number identifying the database within its environment.
+	 * @return dbi handle
+	 */
+	public int getDbi() {
+		return (int)pointer();
+	}
+
 	/**
 	 * Get the database name
 	 * @return name
@@ -165,7 +305,7 @@ public class Database extends NativeObject implements Closeable {
 
 	/**
 	 * <p>
-	 * Get items from a database using of new temporary transaction.
+	 * Get items from a database using the cached read transaction of the current thread.
 	 * </p>
 	 *
 	 * @param key
@@ -173,37 +313,38 @@ public class Database extends NativeObject implements Closeable {
 	 * @return The data corresponding to the key or null if not found
 	 *
 	 * @see com.castortech.mdbxjni.Database#get(Transaction, byte[])
+	 * @see Env#acquireReadTransaction()
 	 */
 	public byte[] get(byte[] key) {
 		checkArgNotNull(key, "key"); //$NON-NLS-1$
-		Transaction tx = env.createTransaction();
+		Transaction tx = env.acquireReadTransaction();
 		try {
 			return get(tx, key);
 		}
 		finally {
-			tx.commit();
+			tx.close();
 		}
 	}
 
 	public EntryCount getEx(byte[] key) {
 		checkArgNotNull(key, "key"); //$NON-NLS-1$
-		Transaction tx = env.createTransaction();
+		Transaction tx = env.acquireReadTransaction();
 		try {
 			return getEx(tx, key);
 		}
 		finally {
-			tx.commit();
+			tx.close();
 		}
 	}
 
 	public Entry getEqOrGE(byte[] key) {
 		checkArgNotNull(key, "key"); //$NON-NLS-1$
-		Transaction tx = env.createTransaction();
+		Transaction tx = env.acquireReadTransaction();
 		try {
 			return getEqOrGE(tx, key);
 		}
 		finally {
-			tx.commit();
+			tx.close();
 		}
 	}
 
@@ -233,12 +374,13 @@ public class Database extends NativeObject implements Closeable {
 		}
 
 		checkArgNotNull(tx, "tx");
-		NativeBuffer keyBuffer = NativeBuffer.create(key);
+		NativeArena arena = NativeArena.get();
+		long mark = arena.mark();
 		try {
-			return get(tx, keyBuffer);
+			return get(tx, arena.slice(key));
 		}
 		finally {
-			keyBuffer.delete();
+			arena.release(mark);
 		}
 	}
 
@@ -250,12 +392,13 @@ public class Database extends NativeObject implements Closeable {
 		}
 
 		checkArgNotNull(tx, "tx");
-		NativeBuffer keyBuffer = NativeBuffer.create(key);
+		NativeArena arena = NativeArena.get();
+		long mark = arena.mark();
 		try {
-			return getEx(tx, keyBuffer);
+			return getEx(tx, arena.slice(key));
 		}
 		finally {
-			keyBuffer.delete();
+			arena.release(mark);
 		}
 	}
 
@@ -291,25 +434,351 @@ public class Database extends NativeObject implements Closeable {
 		}
 
 		checkArgNotNull(tx, "tx");
-		NativeBuffer keyBuffer = NativeBuffer.create(key);
+		NativeArena arena = NativeArena.get();
+		long mark = arena.mark();
 		try {
-			return getEqOrGE(tx, keyBuffer);
+			return getEqOrGE(tx, arena.slice(key));
 		}
 		finally {
-			keyBuffer.delete();
+			arena.release(mark);
 		}
 	}
 
-	private byte[] get(Transaction tx, NativeBuffer keyBuffer) {
-		return get(tx, new Value(keyBuffer));
+	/**
+	 * <p>
+	 * Get items from a database without copying the data.
+	 * </p>
+	 *
+	 * Same as {@link #get(Transaction, byte[])} but the data is returned as a read-only direct buffer pointing
+	 * into the memory map instead of being copied onto the heap. The buffer is valid for the life of the
+	 * transaction; within a write transaction, only until the next update. It must not be accessed after the
+	 * transaction is committed, aborted or reset.
+	 *
+	 * @param tx
+	 *            transaction handle
+	 * @param key
+	 *            The key to search for in the database
+	 * @return A read-only view over the data corresponding to the key or null if not found
+	 *
+	 * @see EnvConfig#setDebugBufferViews(boolean)
+	 */
+	@SuppressWarnings("nls")
+	public ByteBuffer getBuffer(Transaction tx, byte[] key) {
+		checkArgNotNull(tx, "tx");
+		checkArgNotNull(key, "key");
+		NativeArena arena = NativeArena.get();
+		long mark = arena.mark();
+		try {
+			return getBuffer(tx, arena.slice(key));
+		}
+		finally {
+			arena.release(mark);
+		}
 	}
 
-	private EntryCount getEx(Transaction tx, NativeBuffer keyBuffer) {
-		return getEx(tx, new Value(keyBuffer));
+	/**
+	 * <p>
+	 * Get items from a database using a caller supplied key buffer.
+	 * </p>
+	 *
+	 * The key is read in place from the remaining bytes of the direct buffer, avoiding any native allocation
+	 * or copy, and the data is returned as a read-only view as with {@link #getBuffer(Transaction, byte[])}.
+	 *
+	 * @param tx
+	 *            transaction handle
+	 * @param key
+	 *            direct buffer holding the key to search for, between its position and limit
+	 * @return A read-only view over the data corresponding to the key or null if not found
+	 */
+	@SuppressWarnings("nls")
+	public ByteBuffer get(Transaction tx, ByteBuffer key) {
+		checkArgNotNull(tx, "tx");
+		checkArgNotNull(key, "key");
+		return getBuffer(tx, new Value(key));
 	}
 
-	private Entry getEqOrGE(Transaction tx, NativeBuffer keyBuffer) {
-		return getEqOrGE(tx, new Value(keyBuffer));
+	/**
+	 * <p>
+	 * Get several items from a database using the cached read transaction of the current thread.
+	 * </p>
+	 *
+	 * @param keys
+	 *            The keys to search for in the database
+	 * @return The data corresponding to each key, in the order of the keys, with null for keys not found
+	 *
+	 * @see com.castortech.mdbxjni.Database#getAll(Transaction, List)
+	 */
+	public List<byte[]> getAll(List<byte[]> keys) {
+		checkArgNotNull(keys, "keys"); //$NON-NLS-1$
+		try (Transaction tx = env.acquireReadTransaction()) {
+			return getAll(tx, keys);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Get several items from a database.
+	 * </p>
+	 *
+	 * The keys are sorted and packed, along with room for the results, into a single native buffer and looked
+	 * up with a single cursor walking forward in one native call. The cost in JNI transitions is therefore the
+	 * same whatever the number of keys. If the database supports duplicate keys
+	 * ({@link com.castortech.mdbxjni.Constants#DUPSORT}) then the first data item for each key is returned.
+	 *
+	 * @param tx
+	 *            transaction handle
+	 * @param keys
+	 *            The keys to search for in the database
+	 * @return The data corresponding to each key, in the order of the keys, with null for keys not found
+	 */
+	@SuppressWarnings("nls")
+	public List<byte[]> getAll(Transaction tx, List<byte[]> keys) {
+		checkArgNotNull(tx, "tx");
+		checkArgNotNull(keys, "keys");
+		List<byte[]> rc = new ArrayList<>(Collections.nCopies(keys.size(), (byte[])null));
+		getMultiple(tx, keys, (view, index) -> {
+			byte[] data = new byte[view.remaining()];
+			view.get(data);
+			rc.set(index, data);
+		});
+		return rc;
+	}
+
+	/**
+	 * <p>
+	 * Get several items from a database, as read-only views over the memory mapped data.
+	 * </p>
+	 *
+	 * Same as {@link #getAll(Transaction, List)} but without copying the data onto the heap. The views are
+	 * subject to the same lifetime rules as the one returned by {@link #getBuffer(Transaction, byte[])}.
+	 *
+	 * @param tx
+	 *            transaction handle
+	 * @param keys
+	 *            The keys to search for in the database
+	 * @return A read-only view over the data corresponding to each key, in the order of the keys, with null
+	 *         for keys not found
+	 */
+	@SuppressWarnings("nls")
+	public List<ByteBuffer> getAllBuffers(Transaction tx, List<byte[]> keys) {
+		checkArgNotNull(tx, "tx");
+		checkArgNotNull(keys, "keys");
+		List<ByteBuffer> rc = new ArrayList<>(Collections.nCopies(keys.size(), (ByteBuffer)null));
+		getMultiple(tx, keys, (view, index) -> rc.set(index, tx.track(view.duplicate())));
+		return rc;
+	}
+
+	/**
+	 * <p>
+	 * Scan a range of keys.
+	 * </p>
+	 *
+	 * The entries are read lazily as the stream is consumed, and the scan stops natively at the end of the
+	 * range. They are read-only views into the memory map, subject to the same lifetime rules as the one
+	 * returned by {@link #getBuffer(Transaction, byte[])}, so only the entries actually consumed are ever
+	 * copied, with {@link BufferEntry#toEntry()}. The stream holds a cursor until it is exhausted, so it
+	 * should be closed if it may not be, typically with a try-with-resources.
+	 *
+	 * @param tx
+	 *            transaction handle
+	 * @param range
+	 *            range of the keys to scan, along with the scan order
+	 * @return stream of the entries within the range
+	 */
+	public Stream<BufferEntry> range(Transaction tx, KeyRange range) {
+		return range(tx, range, null);
+	}
+
+	/**
+	 * Scan the keys between two bounds.
+	 *
+	 * @param tx
+	 *            transaction handle
+	 * @param lowerKey
+	 *            lowest key, null for no lower bound
+	 * @param lowerInclusive
+	 *            true if the lowest key is part of the range
+	 * @param upperKey
+	 *            highest key, null for no upper bound
+	 * @param upperInclusive
+	 *            true if the highest key is part of the range
+	 * @param descending
+	 *            true to scan from the highest key down
+	 * @return stream of the entries within the range
+	 * @see #range(Transaction, KeyRange)
+	 */
+	public Stream<BufferEntry> range(Transaction tx, byte[] lowerKey, boolean lowerInclusive, byte[] upperKey,
+			boolean upperInclusive, boolean descending) {
+		KeyRange range = KeyRange.of(lowerKey, lowerInclusive, upperKey, upperInclusive);
+		return range(tx, descending ? range.reverse() : range);
+	}
+
+	/**
+	 * Scan the keys starting with a prefix, in ascending order.
+	 *
+	 * @param tx
+	 *            transaction handle
+	 * @param prefix
+	 *            leading bytes of the keys
+	 * @return stream of the entries whose key starts with the prefix
+	 * @see #range(Transaction, KeyRange)
+	 * @see KeyRange#prefix(byte[])
+	 */
+	public Stream<BufferEntry> prefix(Transaction tx, byte[] prefix) {
+		return range(tx, KeyRange.prefix(prefix));
+	}
+
+	/**
+	 * @param tx
+	 *            transaction handle
+	 * @param range
+	 *            range of the keys to scan, along with the scan order
+	 * @return spliterator over the entries within the range, to be closed if it is not exhausted
+	 * @see #range(Transaction, KeyRange)
+	 */
+	public RangeSpliterator rangeSpliterator(Transaction tx, KeyRange range) {
+		return rangeSpliterator(tx, range, null);
+	}
+
+	/**
+	 * <p>
+	 * Scan the entries of a range of keys that match a filter.
+	 * </p>
+	 *
+	 * Same as {@link #range(Transaction, KeyRange)}, but the native clauses of the filter are evaluated while
+	 * the cursor moves, so the entries that don't match are skipped without reaching the JVM.
+	 *
+	 * @param tx
+	 *            transaction handle
+	 * @param range
+	 *            range of the keys to scan, along with the scan order
+	 * @param filter
+	 *            filter of the entries, null to keep them all
+	 * @return stream of the matching entries within the range
+	 */
+	public Stream<BufferEntry> range(Transaction tx, KeyRange range, ScanFilter filter) {
+		RangeSpliterator spliterator = rangeSpliterator(tx, range, filter);
+		return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+	}
+
+	/**
+	 * @param tx
+	 *            transaction handle
+	 * @param range
+	 *            range of the keys to scan, along with the scan order
+	 * @param filter
+	 *            filter of the entries, null to keep them all
+	 * @return spliterator over the matching entries within the range, to be closed if it is not exhausted
+	 * @see #range(Transaction, KeyRange, ScanFilter)
+	 */
+	public RangeSpliterator rangeSpliterator(Transaction tx, KeyRange range, ScanFilter filter) {
+		checkArgNotNull(tx, "tx"); //$NON-NLS-1$
+		checkArgNotNull(range, "range"); //$NON-NLS-1$
+		return new RangeSpliterator(this, tx, range, filter);
+	}
+
+	/**
+	 * Scan the whole database in partitions running concurrently, on the threads of a pool shared by the
+	 * environment.
+	 *
+	 * @param partitions
+	 *            number of partitions to split the database into
+	 * @param scanner
+	 *            function scanning the entries of a partition, called concurrently
+	 * @return the result of each partition, in key order
+	 * @see #parallelScan(int, ScanFilter, Executor, Function)
+	 */
+	public <R> List<R> parallelScan(int partitions, Function<Stream<BufferEntry>, R> scanner) {
+		return parallelScan(partitions, null, env.getScanExecutor(), scanner);
+	}
+
+	/**
+	 * <p>
+	 * Scan the whole database in partitions running concurrently.
+	 * </p>
+	 *
+	 * The database is split into partitions of about the same number of entries, using the estimates of
+	 * {@link #estimateRange(Transaction, byte[], byte[])} so that splitting doesn't read the data. Each
+	 * partition is scanned as with {@link #range(Transaction, KeyRange, ScanFilter)} within its own read-only
+	 * transaction, all of them reading the same snapshot. To that end the transactions are begun while briefly
+	 * holding the writer lock, and the executor must be able to run all the partitions at once. This must be
+	 * called from a thread without any transaction opened.
+	 *
+	 * @param partitions
+	 *            number of partitions to split the database into, fewer are used for small databases
+	 * @param filter
+	 *            filter of the entries, null to keep them all
+	 * @param executor
+	 *            executor running the partitions
+	 * @param scanner
+	 *            function scanning the entries of a partition, called concurrently
+	 * @return the result of each partition, in key order
+	 */
+	public <R> List<R> parallelScan(int partitions, ScanFilter filter, Executor executor,
+			Function<Stream<BufferEntry>, R> scanner) {
+		checkArgNotNull(executor, "executor"); //$NON-NLS-1$
+		checkArgNotNull(scanner, "scanner"); //$NON-NLS-1$
+		if (partitions <= 0) {
+			throw new IllegalArgumentException("The partitions argument must be positive"); //$NON-NLS-1$
+		}
+		return new ParallelScan<>(this, filter, scanner).run(partitions, executor);
+	}
+
+	/**
+	 * Look up all the keys in one native call, handing a flyweight view over each value found, along with the
+	 * index of its key, to the consumer.
+	 */
+	/*package*/ void getMultiple(Transaction tx, List<byte[]> keys, ObjIntConsumer<ByteBuffer> consumer) {
+		int count = keys.size();
+		if (count == 0) {
+			return;
+		}
+
+		long keysSize = 0;
+		for (int i = 0; i < count; i++) {
+			byte[] key = keys.get(i);
+			checkArgNotNull(key, "key"); //$NON-NLS-1$
+			keysSize += key.length;
+		}
+		int[] order = IndexSort.sort(count, (a, b) -> Arrays.compareUnsigned(keys.get(a), keys.get(b)));
+
+		// layout: key vals, value vals, then the key bytes
+		long valSize = JNI.SIZEOF_VAL;
+		int lengthOffset = DirectBuffers.addressSize();
+		NativeArena arena = NativeArena.get();
+		long mark = arena.mark();
+		try {
+			long keyVals = arena.allocate(2 * count * valSize + keysSize);
+			long valueVals = keyVals + count * valSize;
+			long data = valueVals + count * valSize;
+			for (int i = 0; i < count; i++) {
+				byte[] key = keys.get(order[i]);
+				long val = keyVals + i * valSize;
+				DirectBuffers.put(data, key);
+				DirectBuffers.putAddress(val, data);
+				DirectBuffers.putAddress(val + lengthOffset, key.length);
+				data += key.length;
+			}
+
+			if (log.isTraceEnabled())
+				log.trace("Calling db get multiple for {}, count:{}", this, count); //$NON-NLS-1$
+			try (Cursor cursor = openCursor(tx)) {
+				checkErrorCode(env, tx, mdbxjni_get_multiple(cursor.pointer(), keyVals, valueVals, count));
+			}
+
+			ByteBuffer view = DirectBuffers.wrap(0, 0);
+			for (int i = 0; i < count; i++) {
+				long val = valueVals + i * valSize;
+				if (DirectBuffers.getAddress(val) == 0
+						&& DirectBuffers.getAddress(val + lengthOffset) == MDBXJNI_NOTFOUND_LEN) {
+					continue;
+				}
+				consumer.accept(DirectBuffers.retargetVal(view, val), order[i]);
+			}
+		}
+		finally {
+			arena.release(mark);
+		}
 	}
 
 	/* package */byte[] get(Transaction tx, Value key) {
@@ -324,6 +793,18 @@ public class Database extends NativeObject implements Closeable {
 		return value.toByteArray();
 	}
 
+	/* package */ByteBuffer getBuffer(Transaction tx, Value key) {
+		Value value = new Value();
+		if (log.isTraceEnabled())
+			log.trace("Calling db get buffer for {}", this); //$NON-NLS-1$
+		int rc = mdbx_get(tx.pointer(), pointer(), key, value);
+		if (rc == MDBX_NOTFOUND) {
+			return null;
+		}
+		checkErrorCode(env, tx, rc);
+		return tx.track(value.toByteBuffer());
+	}
+
 	/* package */EntryCount getEx(Transaction tx, Value key) {
 		Value value = new Value();
 		long[] valCnt = new long[1];
@@ -481,18 +962,13 @@ public class Database extends NativeObject implements Closeable {
 		}
 
 		checkArgNotNull(tx, "tx");
-		NativeBuffer keyBuffer = NativeBuffer.create(key);
+		NativeArena arena = NativeArena.get();
+		long mark = arena.mark();
 		try {
-			NativeBuffer valueBuffer = NativeBuffer.create(value);
-			try {
-				return put(tx, keyBuffer, valueBuffer, flags);
-			}
-			finally {
-				valueBuffer.delete();
-			}
+			return put(tx, arena.slice(key), arena.slice(value), flags);
 		}
 		finally {
-			keyBuffer.delete();
+			arena.release(mark);
 		}
 	}
 
@@ -517,82 +993,102 @@ public class Database extends NativeObject implements Closeable {
 
 			checkArgNotNull(tx, "tx");
 			long valueSize = value.length / valueCnt;
-			NativeBuffer keyBuffer = NativeBuffer.create(key);
+			NativeArena arena = NativeArena.get();
+			long mark = arena.mark();
 			try {
-				NativeBuffer valueBuffer = NativeBuffer.create(value);
-//				NativeBuffer valArray = NativeBuffer.create(32);
-//				valArray.write(0, ByteUtil.byteArrayForLong(valueBuffer.pointer()), 0, 8);
-//				valArray.write(8, ByteUtil.byteArrayForLong(valueSize), 0, 8);
-//				valArray.write(16, ByteUtil.byteArrayForLong(0L), 0, 8);
-//				valArray.write(24, ByteUtil.byteArrayForLong(valueCnt), 0, 8);
-
-				Value value1 = new Value(valueBuffer.pointer(), valueSize);
+				Value value1 = new Value(arena.slice(value).iov_base, valueSize);
 				Value value2 = new Value(0L, valueCnt);
-
-				try {
-					long now = System.currentTimeMillis();
-					byte[] rc = put(tx, new Value(keyBuffer), value1, value2, flags);
-//					if (log.isDebugEnabled())
-//						log.debug("Db put:{}, ms:{}", key, System.currentTimeMillis() - now);
-					return rc;
-				}
-				finally {
-					valueBuffer.delete();
-				}
+				return put(tx, arena.slice(key), value1, value2, flags);
 			}
 			finally {
-				keyBuffer.delete();
+				arena.release(mark);
 			}
 		}
 		return null;
 	}
 
-	private byte[] put(Transaction tx, NativeBuffer keyBuffer, NativeBuffer valueBuffer, int flags) {
-		return put(tx, new Value(keyBuffer), new Value(valueBuffer), flags);
+	/**
+	 * <p>
+	 * Store items into a database using caller supplied buffers.
+	 * </p>
+	 *
+	 * The key and value are read in place from the remaining bytes of the direct buffers, avoiding any native
+	 * allocation or copy. The buffers positions are left unchanged.
+	 *
+	 * @param tx
+	 *            transaction handle
+	 * @param key
+	 *            direct buffer holding the key to store, between its position and limit
+	 * @param value
+	 *            direct buffer holding the value to store, between its position and limit
+	 * @param flags
+	 *            Options for this operation, see {@link #put(Transaction, byte[], byte[], int)}
+	 * @return a read-only view over the existing value if it was a dup insert attempt, null otherwise.
+	 */
+	@SuppressWarnings("nls")
+	public ByteBuffer put(Transaction tx, ByteBuffer key, ByteBuffer value, int flags) {
+		checkArgNotNull(tx, "tx");
+		checkArgNotNull(key, "key");
+		checkArgNotNull(value, "value");
+
+		Value valueSlice = new Value(value);
+		if (putSlices(tx, new Value(key), valueSlice, flags) == MDBX_KEYEXIST) {
+			return tx.track(valueSlice.toByteBuffer());
+		}
+		return null;
+	}
+
+	/* package */byte[] put(Transaction tx, Value keySlice, Value valueSlice, int flags) {
+		if (putSlices(tx, keySlice, valueSlice, flags) == MDBX_KEYEXIST) {
+			// Return the existing value if it was a dup insert attempt.
+			return valueSlice.toByteArray();
+		}
+		return null;
 	}
 
-	private byte[] put(Transaction tx, Value keySlice, Value valueSlice, int flags) {
+	/**
+	 * Put the slices, maintaining the secondaries.
+	 *
+	 * @return {@link JNI#MDBX_KEYEXIST} if this was a dup insert attempt, in which case the value slice has
+	 *         been updated to point to the existing value, 0 otherwise.
+	 */
+	private int putSlices(Transaction tx, Value keySlice, Value valueSlice, int flags) {
 		checkSize(env, keySlice);
 		if ((flags & MDBX_DUPSORT) != 0) {
 			checkSize(env, valueSlice);
 		}
 
-		boolean hasSec = getSecondaries() != null;
-		Set<Value> valueSlices = new HashSet<>();
-
-		//do we already have an entry under this key, if so secondary will need to be replaced (delete + put)
-		if (hasSec && (flags & MDBX_NOOVERWRITE) == 0 && (flags & MDBX_NODUPDATA) == 0) {
-			try (Cursor cursor = openCursor(tx)) {
-				byte[] key = keySlice.toByteArray();
-				Entry entry = cursor.get(CursorOp.SET, key);
+		NativeArena arena = NativeArena.get();
+		long mark = arena.mark();  // the secondary entries
+		try {
+			boolean hasSec = getSecondaries() != null;
+			Value[] oldSecEntries = null;
 
-				if (entry != null) {
-					NativeBuffer valueBuffer = NativeBuffer.create(entry.getValue());
-					valueSlices.add(Value.create(valueBuffer));
-				}
+			//do we already have an entry under this key, if so only the secondary entries that change are replaced
+			if (hasSec && (flags & MDBX_NOOVERWRITE) == 0 && (flags & MDBX_NODUPDATA) == 0) {
+				oldSecEntries = secondaryEntries(tx, keySlice);
 			}
-		}
 
-		if (log.isTraceEnabled())
-			log.trace("Calling db put for {}", this); //$NON-NLS-1$
-		int rc = mdbx_put(tx.pointer(), pointer(), keySlice, valueSlice, flags);
-		if (((flags & MDBX_NOOVERWRITE) != 0 || (flags & MDBX_NODUPDATA) != 0) && rc == MDBX_KEYEXIST) {
-			// Return the existing value if it was a dup insert attempt.
-			return valueSlice.toByteArray();
-		}
-		else {
-			// If the put failed, throw an exception..
-			if (rc != 0) {
-				throw new MDBXException("put failed", rc); //$NON-NLS-1$
+			if (log.isTraceEnabled())
+				log.trace("Calling db put for {}", this); //$NON-NLS-1$
+			int rc = mdbx_put(tx.pointer(), pointer(), keySlice, valueSlice, flags);
+			if (((flags & MDBX_NOOVERWRITE) != 0 || (flags & MDBX_NODUPDATA) != 0) && rc == MDBX_KEYEXIST) {
+				return rc;
 			}
+			else {
+				// If the put failed, throw an exception..
+				if (rc != 0) {
+					throw new MDBXException("put failed", rc); //$NON-NLS-1$
+				}
 
-			if (!valueSlices.isEmpty()) {
-				deleteSecondaries(tx, keySlice, valueSlices);
+				if (hasSec) {
+					updateSecondaries(tx, keySlice, oldSecEntries, valueSlice);
+				}
+				return 0;
 			}
-
-			putSecondaries(tx, keySlice, valueSlice);
-
-			return null;
+		}
+		finally {
+			arena.release(mark);
 		}
 	}
 
@@ -620,15 +1116,92 @@ public class Database extends NativeObject implements Closeable {
 
 	protected void putSecondaries(Transaction tx, Value keySlice, Value valueSlice) {
 		if (secondaries != null) {
-			for (SecondaryDatabase secDb : secondaries) {
-				SecondaryDbConfig secConfig = (SecondaryDbConfig)secDb.getConfig();
-				byte[] pKey = keySlice.toByteArray();
-				byte[] secKey = secConfig.getKeyCreator().createSecondaryKey(secDb, pKey, valueSlice.toByteArray());
-				secDb.internalPut(tx, secKey, pKey);
+			NativeArena arena = NativeArena.get();
+			long mark = arena.mark();
+			try {
+				updateSecondaries(tx, keySlice, null, valueSlice);
+			}
+			finally {
+				arena.release(mark);
 			}
 		}
 	}
 
+	/**
+	 * Derive the secondary entries of the current value under the key, reading it in place. This must be
+	 * called before the value is overwritten, as the page holding it may be reused by the write.
+	 *
+	 * @return the entries as with {@link #secondaryEntries(Value, Value)}, or null if there is no value under
+	 *         the key
+	 */
+	/* package */Value[] secondaryEntries(Transaction tx, Value keySlice) {
+		Value valueSlice = new Value();
+		int rc = mdbx_get(tx.pointer(), pointer(), keySlice, valueSlice);
+		if (rc == MDBX_NOTFOUND) {
+			return null;
+		}
+		checkErrorCode(env, tx, rc);
+		return secondaryEntries(keySlice, valueSlice);
+	}
+
+	/**
+	 * Derive the entries of a primary entry in the secondaries into the arena of the current thread.
+	 *
+	 * @return the key and value in each secondary, at 2 * i and 2 * i + 1 in the order of
+	 *         {@link #getSecondaries()}, nulls where the entry has none
+	 * @see SecondaryEntries
+	 */
+	/* package */Value[] secondaryEntries(Value keySlice, Value valueSlice) {
+		return SecondaryEntries.of(secondaries, keySlice, valueSlice);
+	}
+
+	/**
+	 * Bring the secondaries up to date with the new value under the key, only touching those whose entry
+	 * changed.
+	 *
+	 * @param oldSecEntries the secondary entries of the previous value, or null if there was none
+	 */
+	/* package */void updateSecondaries(Transaction tx, Value keySlice, Value[] oldSecEntries, Value valueSlice) {
+		Value[] newSecEntries = secondaryEntries(keySlice, valueSlice);
+		for (int i = 0; i < newSecEntries.length; i += 2) {
+			SecondaryDatabase secDb = secondaries.get(i / 2);
+			Value oldSecKey = oldSecEntries == null ? null : oldSecEntries[i];
+			Value oldSecValue = oldSecEntries == null ? null : oldSecEntries[i + 1];
+			if (sameBytes(oldSecKey, newSecEntries[i]) && sameBytes(oldSecValue, newSecEntries[i + 1])) {
+				if (log.isTraceEnabled())
+					log.trace("Secondary entry unchanged in {}", secDb); //$NON-NLS-1$
+				continue;
+			}
+			if (oldSecKey != null) {
+				secDb.delete(tx, oldSecKey, oldSecValue);
+			}
+			if (newSecEntries[i] != null) {
+				secDb.internalPut(tx, newSecEntries[i], newSecEntries[i + 1]);
+			}
+		}
+	}
+
+	/**
+	 * Remove the secondary entries of one of the values of a primary key.
+	 *
+	 * @param secEntries the entries as derived by {@link #secondaryEntries(Value, Value)}
+	 */
+	/* package */void deleteSecondaries(Transaction tx, Value[] secEntries) {
+		for (int i = 0; i < secEntries.length; i += 2) {
+			if (secEntries[i] != null) {
+				secondaries.get(i / 2).delete(tx, secEntries[i], secEntries[i + 1]);
+			}
+		}
+	}
+
+	/* package */static boolean sameBytes(Value slice1, Value slice2) {
+		if (slice1 == null || slice2 == null) {
+			return slice1 == slice2;
+		}
+		return slice1.iov_len == slice2.iov_len && DirectBuffers.wrap(slice1.iov_base, slice1.iov_len)
+				.equals(DirectBuffers.wrap(slice2.iov_base, slice2.iov_len));
+	}
+
 	/**
 	 * @see com.castortech.mdbxjni.Database#replace(Transaction, byte[], byte[], int)
 	 */
@@ -667,51 +1240,27 @@ public class Database extends NativeObject implements Closeable {
 		}
 
 		checkArgNotNull(tx, "tx");
-		NativeBuffer keyBuffer = NativeBuffer.create(key);
+		NativeArena arena = NativeArena.get();
+		long mark = arena.mark();
 		try {
-			NativeBuffer valueBuffer = NativeBuffer.create(value);
-			try {
-				return replace(tx, keyBuffer, valueBuffer, flags);
-			}
-			finally {
-				valueBuffer.delete();
-			}
+			return replace(tx, arena.slice(key), arena.slice(value), flags);
 		}
 		finally {
-			keyBuffer.delete();
+			arena.release(mark);
 		}
 	}
 
-	private byte[] replace(Transaction tx, NativeBuffer keyBuffer, NativeBuffer valueBuffer, int flags) {
-		return replace(tx, new Value(keyBuffer), new Value(valueBuffer), flags);
-	}
-
 	private byte[] replace(Transaction tx, Value keySlice, Value valueSlice, int flags) {
 		checkSize(env, keySlice);
 		if ((flags & MDBX_DUPSORT) != 0) {
 			checkSize(env, valueSlice);
 		}
 
-		boolean hasSec = getSecondaries() != null;
-		Set<Value> valueSlices = new HashSet<>();
-
-		//do we already have an entry under this key, if so secondary will need to be replaced (delete + put)
-		if (hasSec && (flags & MDBX_NOOVERWRITE) == 0 && (flags & MDBX_NODUPDATA) == 0) {
-			try (Cursor cursor = openCursor(tx)) {
-				byte[] key = keySlice.toByteArray();
-				Entry entry = cursor.get(CursorOp.SET, key);
-
-				if (entry != null) {
-					NativeBuffer valueBuffer = NativeBuffer.create(entry.getValue());
-					valueSlices.add(Value.create(valueBuffer));
-				}
-			}
-		}
-
-		//allocate buffer with 50% larger than new value which should be enough to avoid retry
-		NativeBuffer oldValBuffer = NativeBuffer.create((long)(valueSlice.iov_len * 1.5));
+		NativeArena arena = NativeArena.get();
+		long mark = arena.mark();  // the old value and the secondary entries
 		try {
-			Value oldValSlice = new Value(oldValBuffer);
+			//allocate buffer with 50% larger than new value which should be enough to avoid retry
+			Value oldValSlice = arena.slice((long)(valueSlice.iov_len * 1.5));
 			boolean didResize = false;
 			int rc = 0;
 
@@ -724,8 +1273,7 @@ public class Database extends NativeObject implements Closeable {
 						throw new MDBXException("put failed, falling into loop", rc); //$NON-NLS-1$
 					}
 					didResize = true;
-					oldValBuffer.delete();  //release existing buffer
-					oldValBuffer = NativeBuffer.create(oldValSlice.iov_len);
+					oldValSlice = arena.slice(oldValSlice.iov_len);  //released with the rest of the scope
 				}
 				else {
 					break;
@@ -737,19 +1285,45 @@ public class Database extends NativeObject implements Closeable {
 				throw new MDBXException("put failed", rc); //$NON-NLS-1$
 			}
 
-			if (!valueSlices.isEmpty()) {
-				deleteSecondaries(tx, keySlice, valueSlices);
+			// the old value is handed back by the replace, with a null base if there was none
+			if (getSecondaries() != null) {
+				Value[] oldSecEntries = oldValSlice.iov_base == 0 ? null : secondaryEntries(keySlice, oldValSlice);
+				updateSecondaries(tx, keySlice, oldSecEntries, valueSlice);
 			}
-
-			putSecondaries(tx, keySlice, valueSlice);
-
 			return oldValSlice.toByteArray();
 		}
 		finally {
-			oldValBuffer.delete();
+			arena.release(mark);
 		}
 	}
 
+	/**
+	 * Store an item through the write queue of the environment, grouped with the other queued writes in a
+	 * single commit.
+	 *
+	 * @see Env#writeAsync(Function)
+	 * @see #put(Transaction, byte[], byte[], int)
+	 * @return future completed with the existing value if it was a dup insert attempt, null otherwise, once
+	 *         committed
+	 */
+	public CompletableFuture<byte[]> putAsync(byte[] key, byte[] value, int flags) {
+		checkArgNotNull(key, "key"); //$NON-NLS-1$
+		checkArgNotNull(value, "value"); //$NON-NLS-1$
+		return env.writeAsync(tx -> put(tx, key, value, flags));
+	}
+
+	/**
+	 * Delete an item through the write queue of the environment, grouped with the other queued writes in a
+	 * single commit.
+	 *
+	 * @see Env#writeAsync(Function)
+	 * @see #delete(Transaction, byte[], byte[])
+	 * @return future completed with true if the key/value was deleted, once committed
+	 */
+	public CompletableFuture<Boolean> deleteAsync(byte[] key, byte[] value) {
+		checkArgNotNull(key, "key"); //$NON-NLS-1$
+		return env.writeAsync(tx -> delete(tx, key, value));
+	}
 
 	/**
 	 * @see com.castortech.mdbxjni.Database#delete(Transaction, byte[], byte[])
@@ -809,78 +1383,127 @@ public class Database extends NativeObject implements Closeable {
 		}
 
 		checkArgNotNull(tx, "tx");
-		NativeBuffer keyBuffer = NativeBuffer.create(key);
+		NativeArena arena = NativeArena.get();
+		long mark = arena.mark();
 		try {
-			NativeBuffer valueBuffer = NativeBuffer.create(value);
-			try {
-				return delete(tx, keyBuffer, valueBuffer);
-			}
-			finally {
-				if (valueBuffer != null) {
-					valueBuffer.delete();
-				}
-			}
+			return delete(tx, arena.slice(key), arena.slice(value));
 		}
 		finally {
-			keyBuffer.delete();
+			arena.release(mark);
 		}
 	}
 
-	private boolean delete(Transaction tx, NativeBuffer keyBuffer, NativeBuffer valueBuffer) {
-		return delete(tx, new Value(keyBuffer), Value.create(valueBuffer));
+	/**
+	 * <p>
+	 * Removes key/data pairs from the database using caller supplied buffers.
+	 * </p>
+	 *
+	 * The key and value are read in place from the remaining bytes of the direct buffers, avoiding any native
+	 * allocation or copy.
+	 *
+	 * @param tx
+	 *            Transaction handle.
+	 * @param key
+	 *            direct buffer holding the key to delete, between its position and limit
+	 * @param value
+	 *            direct buffer holding the value to delete or null, see
+	 *            {@link #delete(Transaction, byte[], byte[])}
+	 * @return true if the key/value was deleted.
+	 */
+	@SuppressWarnings("nls")
+	public boolean delete(Transaction tx, ByteBuffer key, ByteBuffer value) {
+		checkArgNotNull(tx, "tx");
+		checkArgNotNull(key, "key");
+		return delete(tx, new Value(key), Value.create(value));
 	}
 
-	private boolean delete(Transaction tx, Value keySlice, Value valueSlice) {
+	/* package */boolean delete(Transaction tx, Value keySlice, Value valueSlice) {
 		checkSize(env, keySlice);
 
-		boolean hasSec = getSecondaries() != null;
-		Set<Value> valueSlices = new HashSet<>();
-
-		//here we just have a key w/o value, so all values must be deleted.
-		//for secondaries where the value is the key, all such values must be retrieved and deleted
-		if (valueSlice == null && hasSec) {
-			try (Cursor cursor = openCursor(tx)) {
-				byte[] key = keySlice.toByteArray();
-				Entry entry = cursor.get(CursorOp.SET, key);
-
-				while (entry != null) {
-					NativeBuffer valueBuffer = NativeBuffer.create(entry.getValue());
-					valueSlices.add(Value.create(valueBuffer));
-					if (getConfig(tx).isDupSort()) {
-						entry = cursor.get(CursorOp.NEXT_DUP, key, entry.getValue());
+		NativeArena arena = NativeArena.get();
+		long mark = arena.mark();  // the secondary entries of the deleted values
+		try {
+			boolean hasSec = getSecondaries() != null;
+			List<Value[]> secEntries = hasSec ? new ArrayList<>() : null;
+
+			//here we just have a key w/o value, so all values must be deleted.
+			//for secondaries where the value is the key, all such values must be retrieved and deleted
+			if (valueSlice == null && hasSec) {
+				try (Cursor cursor = openCursor(tx)) {
+					Value key = new Value(keySlice.iov_base, keySlice.iov_len);
+					Value data = new Value();
+					boolean dupSort = getConfig(tx).isDupSort();
+					int rc = mdbx_cursor_get(cursor.pointer(), key, data, CursorOp.SET.getValue());
+
+					while (rc == MDBX_SUCCESS) {
+						secEntries.add(secondaryEntries(keySlice, data));
+						rc = dupSort ? mdbx_cursor_get(cursor.pointer(), key, data, CursorOp.NEXT_DUP.getValue())
+								: MDBX_NOTFOUND;
 					}
-					else {
-						entry = null;
+					if (rc != MDBX_NOTFOUND) {
+						checkErrorCode(env, tx, rc);
 					}
 				}
 			}
-		}
-		else {
-			valueSlices.add(valueSlice);
-		}
+			else if (hasSec) {
+				secEntries.add(secondaryEntries(keySlice, valueSlice));
+			}
 
-		if (log.isTraceEnabled())
-			log.trace("Calling db del for {}", this); //$NON-NLS-1$
-		int rc = mdbx_del(tx.pointer(), pointer(), keySlice, valueSlice);
-		if (rc == MDBX_NOTFOUND) {
-			return false;
-		}
-		checkErrorCode(env, tx, rc);
-		deleteSecondaries(tx, keySlice, valueSlices);
+			if (log.isTraceEnabled())
+				log.trace("Calling db del for {}", this); //$NON-NLS-1$
+			int rc = mdbx_del(tx.pointer(), pointer(), keySlice, valueSlice);
+			if (rc == MDBX_NOTFOUND) {
+				return false;
+			}
+			checkErrorCode(env, tx, rc);
+			if (hasSec) {
+				for (Value[] entries : secEntries) {
+					deleteSecondaries(tx, entries);
+				}
+			}
 
-		return true;
+			return true;
+		}
+		finally {
+			arena.release(mark);
+		}
 	}
 
 	protected void deleteSecondaries(Transaction tx, Value keySlice, Set<Value> valueSlices) {
 		if (secondaries != null) {
-			for (SecondaryDatabase secDb : secondaries) {
-				SecondaryDbConfig secConfig = (SecondaryDbConfig) secDb.getConfig();
-				byte[] pKey = keySlice.toByteArray();
+			NativeArena arena = NativeArena.get();
+			long mark = arena.mark();
+			try {
 				for (Value valueSlice : valueSlices) {
-					byte[] secKey = secConfig.getKeyCreator().createSecondaryKey(secDb, pKey, valueSlice.toByteArray());
-					secDb.delete(tx, secKey, pKey);
+					deleteSecondaries(tx, secondaryEntries(keySlice, valueSlice));
 				}
 			}
+			finally {
+				arena.release(mark);
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * Store a large number of items in a database, using of new temporary transactions.
+	 * </p>
+	 *
+	 * The items are sorted off-heap and appended in chunks, see {@link BulkLoader} for details. This must not be
+	 * called while the current thread has a write transaction opened.
+	 *
+	 * @param entries
+	 *            The key/data pairs to store
+	 * @param config
+	 *            Settings of the load, or null for the defaults
+	 * @return number of pairs stored
+	 */
+	public long putAll(Iterable<? extends Map.Entry<byte[], byte[]>> entries, BulkLoaderConfig config) {
+		checkArgNotNull(entries, "entries"); //$NON-NLS-1$
+		try (BulkLoader loader = new BulkLoader(this, config != null ? config : new BulkLoaderConfig())) {
+			loader.addAll(entries);
+			loader.flush();
+			return loader.getCount();
 		}
 	}
 
@@ -902,7 +1525,7 @@ public class Database extends NativeObject implements Closeable {
 			checkArgNotNull(tx, "tx"); //$NON-NLS-1$
 
 			if (env.usePooledCursors()) {
-				return env.getCursorPool().borrow(new CursorKey(env, this, tx));
+				return env.getCursorPool().borrow(env, this, tx);
 			}
 
 			long[] cursor = new long[1];
@@ -924,7 +1547,7 @@ public class Database extends NativeObject implements Closeable {
 			checkArgNotNull(tx, "tx"); //$NON-NLS-1$
 
 			if (env.usePooledCursors()) {
-				return env.getCursorPool().borrowSecondary(new CursorKey(env, this, tx));
+				return env.getCursorPool().borrowSecondary(env, this, tx);
 			}
 
 			long[] cursor = new long[1];
@@ -943,12 +1566,12 @@ public class Database extends NativeObject implements Closeable {
 	}
 
 	public int getFlags() {
-		Transaction tx = env.createTransaction();
+		Transaction tx = env.acquireReadTransaction();
 		try {
 			return getFlags(tx);
 		}
 		finally {
-			tx.commit();
+			tx.close();
 		}
 	}
 
@@ -996,19 +1619,25 @@ public class Database extends NativeObject implements Closeable {
 		checkArgNotNull(tx, "tx");
 		checkArgNotNull(name, "name");
 
-		NativeBuffer nameBuffer = NativeBuffer.create(name);
-		long[] res = new long[1];
-		checkErrorCode(env, tx, mdbx_dbi_rename2(tx.pointer(), pointer(), new Value(nameBuffer)));
-		return (int)res[0];
+		NativeArena arena = NativeArena.get();
+		long mark = arena.mark();
+		try {
+			long[] res = new long[1];
+			checkErrorCode(env, tx, mdbx_dbi_rename2(tx.pointer(), pointer(), arena.slice(name)));
+			return (int)res[0];
+		}
+		finally {
+			arena.release(mark);
+		}
 	}
 
 	public DatabaseConfig getConfig() {
-		Transaction tx = env.createTransaction();
+		Transaction tx = env.acquireReadTransaction();
 		try {
 			return getConfig(tx);
 		}
 		finally {
-			tx.commit();
+			tx.close();
 		}
 	}
 
@@ -1,5 +1,6 @@
 package com.castortech.mdbxjni;
 
+import java.nio.ByteBuffer;
 import java.util.Comparator;
 
 public class DatabaseConfig implements Cloneable {
@@ -22,6 +23,14 @@ public class DatabaseConfig implements Cloneable {
 
 	private Comparator<byte[]> keyComparator;
 	private Comparator<byte[]> dataComparator;
+	/** Java key ordering working on views over the native memory, takes precedence over {@link #keyComparator} */
+	private Comparator<ByteBuffer> keyBufferComparator;
+	/** Java data ordering working on views over the native memory, takes precedence over {@link #dataComparator} */
+	private Comparator<ByteBuffer> dataBufferComparator;
+	/** Natively implemented key ordering, takes precedence over {@link #keyComparator} */
+	private NativeComparator keyNativeComparator;
+	/** Natively implemented data ordering, takes precedence over {@link #dataComparator} */
+	private NativeComparator dataNativeComparator;
 
 	public DatabaseConfig() {
 	}
@@ -150,6 +159,57 @@ public class DatabaseConfig implements Cloneable {
 		this.dataComparator = dataComparator;
 	}
 
+	/** @see #keyBufferComparator */
+	public Comparator<ByteBuffer> getKeyBufferComparator() {
+		return keyBufferComparator;
+	}
+
+	/**
+	 * Set a key comparator that receives read-only direct buffers over the keys in place, instead of a copy of
+	 * each key as with {@link #setKeyComparator(Comparator)}. The same two buffers are reused for every
+	 * comparison made on a thread, so the comparator must not retain them nor change their position, or must
+	 * work on absolute offsets.
+	 *
+	 * @see #keyBufferComparator
+	 */
+	public void setKeyBufferComparator(Comparator<ByteBuffer> keyBufferComparator) {
+		this.keyBufferComparator = keyBufferComparator;
+	}
+
+	/** @see #dataBufferComparator */
+	public Comparator<ByteBuffer> getDataBufferComparator() {
+		return dataBufferComparator;
+	}
+
+	/**
+	 * Set a data comparator that receives read-only direct buffers over the values in place.
+	 *
+	 * @see #setKeyBufferComparator(Comparator)
+	 */
+	public void setDataBufferComparator(Comparator<ByteBuffer> dataBufferComparator) {
+		this.dataBufferComparator = dataBufferComparator;
+	}
+
+	/** @see #keyNativeComparator */
+	public NativeComparator getKeyNativeComparator() {
+		return keyNativeComparator;
+	}
+
+	/** @see #keyNativeComparator */
+	public void setKeyNativeComparator(NativeComparator keyNativeComparator) {
+		this.keyNativeComparator = keyNativeComparator;
+	}
+
+	/** @see #dataNativeComparator */
+	public NativeComparator getDataNativeComparator() {
+		return dataNativeComparator;
+	}
+
+	/** @see #dataNativeComparator */
+	public void setDataNativeComparator(NativeComparator dataNativeComparator) {
+		this.dataNativeComparator = dataNativeComparator;
+	}
+
 	@Override
 	protected Object clone() throws CloneNotSupportedException {
 		return super.clone();
@@ -0,0 +1,261 @@
+package com.castortech.mdbxjni;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * Helper to expose native memory, such as the memory mapped pages returned by MDBX, as read-only direct
+ * {@link ByteBuffer} views without copying the content onto the heap.
+ * <p>
+ * Views are created by duplicating a read-only direct template buffer and retargeting its address and
+ * capacity, so no JNI call or native allocation is involved.
+ * </p>
+ * <p>
+ * The memory accesses go through a nested accessor, which looks {@code sun.misc.Unsafe} up reflectively so that
+ * nothing else depends on it.
+ * </p>
+ *
+ * @author Alain Picard
+ */
+/*package*/ final class DirectBuffers {
+	private static final long ADDRESS_OFFSET = Memory.fieldOffset(Buffer.class, "address"); //$NON-NLS-1$
+	private static final long CAPACITY_OFFSET = Memory.fieldOffset(Buffer.class, "capacity"); //$NON-NLS-1$
+	private static final ByteBuffer WRITABLE_TEMPLATE = ByteBuffer.allocateDirect(0);
+	private static final ByteBuffer TEMPLATE = WRITABLE_TEMPLATE.asReadOnlyBuffer();
+
+	private DirectBuffers() {
+	}
+
+	/**
+	 * Create a new read-only view over native memory.
+	 *
+	 * @param address start of the native memory
+	 * @param length number of bytes covered by the view
+	 * @return a read-only direct buffer positioned at 0 with a limit of length
+	 */
+	static ByteBuffer wrap(long address, long length) {
+		return retarget(TEMPLATE.duplicate(), address, length);
+	}
+
+	/**
+	 * Create a new writable view over native memory, e.g. for callbacks to write their output into.
+	 *
+	 * @param address start of the native memory
+	 * @param length number of bytes covered by the view
+	 * @return a writable direct buffer positioned at 0 with a limit of length
+	 */
+	static ByteBuffer wrapWritable(long address, long length) {
+		return retarget(WRITABLE_TEMPLATE.duplicate(), address, length);
+	}
+
+	/**
+	 * Point an existing view, previously obtained from {@link #wrap(long, long)} or
+	 * {@link #wrapWritable(long, long)}, to a new memory region. This
+	 * allows a view to be used as a flyweight in tight loops.
+	 *
+	 * @param view view to retarget
+	 * @param address start of the native memory
+	 * @param length number of bytes covered by the view
+	 * @return the view, positioned at 0 with a limit of length
+	 */
+	static ByteBuffer retarget(ByteBuffer view, long address, long length) {
+		if (length > Integer.MAX_VALUE) {
+			throw new ArrayIndexOutOfBoundsException("Native slice is larger than the maximum Java buffer"); //$NON-NLS-1$
+		}
+		Memory.putLong(view, ADDRESS_OFFSET, address);
+		Memory.putInt(view, CAPACITY_OFFSET, (int)length);
+		view.clear();
+		return view;
+	}
+
+	/**
+	 * Point an existing view to the memory described by a native MDBX_val structure, without going through
+	 * JNI to read the structure.
+	 *
+	 * @param view view to retarget
+	 * @param val address of an MDBX_val
+	 * @return the view, positioned at 0 with a limit of the value length
+	 */
+	static ByteBuffer retargetVal(ByteBuffer view, long val) {
+		return retarget(view, Memory.getAddress(val), Memory.getAddress(val + Memory.ADDRESS_SIZE));
+	}
+
+	/**
+	 * @param address native address of a pointer or size_t
+	 * @return the value read
+	 */
+	static long getAddress(long address) {
+		return Memory.getAddress(address);
+	}
+
+	/**
+	 * @param address native address of a pointer or size_t
+	 * @param value value to write
+	 */
+	static void putAddress(long address, long value) {
+		Memory.putAddress(address, value);
+	}
+
+	/**
+	 * Copy a byte array to native memory without going through JNI.
+	 *
+	 * @param address destination native address
+	 * @param source bytes to copy
+	 */
+	static void put(long address, byte[] source) {
+		Memory.copyMemory(source, Memory.BYTE_ARRAY_OFFSET, null, address, source.length);
+	}
+
+	/**
+	 * @return size in bytes of a native pointer or size_t
+	 */
+	static int addressSize() {
+		return Memory.ADDRESS_SIZE;
+	}
+
+	/**
+	 * Detach a view from its native memory. Any further attempt to read from it will fail with an
+	 * {@link IndexOutOfBoundsException} instead of reading memory that may have been unmapped or reused.
+	 *
+	 * @param view view to invalidate
+	 */
+	static void invalidate(ByteBuffer view) {
+		retarget(view, 0, 0);
+	}
+
+	/**
+	 * @param buffer a direct buffer
+	 * @return native address of the first byte of the buffer, disregarding its position
+	 */
+	static long address(ByteBuffer buffer) {
+		return Memory.getLong(buffer, ADDRESS_OFFSET);
+	}
+
+	/**
+	 * The few raw memory accesses needed, as method handles over {@code sun.misc.Unsafe}, which is looked up
+	 * reflectively rather than referenced. Constant handles invoked exactly are inlined by the JIT like direct
+	 * calls.
+	 */
+	private static final class Memory {
+		private static final MethodHandle FIELD_OFFSET;
+		private static final MethodHandle GET_LONG;
+		private static final MethodHandle PUT_LONG;
+		private static final MethodHandle PUT_INT;
+		private static final MethodHandle GET_ADDRESS;
+		private static final MethodHandle PUT_ADDRESS;
+		private static final MethodHandle COPY_MEMORY;
+		static final int ADDRESS_SIZE;
+		static final long BYTE_ARRAY_OFFSET;
+
+		static {
+			try {
+				Class<?> unsafeClass = Class.forName("sun.misc.Unsafe"); //$NON-NLS-1$
+				Field field = unsafeClass.getDeclaredField("theUnsafe"); //$NON-NLS-1$
+				field.setAccessible(true);
+				Object unsafe = field.get(null);
+				MethodHandles.Lookup lookup = MethodHandles.lookup();
+				FIELD_OFFSET = lookup.findVirtual(unsafeClass, "objectFieldOffset", //$NON-NLS-1$
+						MethodType.methodType(long.class, Field.class)).bindTo(unsafe);
+				GET_LONG = lookup.findVirtual(unsafeClass, "getLong", //$NON-NLS-1$
+						MethodType.methodType(long.class, Object.class, long.class)).bindTo(unsafe);
+				PUT_LONG = lookup.findVirtual(unsafeClass, "putLong", //$NON-NLS-1$
+						MethodType.methodType(void.class, Object.class, long.class, long.class)).bindTo(unsafe);
+				PUT_INT = lookup.findVirtual(unsafeClass, "putInt", //$NON-NLS-1$
+						MethodType.methodType(void.class, Object.class, long.class, int.class)).bindTo(unsafe);
+				GET_ADDRESS = lookup.findVirtual(unsafeClass, "getAddress", //$NON-NLS-1$
+						MethodType.methodType(long.class, long.class)).bindTo(unsafe);
+				PUT_ADDRESS = lookup.findVirtual(unsafeClass, "putAddress", //$NON-NLS-1$
+						MethodType.methodType(void.class, long.class, long.class)).bindTo(unsafe);
+				COPY_MEMORY = lookup.findVirtual(unsafeClass, "copyMemory", MethodType.methodType(void.class, //$NON-NLS-1$
+						Object.class, long.class, Object.class, long.class, long.class)).bindTo(unsafe);
+				ADDRESS_SIZE = (int)lookup.findVirtual(unsafeClass, "addressSize", //$NON-NLS-1$
+						MethodType.methodType(int.class)).invoke(unsafe);
+				BYTE_ARRAY_OFFSET = (int)lookup.findVirtual(unsafeClass, "arrayBaseOffset", //$NON-NLS-1$
+						MethodType.methodType(int.class, Class.class)).invoke(unsafe, byte[].class);
+			}
+			catch (Throwable e) {
+				throw new ExceptionInInitializerError(e);
+			}
+		}
+
+		private Memory() {
+		}
+
+		static long fieldOffset(Class<?> clazz, String name) {
+			try {
+				return (long)FIELD_OFFSET.invokeExact(clazz.getDeclaredField(name));
+			}
+			catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+
+		static long getLong(Object base, long offset) {
+			try {
+				return (long)GET_LONG.invokeExact(base, offset);
+			}
+			catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+
+		static void putLong(Object base, long offset, long value) {
+			try {
+				PUT_LONG.invokeExact(base, offset, value);
+			}
+			catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+
+		static void putInt(Object base, long offset, int value) {
+			try {
+				PUT_INT.invokeExact(base, offset, value);
+			}
+			catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+
+		static long getAddress(long address) {
+			try {
+				return (long)GET_ADDRESS.invokeExact(address);
+			}
+			catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+
+		static void putAddress(long address, long value) {
+			try {
+				PUT_ADDRESS.invokeExact(address, value);
+			}
+			catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+
+		static void copyMemory(Object srcBase, long srcOffset, Object destBase, long destOffset, long bytes) {
+			try {
+				COPY_MEMORY.invokeExact(srcBase, srcOffset, destBase, destOffset, bytes);
+			}
+			catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+
+		private static RuntimeException rethrow(Throwable e) {
+			if (e instanceof RuntimeException) {
+				return (RuntimeException)e;
+			}
+			if (e instanceof Error) {
+				throw (Error)e;
+			}
+			return new IllegalStateException(e);
+		}
+	}
+}
@@ -19,9 +19,19 @@
 package com.castortech.mdbxjni;
 
 import java.io.Closeable;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import org.fusesource.hawtjni.runtime.Callback;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +41,8 @@ import com.castortech.mdbxjni.JNI.MDBX_stat;
 import com.castortech.mdbxjni.pool.CursorPool;
 import com.castortech.mdbxjni.pool.CursorPoolConfig;
 import com.castortech.mdbxjni.pool.CursorPoolImpl;
+import com.castortech.mdbxjni.pool.ThreadLocalCursorPool;
+import com.castortech.mdbxjni.pool.TransactionCursorPool;
 
 import static com.castortech.mdbxjni.Constants.NEXT_NODUP;
 import static com.castortech.mdbxjni.Constants.string;
@@ -56,13 +68,21 @@ public class Env extends NativeObject implements Closeable {
 
 	private static final String MAIN_DB = "MAIN_DB"; //$NON-NLS-1$
 
-	private Callback keyCmpCallback = null;
-	private Callback dataCmpCallback = null;
 	private Callback loggerCallback = null;
-	private Comparator<byte[]> keyComparator;
-	private Comparator<byte[]> dataComparator;
+	/** Comparator trampolines of the databases opened with a Java comparator, kept to be disposed on close */
+	private final Set<ComparatorCallback> comparatorCallbacks = ConcurrentHashMap.newKeySet();
 	private Database mainDb;  //represents the main DB used by MDBX to maintain the list of databases
 	private CursorPool cursorPool;
+	private boolean debugBufferViews;
+	/** Per thread read transactions used by the convenience read methods, null if disabled */
+	private ReadTransactionCache readTxnCache;
+	private volatile CompletableFuture<Boolean> warmup;
+	private WriteQueue writeQueue;
+	private boolean writeQueueClosed;
+	/** Threads running the partitions of parallel scans without an executor of their own, created on first use */
+	private ExecutorService scanExecutor;
+	private int writeBatchSize = EnvConfig.DEFAULT_WRITE_BATCH_SIZE;
+	private Duration writeBatchLatency = Duration.ZERO;
 
 	/**
 	 * Create an environment handle and open it at the same time with default
@@ -157,6 +177,9 @@ public class Env extends NativeObject implements Closeable {
 			mainDb = new Database(this, 1L, MAIN_DB);
 		}
 		checkErrorCode(this, rc);
+
+		// same bounded cache as an environment opened with the default configuration
+		readTxnCache = createReadTransactionCache(new EnvConfig(), (flags & EnvFlags.NOSTICKYTHREADS) != 0);
 	}
 
 	public void open(String path, EnvConfig config) {
@@ -187,7 +210,7 @@ public class Env extends NativeObject implements Closeable {
 			flags |= EnvFlags.WRITEMAP;
 		}
 
-		if (config.isNoStickyThreads()) {
+		if (config.isNoStickyThreads() || config.isVirtualThreads()) {
 			flags |= EnvFlags.NOSTICKYTHREADS;
 		}
 
@@ -267,14 +290,73 @@ public class Env extends NativeObject implements Closeable {
 			poolConfig.setMaxIdlePerKey(config.getPooledCursorMaxIdle());
 			poolConfig.setSoftMinEvictableIdleTime(config.getPooledCursorMinEvictableIdleTime());
 			poolConfig.setCloseMaxWaitSeconds(config.getPooledCloseMaxWaitSeconds());
-			cursorPool = new CursorPoolImpl(poolConfig, this);
+			if (config.isVirtualThreads()) {
+				cursorPool = new TransactionCursorPool(poolConfig, this);
+			}
+			else {
+				@SuppressWarnings("deprecation")
+				CursorPool pool = config.isUseCommonsCursorPool() ? new CursorPoolImpl(poolConfig, this)
+						: new ThreadLocalCursorPool(poolConfig, this);
+				cursorPool = pool;
+			}
 		}
+		debugBufferViews = config.isDebugBufferViews();
 		checkErrorCode(this, rc);
+
+		// a cached snapshot per virtual thread would exhaust the reader slots
+		readTxnCache = config.isVirtualThreads() ? null
+				: createReadTransactionCache(config, config.isNoStickyThreads());
+
+		writeBatchSize = config.getWriteBatchSize();
+		writeBatchLatency = config.getWriteBatchLatency();
+		if (config.isVirtualThreads()) {
+			writeQueue = new WriteQueue(this, writeBatchSize, writeBatchLatency);
+		}
+
+		if (config.isWarmupOnOpen()) {
+			warmupInBackground(config.getWarmupFlags(), config.getWarmupTimeout(), config.getWarmupListener());
+		}
+	}
+
+	/**
+	 * @return the cache of read transactions per thread configured, null if disabled
+	 */
+	private ReadTransactionCache createReadTransactionCache(EnvConfig config, boolean noStickyThreads) {
+		if (!config.isCacheReadTransactions()) {
+			return null;
+		}
+		int maxCachedReads = config.getMaxCachedReadTransactions() >= 0 ? config.getMaxCachedReadTransactions()
+				: (int)(getMaxReaders() / 2);
+		return new ReadTransactionCache(this, config.getReadTransactionMaxAge(), config.getReadTransactionMaxLag(),
+				config.getParkIdleReadersAfter(), config.getReadTransactionIdleTimeout(), maxCachedReads,
+				noStickyThreads);
 	}
 
 	@Override
 	public void close() {
 		if (self != 0) {
+			CompletableFuture<Boolean> pending = warmup;
+			if (pending != null) {
+				pending.handle((completed, e) -> null).join();  // pages can't be unmapped while being peeked
+			}
+			WriteQueue queue;
+			ExecutorService scans;
+			synchronized (this) {
+				queue = writeQueue;
+				writeQueue = null;
+				writeQueueClosed = true;
+				scans = scanExecutor;
+				scanExecutor = null;
+			}
+			if (queue != null) {
+				queue.close();  // lets the queued writes complete, outside the lock they may need to queue more
+			}
+			if (scans != null) {
+				scans.shutdown();
+			}
+			if (readTxnCache != null) {
+				readTxnCache.close();  // first, as it gives the cursors of its transactions back to the pool
+			}
 			if (getCursorPool() != null) {
 				getCursorPool().close();
 				cursorPool = null;
@@ -284,15 +366,8 @@ public class Env extends NativeObject implements Closeable {
 			self = 0;
 		}
 
-		if (keyCmpCallback != null) {
-			keyCmpCallback.dispose();
-			keyCmpCallback = null;
-		}
-
-		if (dataCmpCallback != null) {
-			dataCmpCallback.dispose();
-			dataCmpCallback = null;
-		}
+		comparatorCallbacks.forEach(ComparatorCallback::dispose);
+		comparatorCallbacks.clear();
 	}
 
 	/**
@@ -317,6 +392,96 @@ public class Env extends NativeObject implements Closeable {
 		checkErrorCode(this, mdbx_env_copy(pointer(), path, flags));
 	}
 
+	/**
+	 * <p>
+	 * Warm up the environment by loading its pages into memory.
+	 * </p>
+	 *
+	 * By default the OS is only asked to prefetch the pages asynchronously. With {@link Constants#WARMUP_FORCE}
+	 * the pages are peeked and loaded before returning, {@link Constants#WARMUP_OOMSAFE} peeks them with system
+	 * calls, so that a lack of memory can't get the process killed, and {@link Constants#WARMUP_LOCK} locks them
+	 * in memory until {@link Constants#WARMUP_RELEASE} or the environment is closed.
+	 *
+	 * @param flags
+	 *            warm-up flags, bitwise OR'ed together
+	 * @param timeout
+	 *            time budget for peeking the pages, null or zero for none
+	 * @return true if the warm-up completed, false if the time budget ran out before
+	 */
+	public boolean warmup(int flags, Duration timeout) {
+		if (log.isTraceEnabled())
+			log.trace("Calling env warmup for {} with flags {}", this, flags); //$NON-NLS-1$
+		int rc = mdbx_env_warmup(pointer(), 0, flags, seconds16dot16(timeout));
+		if (rc == MDBX_RESULT_TRUE) {
+			return false;
+		}
+		checkErrorCode(this, rc);
+		return true;
+	}
+
+	/**
+	 * <p>
+	 * Warm up the environment on a background thread, see {@link #warmup(int, Duration)}.
+	 * </p>
+	 *
+	 * A node can wait on the returned future before reporting itself ready, so that it doesn't serve cold
+	 * reads. Closing the environment waits for the warm-up to end.
+	 *
+	 * @param flags
+	 *            warm-up flags, bitwise OR'ed together
+	 * @param timeout
+	 *            time budget for peeking the pages, null or zero for none
+	 * @param listener
+	 *            listener notified of the progress of the warm-up, null for none
+	 * @return future completed with true if the warm-up completed, false if the time budget ran out before
+	 */
+	public CompletableFuture<Boolean> warmupInBackground(int flags, Duration timeout, WarmupListener listener) {
+		CompletableFuture<Boolean> rc = new CompletableFuture<>();
+		Thread thread = new Thread(() -> {
+			long start = System.nanoTime();
+			try {
+				if (listener != null) {
+					MDBX_envinfo info = new MDBX_envinfo();
+					checkErrorCode(this, mdbx_env_info(pointer(), info, JNI.SIZEOF_ENVINFO));
+					listener.warmupStarted(this, (info.mi_last_pgno + 1) * info.mi_dxb_pagesize);
+				}
+				boolean completed = warmup(flags, timeout);
+				if (listener != null) {
+					listener.warmupEnded(this, completed, Duration.ofNanos(System.nanoTime() - start));
+				}
+				rc.complete(completed);
+			}
+			catch (Throwable e) {
+				log.warn("Failed warming up {}", this, e); //$NON-NLS-1$
+				if (listener != null) {
+					listener.warmupFailed(this, e);
+				}
+				rc.completeExceptionally(e);
+			}
+		}, "mdbx-warmup"); //$NON-NLS-1$
+		thread.setDaemon(true);
+		warmup = rc;
+		thread.start();
+		return rc;
+	}
+
+	/**
+	 * @return future of the last background warm-up, or null if there was none
+	 */
+	public CompletableFuture<Boolean> getWarmup() {
+		return warmup;
+	}
+
+	private static long seconds16dot16(Duration duration) {
+		if (duration == null || duration.isNegative()) {
+			return 0;
+		}
+		if (duration.getSeconds() >= 0xFFFF) {
+			return 0xFFFFFFFFL;
+		}
+		return duration.getSeconds() << 16 | ((long)duration.getNano() << 16) / 1_000_000_000L;
+	}
+
 	/**
 	 * <p>
 	 * Flush the data buffers to disk.
@@ -515,6 +680,14 @@ public class Env extends NativeObject implements Closeable {
 		return cursorPool != null;
 	}
 
+	/**
+	 * @return true if buffer views are tracked and invalidated at the end of their transaction
+	 * @see EnvConfig#setDebugBufferViews(boolean)
+	 */
+	public boolean isDebugBufferViews() {
+		return debugBufferViews;
+	}
+
 	/**
 	 * <p>
 	 * Set the maximum number of named databases for the environment.
@@ -625,6 +798,85 @@ public class Env extends NativeObject implements Closeable {
 		return new EnvInfo(rc);
 	}
 
+	/**
+	 * <p>
+	 * Run work within a write transaction on the dedicated writer thread, committing it once the work returns
+	 * and aborting it if it throws.
+	 * </p>
+	 *
+	 * The calling thread blocks until the transaction is committed, which for a virtual thread means unmounting
+	 * from its carrier instead of pinning it while waiting for the writer lock. The work must only use the
+	 * transaction it is given and must not itself submit writes.
+	 * <p>
+	 * Writes submitted concurrently are grouped, each in a nested transaction of a shared one, so that they
+	 * share a single commit, see {@link EnvConfig#setWriteBatchSize(int)} and
+	 * {@link EnvConfig#setWriteBatchLatency(Duration)}. The work given is then a nested transaction, only its
+	 * own changes are rolled back if it throws, and its result is only available once the whole group is
+	 * committed.
+	 * </p>
+	 *
+	 * @param work
+	 *            work to run with the write transaction
+	 * @return result of the work
+	 * @see EnvConfig#setVirtualThreads(boolean)
+	 */
+	public <R> R write(Function<Transaction, R> work) {
+		try {
+			return writeAsync(work).join();
+		}
+		catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error)e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Queue work to run within a write transaction on the dedicated writer thread, see {@link #write(Function)}.
+	 *
+	 * @param work
+	 *            work to run with the write transaction
+	 * @return future completed with the result of the work once its transaction is committed
+	 */
+	public <R> CompletableFuture<R> writeAsync(Function<Transaction, R> work) {
+		checkArgNotNull(work, "work"); //$NON-NLS-1$
+		return getWriteQueue().submit(work);
+	}
+
+	/**
+	 * @return the pool shared by the parallel scans of the environment. Its threads are created as needed,
+	 *         since all the partitions of a scan must run at once, and are reused by the next scans until
+	 *         they have been idle for a minute.
+	 */
+	/*package*/ synchronized Executor getScanExecutor() {
+		if (scanExecutor == null) {
+			if (self == 0 || writeQueueClosed) {
+				throw new IllegalStateException("The environment is closed"); //$NON-NLS-1$
+			}
+			AtomicInteger threads = new AtomicInteger();
+			scanExecutor = Executors.newCachedThreadPool(r -> {
+				Thread thread = new Thread(r, "mdbx-scan-" + threads.incrementAndGet()); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return scanExecutor;
+	}
+
+	private synchronized WriteQueue getWriteQueue() {
+		if (writeQueue == null) {
+			if (self == 0 || writeQueueClosed) {
+				throw new IllegalStateException("The environment is closed"); //$NON-NLS-1$
+			}
+			writeQueue = new WriteQueue(this, writeBatchSize, writeBatchLatency);
+		}
+		return writeQueue;
+	}
+
 	/**
 	 * Version of the method that runs within a transaction. Replaces previous version from {@link Env}
 	 *
@@ -787,17 +1039,64 @@ public class Env extends NativeObject implements Closeable {
 	 * <b>Note</b> Cursors may not span transactions.
 	 */
 	public Transaction createTransaction(Transaction parent, boolean readOnly) {
+		suspendCachedReadTransaction(parent);
 		long[] txpointer = new long[1];
 		checkErrorCode(this, mdbx_txn_begin(pointer(),
 				parent == null ? 0 : parent.pointer(), readOnly ? MDBX_RDONLY : 0, txpointer));
-		return new Transaction(this, txpointer[0], readOnly);
+		return new Transaction(this, txpointer[0], readOnly, parent != null, null);
 	}
 
 	public Transaction createTransaction(Transaction parent, boolean readOnly, NativeObject ctx) {
+		suspendCachedReadTransaction(parent);
 		long[] txpointer = new long[1];
 		checkErrorCode(this, mdbx_txn_begin_ex(pointer(),
 				parent == null ? 0 : parent.pointer(), readOnly ? MDBX_RDONLY : 0, txpointer, ctx.pointer()));
-		return new Transaction(this, txpointer[0], readOnly);
+		return new Transaction(this, txpointer[0], readOnly, parent != null, null);
+	}
+
+	/**
+	 * <p>
+	 * Get the read-only transaction cached for the current thread.
+	 * </p>
+	 *
+	 * The transaction is recycled with reset/renew rather than created, so a read never waits on the writer
+	 * lock. It must be closed, which gives it back to the cache instead of freeing it, and must not be used
+	 * afterwards. Acquisitions may be nested on a thread, in which case they share the same snapshot. Its
+	 * snapshot may lag behind the latest commit within the bounds set by
+	 * {@link EnvConfig#setReadTransactionMaxAge(Duration)} and {@link EnvConfig#setReadTransactionMaxLag(long)}.
+	 * If the cache is disabled, this is the same as {@link #createReadTransaction()}.
+	 *
+	 * @return read-only transaction handle
+	 * @see EnvConfig#setCacheReadTransactions(boolean)
+	 */
+	public Transaction acquireReadTransaction() {
+		if (readTxnCache == null) {
+			return createReadTransaction();
+		}
+		return readTxnCache.acquire();
+	}
+
+	/**
+	 * Free the read-only transaction cached for the current thread, if any, along with its reader slot, e.g.
+	 * before a thread of a pool is retired. The next {@link #acquireReadTransaction()} of the thread begins a
+	 * new one.
+	 *
+	 * @throws MDBXException if the transaction is still in use by the current thread
+	 */
+	public void releaseCachedReadTransaction() {
+		if (readTxnCache != null) {
+			readTxnCache.releaseCurrent();
+		}
+	}
+
+	/**
+	 * A thread can only have a single transaction at a time, so a snapshot kept by the cache must be released
+	 * before beginning another top level transaction.
+	 */
+	private void suspendCachedReadTransaction(Transaction parent) {
+		if (parent == null && readTxnCache != null) {
+			readTxnCache.suspend();
+		}
 	}
 
 	/**
@@ -885,8 +1184,10 @@ public class Env extends NativeObject implements Closeable {
 		checkArgNotNull(tx, "tx"); //$NON-NLS-1$
 		int flags = setFlags(config);
 
-		if (config.getKeyComparator() != null || config.getDataComparator() != null) {
-			return openDatabase(tx, name, flags, config.getKeyComparator(), config.getDataComparator());
+		if (config.getKeyComparator() != null || config.getDataComparator() != null
+				|| config.getKeyBufferComparator() != null || config.getDataBufferComparator() != null
+				|| config.getKeyNativeComparator() != null || config.getDataNativeComparator() != null) {
+			return openDatabase(tx, name, flags, config);
 		}
 
 		return openDatabase(tx, name, flags);
@@ -955,54 +1256,85 @@ public class Env extends NativeObject implements Closeable {
 		if (tx == null) {
 			return openDatabase(name, flags, keyComp, dataComp);
 		}
+		DatabaseConfig config = new DatabaseConfig();
+		config.setKeyComparator(keyComp);
+		config.setDataComparator(dataComp);
+		return openDatabase(tx, name, flags, config);
+	}
 
-		long keyCmpAddr = 0L;
-		long dataCmpAddr = 0L;
-
+	/**
+	 * Open a database with custom orderings. For each of the key and data slots, a native comparator, evaluated
+	 * without calling back into the JVM, takes precedence over a buffer comparator, which in turn takes
+	 * precedence over a byte array comparator. Java comparators get their own trampoline, owned by the
+	 * returned database.
+	 */
+	private Database openDatabase(Transaction tx, String name, int flags, DatabaseConfig config) {
 		checkArgNotNull(tx, "tx"); //$NON-NLS-1$
 		// checkArgNotNull(name, "name");
 		long[] dbi = new long[1];
 
-		if (keyComp != null) {
-			keyCmpCallback = new Callback(this, "compareKey", 2); //$NON-NLS-1$
-			keyCmpAddr = keyCmpCallback.getAddress();
-			keyComparator = keyComp;
-		}
+		ComparatorCallback keyCallback = null;
+		ComparatorCallback dataCallback = null;
+		boolean succeeded = false;
+		try {
+			long keyCmpAddr = 0L;
+			if (config.getKeyNativeComparator() != null) {
+				keyCmpAddr = config.getKeyNativeComparator().address();
+			}
+			else if (config.getKeyBufferComparator() != null) {
+				keyCallback = ComparatorCallback.createForBuffers(config.getKeyBufferComparator());
+				keyCmpAddr = keyCallback.getAddress();
+			}
+			else if (config.getKeyComparator() != null) {
+				keyCallback = ComparatorCallback.create(config.getKeyComparator());
+				keyCmpAddr = keyCallback.getAddress();
+			}
 
-		if (dataComp != null) {
-			dataCmpCallback = new Callback(dataComp.getClass(), "compareData", 2); //$NON-NLS-1$
-			dataCmpAddr = dataCmpCallback.getAddress();
-			dataComparator = dataComp;
-		}
+			long dataCmpAddr = 0L;
+			if (config.getDataNativeComparator() != null) {
+				dataCmpAddr = config.getDataNativeComparator().address();
+			}
+			else if (config.getDataBufferComparator() != null) {
+				dataCallback = ComparatorCallback.createForBuffers(config.getDataBufferComparator());
+				dataCmpAddr = dataCallback.getAddress();
+			}
+			else if (config.getDataComparator() != null) {
+				dataCallback = ComparatorCallback.create(config.getDataComparator());
+				dataCmpAddr = dataCallback.getAddress();
+			}
 
-		checkErrorCode(this, tx, mdbx_dbi_open_ex(tx.pointer(), name, flags, dbi, keyCmpAddr, dataCmpAddr));
-		return new Database(this, dbi[0], name);
+			checkErrorCode(this, tx, mdbx_dbi_open_ex(tx.pointer(), name, flags, dbi, keyCmpAddr, dataCmpAddr));
+			Database db = new Database(this, dbi[0], name);
+			db.setComparatorCallbacks(keyCallback, dataCallback);
+			db.setCustomOrder(keyCmpAddr != 0L, dataCmpAddr != 0L);
+			registerComparatorCallback(keyCallback);
+			registerComparatorCallback(dataCallback);
+			succeeded = true;
+			return db;
+		}
+		finally {
+			if (!succeeded) {
+				if (keyCallback != null)
+					keyCallback.dispose();
+				if (dataCallback != null)
+					dataCallback.dispose();
+			}
+		}
 	}
 
-	public long compareKey(long o1, long o2) {  //NOUCD: Called via Callback constructor in openDatabase
-		Value v1 = new Value();
-		map_val(o1, v1);
-
-		Value v2 = new Value();
-		map_val(o2, v2);
-
-		byte[] key1 = v1.toByteArray();
-		byte[] key2 = v2.toByteArray();
-
-		return keyComparator.compare(key1, key2);
+	private void registerComparatorCallback(ComparatorCallback callback) {
+		if (callback != null) {
+			comparatorCallbacks.add(callback);
+		}
 	}
 
-	public long compareData(long o1, long o2) {  //NOUCD: Called via Callback constructor in openDatabase
-		Value v1 = new Value();
-		map_val(o1, v1);
-
-		Value v2 = new Value();
-		map_val(o2, v2);
-
-		byte[] key1 = v1.toByteArray();
-		byte[] key2 = v2.toByteArray();
-
-		return dataComparator.compare(key1, key2);
+	/**
+	 * Dispose a comparator trampoline once its database is closed.
+	 */
+	/*package*/ void releaseComparatorCallback(ComparatorCallback callback) {
+		if (callback != null && comparatorCallbacks.remove(callback)) {
+			callback.dispose();
+		}
 	}
 
 	/**
@@ -1111,10 +1443,22 @@ public class Env extends NativeObject implements Closeable {
 		return dbNames;
 	}
 
+	/**
+	 * Allocate the native buffers of the current thread from chunks of the given size until
+	 * {@link #popMemoryPool()} is called.
+	 *
+	 * @deprecated the byte[] operations of {@link Database} and {@link Cursor} copy their arguments into a per
+	 *             thread arena that needs no setup, so this only still applies to the less common operations
+	 */
+	@Deprecated
 	public static void pushMemoryPool(int size) {
 		NativeBuffer.pushMemoryPool(size);
 	}
 
+	/**
+	 * @deprecated see {@link #pushMemoryPool(int)}
+	 */
+	@Deprecated
 	public static void popMemoryPool() {
 		NativeBuffer.popMemoryPool();
 	}
@@ -5,6 +5,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class EnvConfig implements Cloneable {
+	public static final int DEFAULT_WRITE_BATCH_SIZE = 256;
+
 	/** Extra validation of DB structure and pages content. */
 	private boolean validation = false;
 	private boolean noSubDir = false;
@@ -44,6 +46,14 @@ public class EnvConfig implements Cloneable {
 	/** True if cursors should be pooled and use bind/renew instead of standard open/close */
 	private boolean usePooledCursors = false;
 
+	/**
+	 * True to pool cursors with the former commons-pool based implementation instead of per thread caches
+	 *
+	 * @deprecated the per thread caches need no locking nor evictor thread, this will be removed
+	 */
+	@Deprecated
+	private boolean useCommonsCursorPool = false;
+
 	/** Time between runs of the evictor thread */
 	private Duration pooledCursorTimeBetweenEvictionRuns = Duration.ofMinutes(3);
 
@@ -56,6 +66,88 @@ public class EnvConfig implements Cloneable {
 	/** Maximum number of seconds to wait for active cursors to be released when the pool is closing */
 	private int pooledCloseMaxWaitSeconds = 10;
 
+	/**
+	 * True if buffer views returned by the zero-copy read methods should be tracked by their transaction and
+	 * invalidated when it ends, so that any use after commit/abort/reset fails instead of reading stale or
+	 * unmapped memory. Meant for development and testing as it adds bookkeeping to every read.
+	 */
+	private boolean debugBufferViews = false;
+
+	/**
+	 * True if the convenience read methods, i.e. those without a transaction argument, should use a read-only
+	 * transaction cached per thread and recycled with reset/renew instead of beginning a new one every time.
+	 * Unless {@link #setNoStickyThreads(boolean)}, the transaction of a thread that terminates can't be freed
+	 * by another thread and its handle is leaked, which counts against {@link #maxCachedReadTransactions} so
+	 * that threads are no longer cached once that many have been leaked.
+	 */
+	private boolean cacheReadTransactions = true;
+
+	/**
+	 * Maximum time a cached read transaction keeps its snapshot between uses. With both this and
+	 * {@link #readTransactionMaxLag} at zero, the snapshot is released after every use and each read sees the
+	 * latest committed data.
+	 */
+	private Duration readTransactionMaxAge = Duration.ZERO;
+
+	/** Maximum number of write transactions committed since the snapshot of a cached read transaction */
+	private long readTransactionMaxLag = 0;
+
+	/**
+	 * Idle time after which the snapshot kept by a cached read transaction is parked, letting writers oust it
+	 * to recycle its pages. Parking after a delay requires {@link #setNoStickyThreads(boolean)}, otherwise
+	 * snapshots are parked as soon as they become idle. Null to never park them.
+	 */
+	private Duration parkIdleReadersAfter = null;
+
+	/**
+	 * Idle time after which a cached read transaction is freed along with its reader slot, the thread beginning
+	 * a new one on its next read. Only applies with {@link #setNoStickyThreads(boolean)}, since transactions
+	 * tied to their thread can only be freed by it. Null to never free them.
+	 */
+	private Duration readTransactionIdleTimeout = Duration.ofMinutes(1);
+
+	/**
+	 * Maximum number of read transactions cached, threads beyond it getting a transaction freed after every
+	 * use. Negative for half the reader slots of the environment.
+	 */
+	private int maxCachedReadTransactions = -1;
+
+	/**
+	 * True to support using the environment from virtual threads. Transactions are then not tied to the thread
+	 * that began them ({@link #setNoStickyThreads(boolean)}), read transactions are not cached per thread,
+	 * pooled cursors are cached per transaction then shared by all threads rather than kept per thread, native
+	 * copies made by virtual threads are released as soon as their operation completes, and
+	 * {@link Env#write(java.util.function.Function)} runs write transactions on a dedicated platform thread.
+	 */
+	private boolean virtualThreads = false;
+
+	/**
+	 * Maximum number of writes submitted with {@link Env#writeAsync(java.util.function.Function)} grouped in a
+	 * transaction
+	 */
+	private int writeBatchSize = DEFAULT_WRITE_BATCH_SIZE;
+
+	/**
+	 * Time the writer waits for more writes before committing a batch that isn't full. Zero to commit as soon as
+	 * the writes queued so far are done, which already groups them under load.
+	 */
+	private Duration writeBatchLatency = Duration.ZERO;
+
+	/**
+	 * True to warm up the environment in the background once opened, see
+	 * {@link Env#warmupInBackground(int, Duration, WarmupListener)}
+	 */
+	private boolean warmupOnOpen = false;
+
+	/** Warm-up flags, e.g. {@link Constants#WARMUP_FORCE}, bitwise OR'ed together */
+	private int warmupFlags = Constants.WARMUP_DEFAULT;
+
+	/** Time budget of the warm-up on open, null for none */
+	private Duration warmupTimeout = null;
+
+	/** Listener notified of the progress of the warm-up on open, null for none */
+	private WarmupListener warmupListener = null;
+
 	public int getMode() {
 		return mode;
 	}
@@ -362,6 +454,190 @@ public class EnvConfig implements Cloneable {
 		this.pooledCloseMaxWaitSeconds = pooledCloseMaxWaitSeconds;
 	}
 
+	/** @deprecated see {@link #useCommonsCursorPool} */
+	@Deprecated
+	public boolean isUseCommonsCursorPool() {
+		return useCommonsCursorPool;
+	}
+
+	/**
+	 * @see #useCommonsCursorPool
+	 * @param useCommonsCursorPool
+	 * @deprecated see {@link #useCommonsCursorPool}
+	 */
+	@Deprecated
+	public void setUseCommonsCursorPool(boolean useCommonsCursorPool) {
+		this.useCommonsCursorPool = useCommonsCursorPool;
+	}
+
+	public boolean isDebugBufferViews() {
+		return debugBufferViews;
+	}
+
+	/**
+	 * @see #debugBufferViews
+	 * @param debugBufferViews
+	 */
+	public void setDebugBufferViews(boolean debugBufferViews) {
+		this.debugBufferViews = debugBufferViews;
+	}
+
+	public boolean isCacheReadTransactions() {
+		return cacheReadTransactions;
+	}
+
+	/**
+	 * @see #cacheReadTransactions
+	 * @param cacheReadTransactions
+	 */
+	public void setCacheReadTransactions(boolean cacheReadTransactions) {
+		this.cacheReadTransactions = cacheReadTransactions;
+	}
+
+	public Duration getReadTransactionMaxAge() {
+		return readTransactionMaxAge;
+	}
+
+	/**
+	 * @see #readTransactionMaxAge
+	 * @param readTransactionMaxAge
+	 */
+	public void setReadTransactionMaxAge(Duration readTransactionMaxAge) {
+		this.readTransactionMaxAge = readTransactionMaxAge;
+	}
+
+	public long getReadTransactionMaxLag() {
+		return readTransactionMaxLag;
+	}
+
+	/**
+	 * @see #readTransactionMaxLag
+	 * @param readTransactionMaxLag
+	 */
+	public void setReadTransactionMaxLag(long readTransactionMaxLag) {
+		this.readTransactionMaxLag = readTransactionMaxLag;
+	}
+
+	public Duration getParkIdleReadersAfter() {
+		return parkIdleReadersAfter;
+	}
+
+	/**
+	 * @see #parkIdleReadersAfter
+	 * @param parkIdleReadersAfter
+	 */
+	public void setParkIdleReadersAfter(Duration parkIdleReadersAfter) {
+		this.parkIdleReadersAfter = parkIdleReadersAfter;
+	}
+
+	public Duration getReadTransactionIdleTimeout() {
+		return readTransactionIdleTimeout;
+	}
+
+	/**
+	 * @see #readTransactionIdleTimeout
+	 * @param readTransactionIdleTimeout
+	 */
+	public void setReadTransactionIdleTimeout(Duration readTransactionIdleTimeout) {
+		this.readTransactionIdleTimeout = readTransactionIdleTimeout;
+	}
+
+	public int getMaxCachedReadTransactions() {
+		return maxCachedReadTransactions;
+	}
+
+	/**
+	 * @see #maxCachedReadTransactions
+	 * @param maxCachedReadTransactions
+	 */
+	public void setMaxCachedReadTransactions(int maxCachedReadTransactions) {
+		this.maxCachedReadTransactions = maxCachedReadTransactions;
+	}
+
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	/**
+	 * @see #virtualThreads
+	 * @param virtualThreads
+	 */
+	public void setVirtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+
+	public int getWriteBatchSize() {
+		return writeBatchSize;
+	}
+
+	/**
+	 * @see #writeBatchSize
+	 * @param writeBatchSize
+	 */
+	public void setWriteBatchSize(int writeBatchSize) {
+		this.writeBatchSize = writeBatchSize;
+	}
+
+	public Duration getWriteBatchLatency() {
+		return writeBatchLatency;
+	}
+
+	/**
+	 * @see #writeBatchLatency
+	 * @param writeBatchLatency
+	 */
+	public void setWriteBatchLatency(Duration writeBatchLatency) {
+		this.writeBatchLatency = writeBatchLatency;
+	}
+
+	public boolean isWarmupOnOpen() {
+		return warmupOnOpen;
+	}
+
+	/**
+	 * @see #warmupOnOpen
+	 * @param warmupOnOpen
+	 */
+	public void setWarmupOnOpen(boolean warmupOnOpen) {
+		this.warmupOnOpen = warmupOnOpen;
+	}
+
+	public int getWarmupFlags() {
+		return warmupFlags;
+	}
+
+	/**
+	 * @see #warmupFlags
+	 * @param warmupFlags
+	 */
+	public void setWarmupFlags(int warmupFlags) {
+		this.warmupFlags = warmupFlags;
+	}
+
+	public Duration getWarmupTimeout() {
+		return warmupTimeout;
+	}
+
+	/**
+	 * @see #warmupTimeout
+	 * @param warmupTimeout
+	 */
+	public void setWarmupTimeout(Duration warmupTimeout) {
+		this.warmupTimeout = warmupTimeout;
+	}
+
+	public WarmupListener getWarmupListener() {
+		return warmupListener;
+	}
+
+	/**
+	 * @see #warmupListener
+	 * @param warmupListener
+	 */
+	public void setWarmupListener(WarmupListener warmupListener) {
+		this.warmupListener = warmupListener;
+	}
+
 	public List<EnvOption> getOptions() {
 		return options;
 	}
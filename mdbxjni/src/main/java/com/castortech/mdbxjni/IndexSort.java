@@ -0,0 +1,83 @@
+package com.castortech.mdbxjni;
+
+/**
+ * Sort of a primitive index of records, for the records kept off-heap or in a list that are sorted through
+ * the positions of their index rather than moved, without allocating anything per record.
+ *
+ * @author Alain Picard
+ */
+/*package*/ final class IndexSort {
+	private static final int INSERTION_SORT_SIZE = 16;
+
+	/** Order of two records given by their index */
+	@FunctionalInterface
+	interface RecordComparator {
+		int compare(int record1, int record2);
+	}
+
+	private IndexSort() {
+	}
+
+	/**
+	 * @return an index of records 0 to size - 1, sorted by the comparator. The sort isn't stable, so a
+	 *         comparator that must keep the order of equal records compares their index last.
+	 */
+	static int[] sort(int size, RecordComparator comparator) {
+		int[] order = new int[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		sort(order, 0, size - 1, comparator);
+		return order;
+	}
+
+	/**
+	 * Quicksort of the index between lo and hi inclusive, partitioning around the median of three so that
+	 * presorted input and runs of equal keys stay balanced, and recursing into the smaller side only.
+	 */
+	private static void sort(int[] order, int lo, int hi, RecordComparator comparator) {
+		while (hi - lo >= INSERTION_SORT_SIZE) {
+			int pivot = median(order[lo], order[(lo + hi) >>> 1], order[hi], comparator);
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (comparator.compare(order[i], pivot) < 0) {
+					i++;
+				}
+				while (comparator.compare(order[j], pivot) > 0) {
+					j--;
+				}
+				if (i <= j) {
+					int record = order[i];
+					order[i++] = order[j];
+					order[j--] = record;
+				}
+			}
+			if (j - lo < hi - i) {
+				sort(order, lo, j, comparator);
+				lo = i;
+			}
+			else {
+				sort(order, i, hi, comparator);
+				hi = j;
+			}
+		}
+
+		for (int i = lo + 1; i <= hi; i++) {
+			int record = order[i];
+			int j = i - 1;
+			while (j >= lo && comparator.compare(order[j], record) > 0) {
+				order[j + 1] = order[j];
+				j--;
+			}
+			order[j + 1] = record;
+		}
+	}
+
+	private static int median(int r1, int r2, int r3, RecordComparator comparator) {
+		if (comparator.compare(r1, r2) < 0) {
+			return comparator.compare(r2, r3) < 0 ? r2 : comparator.compare(r1, r3) < 0 ? r3 : r1;
+		}
+		return comparator.compare(r1, r3) < 0 ? r1 : comparator.compare(r2, r3) < 0 ? r3 : r2;
+	}
+}
@@ -2049,11 +2049,151 @@ public class JNI {
 		public long iov_len;
 	}
 
+	@JniField(accessor="sizeof(MDBX_val)", flags={CONSTANT})
+	public static int SIZEOF_VAL;
+
+	//====================================================//
+	// Native comparators (see comparators.c)
+	//====================================================//
+	/** @see NativeComparator#LEXICOGRAPHIC */
+	@JniField(accessor="(intptr_t)mdbxjni_cmp_lexicographic", flags={CONSTANT})
+	public static long MDBXJNI_CMP_LEXICOGRAPHIC;
+	/** @see NativeComparator#REVERSE */
+	@JniField(accessor="(intptr_t)mdbxjni_cmp_reverse", flags={CONSTANT})
+	public static long MDBXJNI_CMP_REVERSE;
+	/** @see NativeComparator#UNSIGNED_LONG */
+	@JniField(accessor="(intptr_t)mdbxjni_cmp_unsigned_long", flags={CONSTANT})
+	public static long MDBXJNI_CMP_UNSIGNED_LONG;
+	/** @see NativeComparator#SIGNED_LONG */
+	@JniField(accessor="(intptr_t)mdbxjni_cmp_signed_long", flags={CONSTANT})
+	public static long MDBXJNI_CMP_SIGNED_LONG;
+	/** @see NativeComparator#UUID */
+	@JniField(accessor="(intptr_t)mdbxjni_cmp_uuid", flags={CONSTANT})
+	public static long MDBXJNI_CMP_UUID;
+	/** @see NativeComparator#COMPOSITE */
+	@JniField(accessor="(intptr_t)mdbxjni_cmp_composite", flags={CONSTANT})
+	public static long MDBXJNI_CMP_COMPOSITE;
+	/** @see NativeComparator#COMPOSITE_DESC */
+	@JniField(accessor="(intptr_t)mdbxjni_cmp_composite_desc", flags={CONSTANT})
+	public static long MDBXJNI_CMP_COMPOSITE_DESC;
+
 	@JniMethod
 	public static final native void map_val(
 			@JniArg(cast = "MDBX_val *", flags={NO_OUT}) long in,
 			@JniArg(cast = "MDBX_val *", flags={NO_IN}) MDBX_val out);
 
+	/**
+	 * Look up several keys with a single cursor in one call.
+	 *
+	 * @param cursor  [in] A cursor handle bound to the database to search.
+	 * @param keys    [in] A native array of count \ref MDBX_val keys, preferably sorted in the database order.
+	 * @param values [out] A native array of count \ref MDBX_val receiving the values. Keys that are not found
+	 *                     get a null base and a length of {@link #MDBXJNI_NOTFOUND_LEN}.
+	 * @param count   [in] Number of keys.
+	 *
+	 * @return A non-zero error value on failure and 0 on success.
+	 */
+	@JniMethod
+	public static final native int mdbxjni_get_multiple(
+			@JniArg(cast = "MDBX_cursor *", flags={NO_OUT}) long cursor,
+			@JniArg(cast = "const MDBX_val *") long keys,
+			@JniArg(cast = "MDBX_val *") long values,
+			@JniArg(cast = "size_t") long count);
+
+	@JniField(accessor="(jlong)MDBXJNI_NOTFOUND_LEN", flags={CONSTANT})
+	public static long MDBXJNI_NOTFOUND_LEN;
+
+	/**
+	 * Move a cursor, then check the key reached against the bound ending a range scan.
+	 *
+	 * @param cursor [in] A cursor handle returned by \ref mdbx_cursor_open().
+	 * @param key    [in,out] The key for a retrieved item.
+	 * @param data   [in,out] The data of a retrieved item.
+	 * @param op     [in] A cursor operation \ref MDBX_cursor_op.
+	 * @param bound  [in] The bound, compared with the database comparator, or as a prefix of the key with
+	 *                    {@link #MDBXJNI_BOUND_PREFIX}. Null for no bound.
+	 * @param flags  [in] A combination of {@link #MDBXJNI_BOUND_INCLUSIVE}, {@link #MDBXJNI_BOUND_DESCENDING}
+	 *                    and {@link #MDBXJNI_BOUND_PREFIX}.
+	 *
+	 * @return \ref MDBX_NOTFOUND once past the bound, otherwise as \ref mdbx_cursor_get().
+	 */
+	@JniMethod
+	public static final native int mdbxjni_cursor_get_bounded(
+			@JniArg(cast = "MDBX_cursor *", flags={NO_OUT}) long cursor,
+			@JniArg(cast = "MDBX_val *") MDBX_val key,  //in,out
+			@JniArg(cast = "MDBX_val *") MDBX_val data, //in,out
+			@JniArg(cast = "MDBX_cursor_op", flags={NO_OUT}) int op,
+			@JniArg(cast = "const MDBX_val *", flags={NO_OUT}) MDBX_val bound,
+			@JniArg(cast = "int") int flags);
+
+	/** The bound is part of the range */
+	@JniField(flags={CONSTANT})
+	public static int MDBXJNI_BOUND_INCLUSIVE;
+	/** The range is scanned in descending order, the bound being its lowest key */
+	@JniField(flags={CONSTANT})
+	public static int MDBXJNI_BOUND_DESCENDING;
+	/** The bound is a prefix shared by all the keys of the range */
+	@JniField(flags={CONSTANT})
+	public static int MDBXJNI_BOUND_PREFIX;
+
+	/**
+	 * Move a cursor to the next record matching a filter, evaluating the records natively with
+	 * {@link #mdbx_cursor_scan(long, long, long, int, int, long)}.
+	 *
+	 * @param cursor   [in] A cursor handle returned by \ref mdbx_cursor_open().
+	 * @param key      [out] The key of the matching record.
+	 * @param data     [out] The data of the matching record.
+	 * @param start_op [in] The cursor operation moving to the first record to evaluate.
+	 * @param turn_op  [in] The cursor operation moving to the next record to evaluate.
+	 * @param program  [in] The filter clauses, see {@link ScanFilter}.
+	 * @param size     [in] The size of the clauses in bytes.
+	 * @param bound    [in] The bound ending the scan, as with
+	 *                      {@link #mdbxjni_cursor_get_bounded(long, MDBX_val, MDBX_val, int, MDBX_val, int)}.
+	 * @param bound_flags [in] The flags of the bound.
+	 *
+	 * @return \ref MDBX_NOTFOUND once past the bound or the end of the data, otherwise as \ref mdbx_cursor_get().
+	 */
+	@JniMethod
+	public static final native int mdbxjni_cursor_filter(
+			@JniArg(cast = "MDBX_cursor *", flags={NO_OUT}) long cursor,
+			@JniArg(cast = "MDBX_val *", flags={NO_IN}) MDBX_val key,
+			@JniArg(cast = "MDBX_val *", flags={NO_IN}) MDBX_val data,
+			@JniArg(cast = "MDBX_cursor_op", flags={NO_OUT}) int start_op,
+			@JniArg(cast = "MDBX_cursor_op", flags={NO_OUT}) int turn_op,
+			@JniArg(cast = "const uint8_t *") long program,
+			@JniArg(cast = "size_t") long size,
+			@JniArg(cast = "const MDBX_val *", flags={NO_OUT}) MDBX_val bound,
+			@JniArg(cast = "int") int bound_flags);
+
+	@JniField(flags={CONSTANT})
+	public static int MDBXJNI_FILTER_PREFIX;
+	@JniField(flags={CONSTANT})
+	public static int MDBXJNI_FILTER_RANGE;
+	@JniField(flags={CONSTANT})
+	public static int MDBXJNI_FILTER_INT;
+	@JniField(flags={CONSTANT})
+	public static int MDBXJNI_FILTER_ON_VALUE;
+	@JniField(flags={CONSTANT})
+	public static int MDBXJNI_FILTER_NOT;
+	@JniField(flags={CONSTANT})
+	public static int MDBXJNI_FILTER_BIG_ENDIAN;
+	@JniField(flags={CONSTANT})
+	public static int MDBXJNI_FILTER_SIGNED;
+	@JniField(flags={CONSTANT})
+	public static int MDBXJNI_FILTER_WIDTH_SHIFT;
+	@JniField(flags={CONSTANT})
+	public static int MDBXJNI_FILTER_EQ;
+	@JniField(flags={CONSTANT})
+	public static int MDBXJNI_FILTER_NE;
+	@JniField(flags={CONSTANT})
+	public static int MDBXJNI_FILTER_LT;
+	@JniField(flags={CONSTANT})
+	public static int MDBXJNI_FILTER_LE;
+	@JniField(flags={CONSTANT})
+	public static int MDBXJNI_FILTER_GT;
+	@JniField(flags={CONSTANT})
+	public static int MDBXJNI_FILTER_GE;
+
 //	@JniMethod
 //	public static final native int get_mdbx_build_info(
 //			@JniArg(cast = "void *", flags = {NO_IN}) long arg,
@@ -2891,7 +3031,7 @@ public class JNI {
 			@JniArg(cast = "MDBX_commit_latency *") MDBX_commit_latency latency);
 
 	@JniMethod
-	public static final native void mdbx_txn_abort(
+	public static final native int mdbx_txn_abort(
 			@JniArg(cast = "MDBX_txn *") long txn);
 
 	@JniMethod
@@ -3003,7 +3143,7 @@ public class JNI {
 	public static final native int mdbx_txn_release_all_cursors_ex(
 			@JniArg(cast = "MDBX_txn *") long txn,
 			@JniArg(cast = "int") int unbind,  //Bool
-			@JniArg(cast = "size_t") long count
+			@JniArg(cast = "size_t *", flags = {NO_IN}) long[] count
 	);
 
 	/**
@@ -3906,6 +4046,18 @@ public class JNI {
 			@JniArg(cast = "size_t") long limit,
 			@JniArg(cast = "MDBX_cursor_op", flags={NO_OUT}) int op);
 
+	/**
+	 * Same as {@link #mdbx_cursor_get_batch(long, long[], MDBX_val, long, int)} but with pairs pointing to a
+	 * native array of at least limit \ref MDBX_val items.
+	 */
+	@JniMethod
+	public static final native int mdbx_cursor_get_batch(
+			@JniArg(cast = "MDBX_cursor *", flags={NO_OUT}) long cursor,
+			@JniArg(cast = "size_t *") long[] count,
+			@JniArg(cast = "MDBX_val *") long pairs, //in,out
+			@JniArg(cast = "size_t") long limit,
+			@JniArg(cast = "MDBX_cursor_op", flags={NO_OUT}) int op);
+
 	/**
 	 * Utility function for use in utilities.
 	 *
@@ -0,0 +1,170 @@
+package com.castortech.mdbxjni;
+
+import static com.castortech.mdbxjni.Util.checkArgNotNull;
+
+import java.util.Arrays;
+
+/**
+ * Range of keys scanned by {@link Database#range(Transaction, KeyRange)}.
+ * <p>
+ * Bounds are compared with the database comparator, a null bound leaving the range open on that side. A prefix
+ * range holds the keys starting with the prefix bytes, which only forms a contiguous range for comparators
+ * that order keys lexicographically, as the default one does.
+ * </p>
+ *
+ * @author Alain Picard
+ */
+public final class KeyRange {
+	private static final KeyRange ALL = new KeyRange(null, false, null, false, false, false);
+
+	private final byte[] lowerKey;
+	private final boolean lowerInclusive;
+	private final byte[] upperKey;
+	private final boolean upperInclusive;
+	private final boolean prefix;
+	private final boolean descending;
+
+	private KeyRange(byte[] lowerKey, boolean lowerInclusive, byte[] upperKey, boolean upperInclusive,
+			boolean prefix, boolean descending) {
+		this.lowerKey = lowerKey;
+		this.lowerInclusive = lowerInclusive;
+		this.upperKey = upperKey;
+		this.upperInclusive = upperInclusive;
+		this.prefix = prefix;
+		this.descending = descending;
+	}
+
+	/**
+	 * @param lowerKey lowest key, null for no lower bound
+	 * @param lowerInclusive true if the lowest key is part of the range
+	 * @param upperKey highest key, null for no upper bound
+	 * @param upperInclusive true if the highest key is part of the range
+	 * @return range between the two keys, scanned in ascending order
+	 */
+	public static KeyRange of(byte[] lowerKey, boolean lowerInclusive, byte[] upperKey, boolean upperInclusive) {
+		return new KeyRange(lowerKey, lowerInclusive, upperKey, upperInclusive, false, false);
+	}
+
+	/**
+	 * @return range of all the keys
+	 */
+	public static KeyRange all() {
+		return ALL;
+	}
+
+	/**
+	 * @return range of the keys from lowerKey included to upperKey excluded
+	 */
+	public static KeyRange closedOpen(byte[] lowerKey, byte[] upperKey) {
+		return of(lowerKey, true, upperKey, false);
+	}
+
+	/**
+	 * @return range of the keys from lowerKey to upperKey, both included
+	 */
+	public static KeyRange closed(byte[] lowerKey, byte[] upperKey) {
+		return of(lowerKey, true, upperKey, true);
+	}
+
+	/**
+	 * @return range of the keys greater than or equal to lowerKey
+	 */
+	public static KeyRange atLeast(byte[] lowerKey) {
+		return of(lowerKey, true, null, false);
+	}
+
+	/**
+	 * @return range of the keys less than upperKey
+	 */
+	public static KeyRange lessThan(byte[] upperKey) {
+		return of(null, false, upperKey, false);
+	}
+
+	/**
+	 * @param prefix leading bytes of the keys
+	 * @return range of the keys starting with the prefix
+	 */
+	public static KeyRange prefix(byte[] prefix) {
+		checkArgNotNull(prefix, "prefix"); //$NON-NLS-1$
+		return new KeyRange(prefix, true, prefix, true, true, false);
+	}
+
+	/**
+	 * @return the same range, scanned in descending order
+	 */
+	public KeyRange reverse() {
+		return new KeyRange(lowerKey, lowerInclusive, upperKey, upperInclusive, prefix, !descending);
+	}
+
+	public byte[] getLowerKey() {
+		return lowerKey;
+	}
+
+	public boolean isLowerInclusive() {
+		return lowerInclusive;
+	}
+
+	public byte[] getUpperKey() {
+		return upperKey;
+	}
+
+	public boolean isUpperInclusive() {
+		return upperInclusive;
+	}
+
+	/**
+	 * @return true if the range holds the keys starting with {@link #getLowerKey()}
+	 */
+	public boolean isPrefix() {
+		return prefix;
+	}
+
+	public boolean isDescending() {
+		return descending;
+	}
+
+	/**
+	 * @return bound where the scan starts
+	 */
+	/*package*/ byte[] getStartKey() {
+		return descending ? upperKey : lowerKey;
+	}
+
+	/*package*/ boolean isStartInclusive() {
+		return descending ? upperInclusive : lowerInclusive;
+	}
+
+	/**
+	 * @return bound where the scan ends
+	 */
+	/*package*/ byte[] getEndKey() {
+		return descending ? lowerKey : upperKey;
+	}
+
+	/*package*/ boolean isEndInclusive() {
+		return descending ? lowerInclusive : upperInclusive;
+	}
+
+	/**
+	 * @return the smallest key greater than all the keys starting with the prefix, or null if there is none
+	 */
+	/*package*/ static byte[] successor(byte[] prefix) {
+		for (int i = prefix.length - 1; i >= 0; i--) {
+			if (prefix[i] != (byte)0xFF) {
+				byte[] rc = new byte[i + 1];
+				System.arraycopy(prefix, 0, rc, 0, i + 1);
+				rc[i]++;
+				return rc;
+			}
+		}
+		return null;
+	}
+
+	@SuppressWarnings("nls")
+	@Override
+	public String toString() {
+		return "KeyRange [lowerKey=" + Arrays.toString(lowerKey) + ", lowerInclusive=" + lowerInclusive +
+				", upperKey=" + Arrays.toString(upperKey) + ", upperInclusive=" + upperInclusive + ", prefix=" + prefix +
+				", descending=" + descending + "]";
+	}
+}
@@ -0,0 +1,221 @@
+package com.castortech.mdbxjni;
+
+import java.lang.ref.Cleaner;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per thread bump allocator for the native copies of the keys and values passed to MDBX.
+ * <p>
+ * Memory is carved out of chunks that are kept by the thread once allocated, so that in steady state copying
+ * a key or value is a pointer increment and a memcpy, without any call to the native allocator nor any Java
+ * object besides the {@link Value} handed to MDBX. Allocations are scoped: {@link #mark()} is called before
+ * copying and {@link #release(long)} once the call to MDBX returns, rewinding the arena to the mark. Scopes
+ * nest, so operations calling back into other operations, e.g. for secondaries, release only their own
+ * copies.
+ * </p>
+ * <p>
+ * Chunks come in power of 2 size classes from 64KB to 1MB, one spare of each class being kept for reuse. Larger
+ * values get a chunk of their own size that is freed on release. The chunks of a thread are freed once it
+ * terminates and its arena is collected.
+ * </p>
+ * <p>
+ * Virtual threads are too many and too short lived to each keep chunks, so theirs are given back as soon as
+ * their outermost scope is released: the smallest ones to a pool shared by all the virtual threads, the
+ * others to the native allocator.
+ * </p>
+ *
+ * @author Alain Picard
+ */
+/*package*/ final class NativeArena {
+	private static final int MIN_CHUNK_SHIFT = 16;
+	private static final int SIZE_CLASSES = 5;
+	private static final long ALIGNMENT = 8;
+	private static final int MAX_SHARED_CHUNKS = 256;
+
+	private static final Cleaner CLEANER = Cleaner.create();
+	private static final ThreadLocal<NativeArena> ARENA = ThreadLocal.withInitial(NativeArena::new);
+	/** Smallest chunks given back by virtual threads */
+	private static final ConcurrentLinkedQueue<Long> SHARED_CHUNKS = new ConcurrentLinkedQueue<>();
+	private static final AtomicInteger SHARED_COUNT = new AtomicInteger();
+
+	private final Chunks chunks = new Chunks(Util.isVirtual(Thread.currentThread()));
+	/** Address of the next free byte in the current chunk */
+	private long pos;
+	/** Address past the end of the current chunk */
+	private long limit;
+
+	private NativeArena() {
+		CLEANER.register(this, chunks::free);
+	}
+
+	/**
+	 * @return the arena of the current thread
+	 */
+	static NativeArena get() {
+		return ARENA.get();
+	}
+
+	/**
+	 * @return mark to pass to {@link #release(long)} to free everything allocated after this call
+	 */
+	long mark() {
+		int count = chunks.count;
+		return count == 0 ? 0 : (long)count << 32 | pos - chunks.addresses[count - 1];
+	}
+
+	/**
+	 * Free everything allocated since the mark was taken.
+	 */
+	void release(long mark) {
+		int count = (int)(mark >>> 32);
+		while (chunks.count > count) {
+			chunks.pop();
+		}
+		if (count == 0) {
+			pos = 0;
+			limit = 0;
+			if (chunks.virtual) {
+				chunks.giveBack();
+			}
+		}
+		else {
+			long base = chunks.addresses[count - 1];
+			pos = base + (mark & 0xFFFFFFFFL);
+			limit = base + chunks.sizes[count - 1];
+		}
+	}
+
+	/**
+	 * @return address of size bytes, aligned on 8 bytes
+	 */
+	long allocate(long size) {
+		long aligned = Math.max(ALIGNMENT, size + ALIGNMENT - 1 & -ALIGNMENT);
+		if (limit - pos < aligned) {
+			pos = chunks.push(aligned);
+			limit = pos + chunks.sizes[chunks.count - 1];
+		}
+		long rc = pos;
+		pos += aligned;
+		return rc;
+	}
+
+	/**
+	 * @return slice over a native copy of the data, or null if the data is null
+	 */
+	Value slice(byte[] data) {
+		if (data == null) {
+			return null;
+		}
+		long address = allocate(data.length);
+		JNI.buffer_copy(data, 0, address, 0, data.length);
+		return new Value(address, data.length);
+	}
+
+	/**
+	 * @return slice over size uninitialized bytes
+	 */
+	Value slice(long size) {
+		return new Value(allocate(size), size);
+	}
+
+	/**
+	 * Chunks in use, in allocation order, and the spares. Kept apart from the arena so that the cleaner can free
+	 * them once the arena is collected.
+	 */
+	private static final class Chunks {
+		private long[] addresses = new long[8];
+		private long[] sizes = new long[8];
+		private int count;
+		private final long[] spares = new long[SIZE_CLASSES];
+		private final boolean virtual;
+
+		Chunks(boolean virtual) {
+			this.virtual = virtual;
+		}
+
+		/**
+		 * @return address of a new current chunk of at least size bytes
+		 */
+		long push(long size) {
+			int sizeClass = sizeClass(size);
+			long chunkSize = sizeClass < SIZE_CLASSES ? 1L << MIN_CHUNK_SHIFT + sizeClass : size;
+			long address;
+			Long shared;
+			if (sizeClass < SIZE_CLASSES && spares[sizeClass] != 0) {
+				address = spares[sizeClass];
+				spares[sizeClass] = 0;
+			}
+			else if (sizeClass == 0 && virtual && (shared = SHARED_CHUNKS.poll()) != null) {
+				SHARED_COUNT.decrementAndGet();
+				address = shared;
+			}
+			else {
+				address = JNI.malloc(chunkSize);
+				if (address == 0) {
+					throw new OutOfMemoryError("Failure allocating native heap memory"); //$NON-NLS-1$
+				}
+			}
+
+			if (count == addresses.length) {
+				addresses = Arrays.copyOf(addresses, count * 2);
+				sizes = Arrays.copyOf(sizes, count * 2);
+			}
+			addresses[count] = address;
+			sizes[count] = chunkSize;
+			count++;
+			return address;
+		}
+
+		void pop() {
+			count--;
+			long address = addresses[count];
+			int sizeClass = sizeClass(sizes[count]);
+			if (sizeClass < SIZE_CLASSES && spares[sizeClass] == 0) {
+				spares[sizeClass] = address;
+			}
+			else {
+				JNI.free(address);
+			}
+		}
+
+		/**
+		 * Give the spares back, keeping the smallest ones for the other virtual threads.
+		 */
+		void giveBack() {
+			if (spares[0] != 0 && SHARED_COUNT.incrementAndGet() <= MAX_SHARED_CHUNKS) {
+				SHARED_CHUNKS.offer(spares[0]);
+				spares[0] = 0;
+			}
+			else if (spares[0] != 0) {
+				SHARED_COUNT.decrementAndGet();
+			}
+			for (int i = 0; i < SIZE_CLASSES; i++) {
+				if (spares[i] != 0) {
+					JNI.free(spares[i]);
+					spares[i] = 0;
+				}
+			}
+		}
+
+		void free() {
+			while (count > 0) {
+				JNI.free(addresses[--count]);
+			}
+			for (int i = 0; i < SIZE_CLASSES; i++) {
+				if (spares[i] != 0) {
+					JNI.free(spares[i]);
+					spares[i] = 0;
+				}
+			}
+		}
+
+		private static int sizeClass(long size) {
+			if (size <= 1L << MIN_CHUNK_SHIFT) {
+				return 0;
+			}
+			return Long.SIZE - Long.numberOfLeadingZeros(size - 1) - MIN_CHUNK_SHIFT;
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package com.castortech.mdbxjni;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Catalog of comparators implemented natively. Unlike a Java {@link Comparator} set through
+ * {@link DatabaseConfig#setKeyComparator(Comparator)}, these are handed to MDBX as plain C functions, so a
+ * B-tree comparison never has to call back into the JVM.
+ * <p>
+ * Each entry also provides the equivalent Java comparator, which is handy to pre-sort data in the database
+ * order.
+ * </p>
+ *
+ * @see DatabaseConfig#setKeyNativeComparator(NativeComparator)
+ * @see DatabaseConfig#setDataNativeComparator(NativeComparator)
+ * @author Alain Picard
+ */
+public enum NativeComparator {
+	/** Unsigned bytes, shorter first on a common prefix. This is the default MDBX ordering. */
+	LEXICOGRAPHIC(JNI.MDBXJNI_CMP_LEXICOGRAPHIC) {
+		@Override
+		public int compare(byte[] a, byte[] b) {
+			return compareBytes(a, 0, a.length, b, 0, b.length);
+		}
+	},
+
+	/** Descending order of {@link #LEXICOGRAPHIC}. */
+	REVERSE(JNI.MDBXJNI_CMP_REVERSE) {
+		@Override
+		public int compare(byte[] a, byte[] b) {
+			return -compareBytes(a, 0, a.length, b, 0, b.length);
+		}
+	},
+
+	/**
+	 * 8 bytes big-endian unsigned longs. Values of a different size fall back to {@link #LEXICOGRAPHIC}.
+	 */
+	UNSIGNED_LONG(JNI.MDBXJNI_CMP_UNSIGNED_LONG) {
+		@Override
+		public int compare(byte[] a, byte[] b) {
+			if (a.length != Long.BYTES || b.length != Long.BYTES) {
+				return LEXICOGRAPHIC.compare(a, b);
+			}
+			return Long.compareUnsigned(readLong(a, 0), readLong(b, 0));
+		}
+	},
+
+	/**
+	 * 8 bytes big-endian signed longs, i.e. negative values first. Values of a different size fall back to
+	 * {@link #LEXICOGRAPHIC}.
+	 */
+	SIGNED_LONG(JNI.MDBXJNI_CMP_SIGNED_LONG) {
+		@Override
+		public int compare(byte[] a, byte[] b) {
+			if (a.length != Long.BYTES || b.length != Long.BYTES) {
+				return LEXICOGRAPHIC.compare(a, b);
+			}
+			return Long.compare(readLong(a, 0), readLong(b, 0));
+		}
+	},
+
+	/**
+	 * 16 bytes UUIDs stored as most then least significant bits in big-endian, ordered as
+	 * {@link java.util.UUID#compareTo(java.util.UUID)}. Values of a different size fall back to
+	 * {@link #LEXICOGRAPHIC}.
+	 */
+	UUID(JNI.MDBXJNI_CMP_UUID) {
+		@Override
+		public int compare(byte[] a, byte[] b) {
+			if (a.length != 16 || b.length != 16) {
+				return LEXICOGRAPHIC.compare(a, b);
+			}
+			int rc = Long.compare(readLong(a, 0), readLong(b, 0));
+			return rc != 0 ? rc : Long.compare(readLong(a, 8), readLong(b, 8));
+		}
+	},
+
+	/**
+	 * Composite values made of segments, each prefixed by its length as a 2 bytes big-endian unsigned value.
+	 * Segments are compared in turn as unsigned bytes and a value that is a prefix of the other sorts first.
+	 *
+	 * @see #segment(byte[]...)
+	 */
+	COMPOSITE(JNI.MDBXJNI_CMP_COMPOSITE) {
+		@Override
+		public int compare(byte[] a, byte[] b) {
+			return compareSegments(a, b, 1);
+		}
+	},
+
+	/**
+	 * Same layout as {@link #COMPOSITE} but each segment is compared in descending order. A value that is a
+	 * prefix of the other still sorts first.
+	 */
+	COMPOSITE_DESC(JNI.MDBXJNI_CMP_COMPOSITE_DESC) {
+		@Override
+		public int compare(byte[] a, byte[] b) {
+			return compareSegments(a, b, -1);
+		}
+	};
+
+	private static final int SEGMENT_PREFIX_SIZE = 2;
+	private static final int MAX_SEGMENT_SIZE = 0xFFFF;
+
+	private final long address;
+
+	private NativeComparator(long address) {
+		this.address = address;
+	}
+
+	/**
+	 * @return address of the native comparison function
+	 */
+	public long address() {
+		return address;
+	}
+
+	/**
+	 * Java implementation of the same ordering.
+	 *
+	 * @see Comparator#compare(Object, Object)
+	 */
+	public abstract int compare(byte[] a, byte[] b);
+
+	/**
+	 * @return a Java comparator with the same ordering as the native one
+	 */
+	public Comparator<byte[]> comparator() {
+		return this::compare;
+	}
+
+	/**
+	 * Encode segments in the layout expected by {@link #COMPOSITE} and {@link #COMPOSITE_DESC}.
+	 *
+	 * @param segments segments of at most 65535 bytes each
+	 * @return the composite value
+	 */
+	public static byte[] segment(byte[]... segments) {
+		int size = 0;
+		for (byte[] segment : segments) {
+			if (segment.length > MAX_SEGMENT_SIZE) {
+				throw new IllegalArgumentException("Segment is larger than " + MAX_SEGMENT_SIZE + " bytes"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			size += SEGMENT_PREFIX_SIZE + segment.length;
+		}
+
+		byte[] rc = new byte[size];
+		int pos = 0;
+		for (byte[] segment : segments) {
+			rc[pos++] = (byte)(segment.length >>> 8);
+			rc[pos++] = (byte)segment.length;
+			System.arraycopy(segment, 0, rc, pos, segment.length);
+			pos += segment.length;
+		}
+		return rc;
+	}
+
+	private static int compareBytes(byte[] a, int aPos, int aLen, byte[] b, int bPos, int bLen) {
+		int rc = Arrays.compareUnsigned(a, aPos, aPos + aLen, b, bPos, bPos + bLen);
+		return Integer.signum(rc);
+	}
+
+	private static long readLong(byte[] b, int offset) {
+		long rc = 0;
+		for (int i = 0; i < Long.BYTES; i++) {
+			rc = (rc << 8) | (b[offset + i] & 0xFFL);
+		}
+		return rc;
+	}
+
+	private static int compareSegments(byte[] a, byte[] b, int direction) {
+		int pa = 0;
+		int pb = 0;
+		while (a.length - pa >= SEGMENT_PREFIX_SIZE && b.length - pb >= SEGMENT_PREFIX_SIZE) {
+			int la = ((a[pa] & 0xFF) << 8) | (a[pa + 1] & 0xFF);
+			int lb = ((b[pb] & 0xFF) << 8) | (b[pb + 1] & 0xFF);
+			pa += SEGMENT_PREFIX_SIZE;
+			pb += SEGMENT_PREFIX_SIZE;
+			la = Math.min(la, a.length - pa);
+			lb = Math.min(lb, b.length - pb);
+
+			int rc = compareBytes(a, pa, la, b, pb, lb);
+			if (rc != 0) {
+				return rc * direction;
+			}
+			pa += la;
+			pb += lb;
+		}
+
+		int ra = a.length - pa;
+		int rb = b.length - pb;
+		if (ra >= SEGMENT_PREFIX_SIZE || rb >= SEGMENT_PREFIX_SIZE) {
+			return ra >= SEGMENT_PREFIX_SIZE ? 1 : -1;
+		}
+		return compareBytes(a, pa, ra, b, pb, rb);
+	}
+}
@@ -0,0 +1,270 @@
+package com.castortech.mdbxjni;
+
+import static com.castortech.mdbxjni.JNI.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scan of a whole database split into partitions of about the same number of entries, scanned concurrently.
+ * <p>
+ * The split keys are found by bisection over the key space, estimating the number of entries before each
+ * candidate key with {@link Database#estimateRange(Transaction, byte[], byte[])}, which only walks the B-tree
+ * from the root. The bisection is done over the 8 bytes following the prefix shared by the first and last
+ * keys, so it is balanced for keys ordered lexicographically. For other orders the partitions are still
+ * correct, only less balanced.
+ * </p>
+ * <p>
+ * Each partition is scanned within its own read-only transaction, begun on the thread running it. All the
+ * transactions are begun while the writer lock is held, so they all read the same snapshot. The executor must
+ * therefore be able to run all the partitions at once. In a read-only environment, the lock can't be taken and
+ * the partitions could read different snapshots if another process writes at the same time.
+ * </p>
+ *
+ * @author Alain Picard
+ */
+/*package*/ final class ParallelScan<R> {
+	private static final Logger log = LoggerFactory.getLogger(ParallelScan.class);
+	private static final int BISECT_BITS = Long.SIZE;
+	private static final long START_TIMEOUT_SECONDS = 60;
+
+	private final Database db;
+	private final Env env;
+	private final ScanFilter filter;
+	private final Function<Stream<BufferEntry>, R> scanner;
+
+	ParallelScan(Database db, ScanFilter filter, Function<Stream<BufferEntry>, R> scanner) {
+		this.db = db;
+		this.env = db.getEnv();
+		this.filter = filter;
+		this.scanner = scanner;
+	}
+
+	/**
+	 * @return the result of each partition, in key order
+	 */
+	List<R> run(int partitions, Executor executor) {
+		List<KeyRange> ranges;
+		try (Transaction tx = env.createReadTransaction()) {
+			ranges = split(tx, partitions);
+		}
+
+		List<CompletableFuture<R>> futures;
+		Transaction writerLock = lockWriters();
+		try {
+			futures = start(ranges, executor);
+		}
+		finally {
+			if (writerLock != null) {
+				writerLock.abort();
+			}
+		}
+		return join(futures);
+	}
+
+	/**
+	 * Scan from within a write transaction of the current thread. As it holds the writer lock, the partitions
+	 * all read the snapshot it was begun from, without any of its own changes.
+	 *
+	 * @return the result of each partition, in key order
+	 */
+	List<R> run(Transaction writeTx, int partitions, Executor executor) {
+		return join(start(split(writeTx, partitions), executor));
+	}
+
+	private List<CompletableFuture<R>> start(List<KeyRange> ranges, Executor executor) {
+		if (log.isTraceEnabled())
+			log.trace("Scanning {} in {} partitions", db, ranges.size()); //$NON-NLS-1$
+
+		CountDownLatch started = new CountDownLatch(ranges.size());
+		List<CompletableFuture<R>> futures = new ArrayList<>(ranges.size());
+		for (int i = 0; i < ranges.size(); i++) {
+			KeyRange range = ranges.get(i);
+			futures.add(CompletableFuture.supplyAsync(() -> scan(range, started), executor));
+		}
+		awaitStart(started, futures);
+		return futures;
+	}
+
+	private List<R> join(List<CompletableFuture<R>> futures) {
+		try {
+			List<R> rc = new ArrayList<>(futures.size());
+			for (CompletableFuture<R> future : futures) {
+				rc.add(future.get());
+			}
+			return rc;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MDBXException("Interrupted while scanning " + db, e); //$NON-NLS-1$
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)e.getCause();
+			}
+			throw new MDBXException("Failed scanning " + db, e.getCause()); //$NON-NLS-1$
+		}
+		finally {
+			futures.forEach(future -> future.cancel(false));
+		}
+	}
+
+	private R scan(KeyRange range, CountDownLatch started) {
+		Transaction tx;
+		try {
+			tx = env.createReadTransaction();
+		}
+		finally {
+			started.countDown();
+		}
+
+		try (Stream<BufferEntry> entries = db.range(tx, range, filter)) {
+			return scanner.apply(entries);
+		}
+		finally {
+			tx.abort();
+		}
+	}
+
+	/**
+	 * Hold the writer lock so that no commit happens while the partition transactions begin.
+	 *
+	 * @return the write transaction holding the lock, or null if the environment can't be written to
+	 */
+	private Transaction lockWriters() {
+		if ((env.getFlags() & MDBX_RDONLY) != 0) {
+			return null;
+		}
+		return env.createWriteTransaction();
+	}
+
+	private static void awaitStart(CountDownLatch started, List<? extends CompletableFuture<?>> futures) {
+		try {
+			if (!started.await(START_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				futures.forEach(future -> future.cancel(false));
+				throw new MDBXException("Executor could not start all the partitions of the scan"); //$NON-NLS-1$
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			futures.forEach(future -> future.cancel(false));
+			throw new MDBXException("Interrupted while starting the scan", e); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * @return consecutive ranges covering all the keys, with about the same number of entries
+	 */
+	private List<KeyRange> split(Transaction tx, int partitions) {
+		List<KeyRange> rc = new ArrayList<>(partitions);
+		List<byte[]> splitKeys = partitions > 1 ? splitKeys(tx, partitions) : new ArrayList<>();
+
+		byte[] lower = null;
+		for (byte[] splitKey : splitKeys) {
+			rc.add(KeyRange.of(lower, true, splitKey, false));
+			lower = splitKey;
+		}
+		rc.add(KeyRange.of(lower, true, null, false));
+		return rc;
+	}
+
+	private List<byte[]> splitKeys(Transaction tx, int partitions) {
+		List<byte[]> rc = new ArrayList<>(partitions - 1);
+		if ((db.getFlags(tx) & (MDBX_INTEGERKEY | MDBX_REVERSEKEY)) != 0) {
+			return rc;  // keys are not ordered as bytes from the start, nothing to bisect
+		}
+
+		byte[] first;
+		byte[] last;
+		try (Cursor cursor = db.openCursor(tx)) {
+			Entry entry = cursor.get(CursorOp.FIRST);
+			if (entry == null) {
+				return rc;
+			}
+			first = entry.getKey();
+			last = cursor.get(CursorOp.LAST).getKey();
+		}
+
+		long total = db.estimateRange(tx, null, null);
+		if (total < partitions * 2L) {
+			return rc;
+		}
+
+		int common = 0;
+		while (common < first.length && common < last.length && first[common] == last[common]) {
+			common++;
+		}
+		try {
+			bisect(tx, partitions, total, first, last, common, rc);
+		}
+		catch (MDBXException e) {
+			// e.g. a candidate key longer than the maximum key size
+			log.debug("Failed splitting {}, scanning it as a whole", db, e); //$NON-NLS-1$
+			rc.clear();
+		}
+		return rc;
+	}
+
+	private void bisect(Transaction tx, int partitions, long total, byte[] first, byte[] last, int common,
+			List<byte[]> rc) {
+		long lo = window(first, common);
+		long hi = window(last, common);
+		byte[] prefix = new byte[common];
+		System.arraycopy(first, 0, prefix, 0, common);
+
+		for (int i = 1; i < partitions; i++) {
+			long target = total * i / partitions;
+			long from = lo;
+			long to = hi;
+			for (int bit = 0; bit < BISECT_BITS && Long.compareUnsigned(from, to) < 0; bit++) {
+				long mid = from + (to - from >>> 1);
+				if (db.estimateRange(tx, null, key(prefix, mid)) < target) {
+					from = mid + 1;
+				}
+				else {
+					to = mid;
+				}
+			}
+			byte[] splitKey = key(prefix, from);
+			if (rc.isEmpty() || compare(tx, rc.get(rc.size() - 1), splitKey) < 0) {
+				rc.add(splitKey);
+			}
+		}
+	}
+
+	private int compare(Transaction tx, byte[] key1, byte[] key2) {
+		NativeBuffer buffer1 = NativeBuffer.create(key1);
+		NativeBuffer buffer2 = NativeBuffer.create(key2);
+		try {
+			return mdbx_cmp(tx.pointer(), db.pointer(), new Value(buffer1), new Value(buffer2));
+		}
+		finally {
+			buffer1.delete();
+			buffer2.delete();
+		}
+	}
+
+	/**
+	 * @return the 8 bytes of the key from the offset as an unsigned big-endian value, padded with zeros
+	 */
+	private static long window(byte[] key, int offset) {
+		byte[] bytes = new byte[Long.BYTES];
+		System.arraycopy(key, offset, bytes, 0, Math.min(Long.BYTES, key.length - offset));
+		return ByteBuffer.wrap(bytes).getLong();
+	}
+
+	private static byte[] key(byte[] prefix, long window) {
+		return ByteBuffer.allocate(prefix.length + Long.BYTES).put(prefix).putLong(window).array();
+	}
+}
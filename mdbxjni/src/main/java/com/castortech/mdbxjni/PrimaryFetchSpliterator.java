@@ -0,0 +1,122 @@
+package com.castortech.mdbxjni;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scan of a {@link KeyRange} of a secondary database resolving the primary entry of each hit, a block at a
+ * time.
+ * <p>
+ * The primary keys of up to a block of hits are collected from a {@link RangeSpliterator} over the secondary,
+ * then looked up together as with {@link Database#getAllBuffers(Transaction, List)}, which sorts them and
+ * resolves them with a single cursor walking forward in one native call. Instead of a descent of the primary
+ * B-tree from its root for each hit, at random places, the pages of the primary are then visited in order,
+ * which matters most for large results over a primary that doesn't fit in memory. The hits are still handed
+ * out in the order of the range.
+ * </p>
+ * <p>
+ * Hits whose primary entry is missing, which only happens if the secondary is out of step with the primary,
+ * are skipped. {@link #close()} must be called to release the cursor if the scan is abandoned before it is
+ * exhausted.
+ * </p>
+ *
+ * @author Alain Picard
+ */
+/*package*/ final class PrimaryFetchSpliterator implements Spliterator<SecondaryBufferEntry>, AutoCloseable {
+	private static final Logger log = LoggerFactory.getLogger(PrimaryFetchSpliterator.class);
+
+	private final SecondaryDatabase secDb;
+	private final Transaction tx;
+	private final RangeSpliterator hits;
+	private final int blockSize;
+	private final List<ByteBuffer> secKeys;
+	private final List<byte[]> pKeys;
+	private final ByteBuffer[] values;
+	private int next;
+
+	PrimaryFetchSpliterator(SecondaryDatabase secDb, Transaction tx, KeyRange range, int blockSize) {
+		this.secDb = secDb;
+		this.tx = tx;
+		this.blockSize = blockSize;
+		this.secKeys = new ArrayList<>(blockSize);
+		this.pKeys = new ArrayList<>(blockSize);
+		this.values = new ByteBuffer[blockSize];
+		this.hits = secDb.rangeSpliterator(tx, range);
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super SecondaryBufferEntry> action) {
+		while (true) {
+			if (next == pKeys.size() && !fetch()) {
+				return false;
+			}
+			int i = next++;
+			if (values[i] != null) {
+				action.accept(new SecondaryBufferEntry(secKeys.get(i), ByteBuffer.wrap(pKeys.get(i)).asReadOnlyBuffer(),
+						values[i]));
+				return true;
+			}
+			if (log.isDebugEnabled())
+				log.debug("Missing primary entry for a hit in {}", secDb); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Blocks are fetched sequentially, so this never splits.
+	 */
+	@Override
+	public Spliterator<SecondaryBufferEntry> trySplit() {
+		return null;
+	}
+
+	@Override
+	public long estimateSize() {
+		return Long.MAX_VALUE;
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED | NONNULL;
+	}
+
+	/**
+	 * Release the cursor over the secondary.
+	 */
+	@Override
+	public void close() {
+		hits.close();
+	}
+
+	/**
+	 * Collect the next block of hits and look their primary entries up.
+	 *
+	 * @return false once the range is exhausted
+	 */
+	private boolean fetch() {
+		secKeys.clear();
+		pKeys.clear();
+		next = 0;
+		while (pKeys.size() < blockSize && hits.tryAdvance(hit -> {
+			secKeys.add(hit.getKey());
+			pKeys.add(secDb.getPrimaryKey(BufferEntry.toBytes(hit.getValue())));
+		})) {
+			// collecting
+		}
+		if (pKeys.isEmpty()) {
+			return false;
+		}
+
+		if (log.isTraceEnabled())
+			log.trace("Fetching {} primary entries for {}", pKeys.size(), secDb); //$NON-NLS-1$
+		Arrays.fill(values, null);
+		secDb.getPrimaryDatabase().getMultiple(tx, pKeys, (view, index) -> values[index] = tx.track(view.duplicate()));
+		return true;
+	}
+}
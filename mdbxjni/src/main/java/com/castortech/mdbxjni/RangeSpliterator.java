@@ -0,0 +1,229 @@
+package com.castortech.mdbxjni;
+
+import static com.castortech.mdbxjni.JNI.*;
+import static com.castortech.mdbxjni.Util.checkErrorCode;
+
+import java.nio.ByteBuffer;
+import java.util.Spliterator;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lazy scan of a {@link KeyRange}, moving a cursor one entry at a time as elements are consumed.
+ * <p>
+ * Each step is a single native call that also checks the key reached against the end of the range, so the
+ * scan stops without handing any key past it back to Java. Entries are read-only views into the memory map,
+ * nothing is copied unless the consumer does it, and they are only valid while the transaction is active.
+ * </p>
+ * <p>
+ * With a {@link ScanFilter}, the native clauses are evaluated by the same call as it moves over the records,
+ * so each step returns the next match.
+ * </p>
+ * <p>
+ * The cursor is released as soon as the range is exhausted, {@link #close()} must be called to release it if
+ * the scan is abandoned before that.
+ * </p>
+ *
+ * @author Alain Picard
+ */
+public class RangeSpliterator implements Spliterator<BufferEntry>, AutoCloseable {
+	private static final Logger log = LoggerFactory.getLogger(RangeSpliterator.class);
+
+	private final Database db;
+	private final Transaction tx;
+	private final KeyRange range;
+	private final boolean dupSort;
+	private Cursor cursor;
+	private NativeBuffer startBuffer;
+	private NativeBuffer endBuffer;
+	private final Value endValue;
+	private final int boundFlags;
+	private final Value key = new Value();
+	private final Value data = new Value();
+	private NativeBuffer program;
+	private final BiPredicate<ByteBuffer, ByteBuffer> predicate;
+	private final ByteBuffer keyView;
+	private final ByteBuffer dataView;
+	private boolean started;
+
+	RangeSpliterator(Database db, Transaction tx, KeyRange range) {
+		this(db, tx, range, null);
+	}
+
+	RangeSpliterator(Database db, Transaction tx, KeyRange range, ScanFilter filter) {
+		this.db = db;
+		this.tx = tx;
+		this.range = range;
+		this.dupSort = (db.getFlags(tx) & MDBX_DUPSORT) != 0;
+
+		byte[] startKey = range.isPrefix() && range.isDescending() ? KeyRange.successor(range.getLowerKey())
+				: range.getStartKey();
+		startBuffer = NativeBuffer.create(startKey);
+		endBuffer = NativeBuffer.create(range.getEndKey());
+		endValue = Value.create(endBuffer);
+		int flags = 0;
+		if (range.isPrefix()) {
+			flags |= MDBXJNI_BOUND_PREFIX;
+		}
+		if (range.isEndInclusive()) {
+			flags |= MDBXJNI_BOUND_INCLUSIVE;
+		}
+		if (range.isDescending()) {
+			flags |= MDBXJNI_BOUND_DESCENDING;
+		}
+		this.boundFlags = flags;
+
+		program = filter == null ? null : NativeBuffer.create(filter.getProgram());
+		predicate = filter == null ? null : filter.getPredicate();
+		keyView = predicate == null ? null : DirectBuffers.wrap(0, 0);
+		dataView = predicate == null ? null : DirectBuffers.wrap(0, 0);
+		this.cursor = db.openCursor(tx);
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super BufferEntry> action) {
+		if (cursor == null) {
+			return false;
+		}
+
+		int rc;
+		if (!started) {
+			started = true;
+			rc = position();
+			if (rc == MDBX_SUCCESS) {
+				rc = step(CursorOp.GET_CURRENT);
+			}
+		}
+		else {
+			rc = step(turnOp());
+		}
+		while (rc == MDBX_SUCCESS && predicate != null && !predicate.test(
+				DirectBuffers.retarget(keyView, key.iov_base, key.iov_len),
+				DirectBuffers.retarget(dataView, data.iov_base, data.iov_len))) {
+			rc = step(turnOp());
+		}
+
+		if (rc == MDBX_NOTFOUND) {
+			close();
+			return false;
+		}
+		if (rc != MDBX_SUCCESS) {
+			close();
+			checkErrorCode(db.getEnv(), tx, rc);
+		}
+		action.accept(new BufferEntry(tx.track(key.toByteBuffer()), tx.track(data.toByteBuffer())));
+		return true;
+	}
+
+	/**
+	 * Ranges are scanned sequentially, so this never splits.
+	 */
+	@Override
+	public Spliterator<BufferEntry> trySplit() {
+		return null;
+	}
+
+	@Override
+	public long estimateSize() {
+		return Long.MAX_VALUE;
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED | NONNULL;
+	}
+
+	/**
+	 * Release the cursor and the native copies of the bounds and filter.
+	 */
+	@Override
+	public void close() {
+		if (cursor != null) {
+			cursor.close();
+			cursor = null;
+		}
+		if (startBuffer != null) {
+			startBuffer.delete();
+			startBuffer = null;
+		}
+		if (endBuffer != null) {
+			endBuffer.delete();
+			endBuffer = null;
+		}
+		if (program != null) {
+			program.delete();
+			program = null;
+		}
+	}
+
+	/**
+	 * Place the cursor on the first entry of the range in the scan order, checking the start bound only.
+	 */
+	private int position() {
+		if (log.isTraceEnabled())
+			log.trace("Positioning range scan of {} for {}", db, range); //$NON-NLS-1$
+
+		if (!range.isDescending()) {
+			if (startBuffer == null) {
+				return get(CursorOp.FIRST);
+			}
+			int rc = seek();
+			if (rc == MDBX_SUCCESS && !range.isStartInclusive() && compareToStart() == 0) {
+				rc = get(CursorOp.NEXT_NODUP);
+			}
+			return rc;
+		}
+
+		if (startBuffer == null) {
+			return get(CursorOp.LAST);
+		}
+		int rc = seek();
+		if (rc == MDBX_NOTFOUND) {
+			return get(CursorOp.LAST);
+		}
+		if (rc != MDBX_SUCCESS) {
+			return rc;
+		}
+		if (range.isPrefix()) {
+			return get(CursorOp.PREV);  // seeked past the prefix, to its successor
+		}
+
+		int cmp = compareToStart();
+		if (cmp > 0) {
+			return get(CursorOp.PREV);
+		}
+		if (!range.isStartInclusive()) {
+			return get(CursorOp.PREV_NODUP);
+		}
+		return dupSort ? get(CursorOp.LAST_DUP) : rc;
+	}
+
+	private int seek() {
+		key.iov_base = startBuffer.pointer();
+		key.iov_len = startBuffer.capacity();
+		return get(CursorOp.SET_RANGE);
+	}
+
+	private int compareToStart() {
+		return mdbx_cmp(tx.pointer(), db.pointer(), key, new Value(startBuffer));
+	}
+
+	private int get(CursorOp op) {
+		return mdbx_cursor_get(cursor.pointer(), key, data, op.getValue());
+	}
+
+	private int step(CursorOp op) {
+		if (program != null) {
+			return mdbxjni_cursor_filter(cursor.pointer(), key, data, op.getValue(), turnOp().getValue(),
+					program.pointer(), program.capacity(), endValue, boundFlags);
+		}
+		return mdbxjni_cursor_get_bounded(cursor.pointer(), key, data, op.getValue(), endValue, boundFlags);
+	}
+
+	private CursorOp turnOp() {
+		return range.isDescending() ? CursorOp.PREV : CursorOp.NEXT;
+	}
+}
@@ -0,0 +1,440 @@
+package com.castortech.mdbxjni;
+
+import static com.castortech.mdbxjni.JNI.*;
+import static com.castortech.mdbxjni.Util.checkErrorCode;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per thread cache of read-only transactions. Each thread keeps a single transaction handle that is recycled
+ * with reset/renew, which only claims a slot in the reader table, so a read no longer allocates a transaction
+ * nor ever touches the writer lock.
+ * <p>
+ * When a maximum age or lag is configured, the snapshot is kept between uses and only renewed once it is too
+ * stale. Otherwise it is released after every use. A kept snapshot is also released before the thread begins
+ * any other transaction, since a thread can only have one at a time.
+ * </p>
+ * <p>
+ * A kept snapshot can also be parked once idle, so that it never holds back the recycling of pages by
+ * writers. Parking from a background thread after a delay is only possible when transactions are not tied to
+ * their thread, otherwise the snapshot is parked by its own thread as soon as it is idle.
+ * </p>
+ * <p>
+ * The cache only refers to the threads weakly. When transactions are not tied to their thread, each cached
+ * transaction holds a reader slot of its own, so the transactions of threads that have terminated or have been
+ * idle for too long are freed from the background, and a thread can free its own at any time with
+ * {@link #releaseCurrent()}. When they are tied to their thread, MDBX ties the reader slot to the thread
+ * rather than the transaction and releases it when the thread terminates, and a transaction can only be freed
+ * by its own thread, so those of terminated threads are merely forgotten, leaking their handle. Either way,
+ * the number of cached transactions is capped, threads beyond the cap getting a transaction freed after every
+ * use, and the forgotten ones count against the cap for good, so that a pool replacing its threads leaks a
+ * bounded number of handles before its threads stop being cached.
+ * </p>
+ *
+ * @author Alain Picard
+ */
+/*package*/ final class ReadTransactionCache {
+	private static final Logger log = LoggerFactory.getLogger(ReadTransactionCache.class);
+	private static final long MIN_PARKER_PERIOD_MILLIS = 10;
+
+	/** Per thread state, guarded by its own monitor as the background tasks may access it */
+	private static final class Slot {
+		private final Transaction tx;
+		private final WeakReference<Thread> owner = new WeakReference<>(Thread.currentThread());
+		/** False for a transaction beyond the cap, freed once released */
+		private final boolean cached;
+		/** Nesting level of acquisitions by the owning thread */
+		private int depth;
+		/** True while the transaction holds a snapshot */
+		private boolean live;
+		private boolean parked;
+		private long renewedAt;
+		private long releasedAt;
+		/** True once the transaction has been freed by another thread, the owner then begins a new one */
+		private boolean evicted;
+
+		private Slot(Transaction tx, boolean cached) {
+			this.tx = tx;
+			this.cached = cached;
+		}
+
+		private boolean isOwnerTerminated() {
+			Thread thread = owner.get();
+			return thread == null || !thread.isAlive();
+		}
+	}
+
+	private final Env env;
+	private final long maxAgeNanos;
+	private final long maxLag;
+	private final boolean keepSnapshot;
+	/** Idle time before parking a kept snapshot, negative to never park */
+	private final long parkAfterNanos;
+	/** Idle time before freeing a transaction from the background, negative to never free them */
+	private final long evictAfterNanos;
+	private final int maxTransactions;
+	private final boolean noStickyThreads;
+	private final ScheduledExecutorService maintainer;
+	private final ThreadLocal<Slot> slots = new ThreadLocal<>();
+	/** All the cached slots, kept for the background tasks and to free the transactions on close */
+	private final Set<Slot> allSlots = ConcurrentHashMap.newKeySet();
+	/** Number of transactions of terminated threads that could not be freed */
+	private final AtomicInteger forgotten = new AtomicInteger();
+
+	/**
+	 * @param parkAfter idle time before parking a kept snapshot, null to never park
+	 * @param evictAfter idle time before freeing a transaction from the background, null to never free them
+	 * @param maxTransactions maximum number of transactions cached
+	 * @param noStickyThreads true if transactions can be used by any thread, allowing to park and free them
+	 *          from the background
+	 */
+	ReadTransactionCache(Env env, Duration maxAge, long maxLag, Duration parkAfter, Duration evictAfter,
+			int maxTransactions, boolean noStickyThreads) {
+		this.env = env;
+		this.maxAgeNanos = maxAge == null ? 0 : maxAge.toNanos();
+		this.maxLag = maxLag;
+		this.keepSnapshot = maxAgeNanos > 0 || maxLag > 0;
+		this.maxTransactions = maxTransactions;
+		this.noStickyThreads = noStickyThreads;
+
+		long period = Long.MAX_VALUE;
+		if (keepSnapshot && isPositive(parkAfter) && noStickyThreads) {
+			parkAfterNanos = parkAfter.toNanos();
+			period = parkAfter.toMillis() / 2;
+		}
+		else {
+			parkAfterNanos = keepSnapshot && parkAfter != null ? 0 : -1;
+		}
+		if (isPositive(evictAfter) && noStickyThreads) {
+			evictAfterNanos = evictAfter.toNanos();
+			period = Math.min(period, evictAfter.toMillis() / 2);
+		}
+		else {
+			evictAfterNanos = -1;
+		}
+
+		if (period != Long.MAX_VALUE) {
+			period = Math.max(MIN_PARKER_PERIOD_MILLIS, period);
+			maintainer = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "mdbx-reader-maintainer"); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			});
+			maintainer.scheduleWithFixedDelay(this::maintain, period, period, TimeUnit.MILLISECONDS);
+		}
+		else {
+			maintainer = null;
+		}
+	}
+
+	/**
+	 * @return the read transaction of the current thread, holding a snapshot within the staleness bounds
+	 */
+	Transaction acquire() {
+		Slot slot = slots.get();
+		if (slot != null) {
+			synchronized (slot) {
+				if (!slot.evicted) {
+					if (slot.depth == 0) {
+						refresh(slot);
+					}
+					slot.depth++;
+					return slot.tx;
+				}
+			}
+		}
+
+		purgeTerminated();
+		slot = new Slot(begin(), allSlots.size() + forgotten.get() < maxTransactions);
+		slot.live = true;
+		slot.renewedAt = System.nanoTime();
+		slot.depth = 1;
+		slots.set(slot);
+		if (slot.cached) {
+			allSlots.add(slot);
+		}
+		else if (log.isDebugEnabled()) {
+			log.debug("Not caching the read transaction of {}, {} are already cached and {} forgotten", //$NON-NLS-1$
+					Thread.currentThread(), allSlots.size(), forgotten.get());
+		}
+		return slot.tx;
+	}
+
+	/**
+	 * Give back the transaction obtained from {@link #acquire()}.
+	 */
+	void release(Transaction tx) {
+		Slot slot = slots.get();
+		if (slot == null || slot.tx != tx) {
+			throw new MDBXException("Cached read transaction released by another thread"); //$NON-NLS-1$
+		}
+
+		synchronized (slot) {
+			if (slot.evicted) {
+				if (--slot.depth == 0) {
+					slots.remove();  // freed while in use by the environment closing
+				}
+				return;
+			}
+			if (--slot.depth == 0) {
+				tx.releasePooledCursors();
+				tx.invalidateViews();
+				slot.releasedAt = System.nanoTime();
+				if (!slot.cached) {
+					discard(slot);
+				}
+				else if (!keepSnapshot) {
+					suspend(slot);
+				}
+				else if (parkAfterNanos == 0) {
+					try {
+						park(slot);
+					}
+					catch (MDBXException e) {
+						log.warn("Failed parking idle read transaction", e); //$NON-NLS-1$
+						suspend(slot);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Free the transaction of the current thread, if any, along with its reader slot.
+	 */
+	void releaseCurrent() {
+		Slot slot = slots.get();
+		if (slot == null) {
+			return;
+		}
+
+		synchronized (slot) {
+			if (slot.depth > 0) {
+				throw new MDBXException("Cached read transaction still in use"); //$NON-NLS-1$
+			}
+			slots.remove();
+			allSlots.remove(slot);
+			if (!slot.evicted) {
+				checkErrorCode(env, free(slot));
+			}
+		}
+	}
+
+	/**
+	 * Release the snapshot kept by the current thread, if any, so that it can begin another transaction.
+	 */
+	void suspend() {
+		if (keepSnapshot) {
+			Slot slot = slots.get();
+			if (slot != null) {
+				synchronized (slot) {
+					if (slot.depth == 0) {
+						suspend(slot);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Free all the transactions that can be freed by the current thread, MDBX releasing the reader slots of
+	 * the others as the environment closes. Only called when the environment is closing.
+	 */
+	void close() {
+		if (maintainer != null) {
+			maintainer.shutdownNow();
+		}
+		Thread current = Thread.currentThread();
+		for (Slot slot : allSlots) {
+			synchronized (slot) {
+				if (noStickyThreads || slot.owner.get() == current) {
+					evict(slot);
+				}
+				else {
+					forget(slot);
+				}
+			}
+		}
+		allSlots.clear();
+	}
+
+	private Transaction begin() {
+		long[] txpointer = new long[1];
+		checkErrorCode(env, mdbx_txn_begin(env.pointer(), 0, MDBX_RDONLY, txpointer));
+		if (log.isTraceEnabled())
+			log.trace("Began cached read transaction for {}", env); //$NON-NLS-1$
+		return new Transaction(env, txpointer[0], true, this);
+	}
+
+	/**
+	 * Bring the snapshot of an idle slot back in use, renewing it if it was released, ousted or is too stale.
+	 */
+	private void refresh(Slot slot) {
+		try {
+			if (!slot.live) {
+				slot.tx.renew();
+				slot.live = true;
+				slot.renewedAt = System.nanoTime();
+				return;
+			}
+			if (slot.parked) {
+				slot.parked = false;
+				if (!slot.tx.unpark(true)) {
+					slot.renewedAt = System.nanoTime();
+					return;
+				}
+			}
+			if (isStale(slot)) {
+				slot.tx.reset();
+				slot.tx.renew();
+				slot.renewedAt = System.nanoTime();
+			}
+		}
+		catch (MDBXException e) {
+			discard(slot);
+			throw e;
+		}
+	}
+
+	private boolean isStale(Slot slot) {
+		if (maxAgeNanos > 0 && System.nanoTime() - slot.renewedAt > maxAgeNanos) {
+			return true;
+		}
+		return maxLag > 0 && slot.tx.info(false).getReaderLag() > maxLag;
+	}
+
+	/**
+	 * Park the idle snapshots and free the idle transactions, from the background.
+	 */
+	private void maintain() {
+		purgeTerminated();
+
+		long now = System.nanoTime();
+		for (Slot slot : allSlots) {
+			synchronized (slot) {
+				if (slot.depth > 0 || slot.evicted) {
+					continue;
+				}
+				if (evictAfterNanos >= 0 && now - slot.releasedAt >= evictAfterNanos) {
+					if (allSlots.remove(slot)) {
+						evict(slot);
+					}
+				}
+				else if (parkAfterNanos > 0 && slot.live && !slot.parked && now - slot.releasedAt >= parkAfterNanos) {
+					try {
+						park(slot);
+					}
+					catch (MDBXException e) {
+						log.warn("Failed parking idle read transaction", e); //$NON-NLS-1$
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Drop the slots of the threads that have terminated, freeing their transactions if allowed.
+	 */
+	private void purgeTerminated() {
+		for (Slot slot : allSlots) {
+			if (slot.isOwnerTerminated() && allSlots.remove(slot)) {
+				synchronized (slot) {
+					if (noStickyThreads) {
+						evict(slot);
+					}
+					else {
+						forget(slot);
+					}
+				}
+			}
+		}
+	}
+
+	private void park(Slot slot) {
+		if (slot.live && !slot.parked) {
+			slot.tx.park(false);
+			slot.parked = true;
+		}
+	}
+
+	private void suspend(Slot slot) {
+		if (slot.live) {
+			slot.live = false;
+			slot.parked = false;
+			try {
+				slot.tx.reset();
+			}
+			catch (MDBXException e) {
+				discard(slot);
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Free the transaction of a slot of the current thread and drop the slot.
+	 */
+	private void discard(Slot slot) {
+		slots.remove();
+		allSlots.remove(slot);
+		int rc = free(slot);
+		if (rc != MDBX_SUCCESS) {
+			log.warn("Failed freeing cached read transaction, rc:{}", rc); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Free the transaction of a slot from another thread, which its owner will notice on its next acquisition.
+	 * Only allowed when transactions are not tied to their thread or from the owner itself.
+	 */
+	private void evict(Slot slot) {
+		slot.evicted = true;
+		int rc = free(slot);
+		if (rc != MDBX_SUCCESS) {
+			log.warn("Failed freeing cached read transaction of {}, rc:{}", slot.owner.get(), rc); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Drop a slot whose transaction can't be freed by the current thread, as it is tied to its owner. Its
+	 * reader slot is released by MDBX when the owner terminates or the environment closes, but the handle
+	 * itself is leaked, so it keeps counting against the cap.
+	 */
+	private void forget(Slot slot) {
+		slot.evicted = true;
+		slot.live = false;
+		slot.tx.self = 0;
+		int count = forgotten.incrementAndGet();
+		if (log.isDebugEnabled())
+			log.debug("Forgot cached read transaction of {}, {} leaked so far", slot.owner.get(), count); //$NON-NLS-1$
+	}
+
+	/**
+	 * @return the result of aborting the transaction
+	 */
+	private static int free(Slot slot) {
+		slot.live = false;
+		slot.parked = false;
+		if (slot.tx.self == 0) {
+			return MDBX_SUCCESS;
+		}
+		slot.tx.releasePooledCursors();
+		int rc = mdbx_txn_abort(slot.tx.self);
+		slot.tx.self = 0;
+		return rc;
+	}
+
+	private static boolean isPositive(Duration duration) {
+		return duration != null && !duration.isNegative() && !duration.isZero();
+	}
+}
@@ -0,0 +1,204 @@
+package com.castortech.mdbxjni;
+
+import static com.castortech.mdbxjni.JNI.*;
+import static com.castortech.mdbxjni.Util.checkArgNotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.function.BiPredicate;
+
+/**
+ * Filter of the entries returned by a range scan, see {@link Database#range(Transaction, KeyRange, ScanFilter)}.
+ * <p>
+ * The filter is made of clauses that must all match. Clauses on the bytes or integers found at some offset of
+ * the key or value are evaluated natively while the cursor moves, so the entries that don't match never reach
+ * the JVM and a filtered scan only costs a native call per match. A Java predicate can be added for the
+ * remaining conditions, it is evaluated after the native clauses over flyweight buffers, without any
+ * allocation for the entries it rejects.
+ * </p>
+ *
+ * @author Alain Picard
+ */
+public final class ScanFilter {
+	private static final int HEADER_SIZE = 16;
+
+	/** Comparison of an integer field with an operand */
+	public enum Comparison {
+		EQ, NE, LT, LE, GT, GE;
+
+		private int flag() {
+			switch (this) {
+			case EQ:
+				return MDBXJNI_FILTER_EQ;
+			case NE:
+				return MDBXJNI_FILTER_NE;
+			case LT:
+				return MDBXJNI_FILTER_LT;
+			case LE:
+				return MDBXJNI_FILTER_LE;
+			case GT:
+				return MDBXJNI_FILTER_GT;
+			default:
+				return MDBXJNI_FILTER_GE;
+			}
+		}
+	}
+
+	private ByteBuffer program = ByteBuffer.allocate(64).order(ByteOrder.nativeOrder());
+	/** Position of the header of the last clause added */
+	private int lastClause = -1;
+	private BiPredicate<ByteBuffer, ByteBuffer> predicate;
+
+	/**
+	 * Keep the entries whose key starts with the prefix.
+	 */
+	public ScanFilter keyStartsWith(byte[] prefix) {
+		return keyBytesAt(0, prefix);
+	}
+
+	/**
+	 * Keep the entries whose key holds the bytes at the offset.
+	 */
+	public ScanFilter keyBytesAt(int offset, byte[] bytes) {
+		checkArgNotNull(bytes, "bytes"); //$NON-NLS-1$
+		return addClause(MDBXJNI_FILTER_PREFIX, offset, bytes, null);
+	}
+
+	/**
+	 * Keep the entries whose value holds the bytes at the offset.
+	 */
+	public ScanFilter valueBytesAt(int offset, byte[] bytes) {
+		checkArgNotNull(bytes, "bytes"); //$NON-NLS-1$
+		return addClause(MDBXJNI_FILTER_PREFIX | MDBXJNI_FILTER_ON_VALUE, offset, bytes, null);
+	}
+
+	/**
+	 * Keep the entries whose key bytes from the offset are between the bounds, compared as unsigned bytes. The
+	 * key is truncated to the length of each bound, so that a bound also matches the keys it is a prefix of.
+	 *
+	 * @param offset offset of the bytes in the key
+	 * @param from lowest bytes, null for no lower bound
+	 * @param to highest bytes, null for no upper bound
+	 */
+	public ScanFilter keyBetween(int offset, byte[] from, byte[] to) {
+		return addClause(MDBXJNI_FILTER_RANGE, offset, from, to);
+	}
+
+	/**
+	 * Keep the entries whose value bytes from the offset are between the bounds.
+	 *
+	 * @see #keyBetween(int, byte[], byte[])
+	 */
+	public ScanFilter valueBetween(int offset, byte[] from, byte[] to) {
+		return addClause(MDBXJNI_FILTER_RANGE | MDBXJNI_FILTER_ON_VALUE, offset, from, to);
+	}
+
+	/**
+	 * Keep the entries whose key holds at the offset an integer that compares as requested with the operand.
+	 *
+	 * @param offset offset of the integer in the key
+	 * @param width size of the integer in bytes, 1, 2, 4 or 8
+	 * @param order byte order of the integer
+	 * @param signed true if the integer is signed, in which case it is sign extended, otherwise both the
+	 *          integer and the operand are compared as unsigned
+	 * @param comparison comparison of the integer with the operand
+	 * @param operand operand
+	 */
+	public ScanFilter keyInt(int offset, int width, ByteOrder order, boolean signed, Comparison comparison,
+			long operand) {
+		return addIntClause(0, offset, width, order, signed, comparison, operand);
+	}
+
+	/**
+	 * Keep the entries whose value holds at the offset an integer that compares as requested with the operand.
+	 *
+	 * @see #keyInt(int, int, ByteOrder, boolean, Comparison, long)
+	 */
+	public ScanFilter valueInt(int offset, int width, ByteOrder order, boolean signed, Comparison comparison,
+			long operand) {
+		return addIntClause(MDBXJNI_FILTER_ON_VALUE, offset, width, order, signed, comparison, operand);
+	}
+
+	/**
+	 * Negate the last clause added.
+	 */
+	public ScanFilter not() {
+		if (lastClause < 0) {
+			throw new IllegalStateException("No clause to negate"); //$NON-NLS-1$
+		}
+		program.putInt(lastClause, program.getInt(lastClause) ^ MDBXJNI_FILTER_NOT);
+		return this;
+	}
+
+	/**
+	 * Keep the entries accepted by a Java predicate, evaluated once all the native clauses have matched. The
+	 * key and value are flyweights only valid during the call.
+	 */
+	public ScanFilter matching(BiPredicate<ByteBuffer, ByteBuffer> predicate) {
+		checkArgNotNull(predicate, "predicate"); //$NON-NLS-1$
+		this.predicate = this.predicate == null ? predicate : this.predicate.and(predicate);
+		return this;
+	}
+
+	/**
+	 * @return the Java predicate, or null if there is none
+	 */
+	/*package*/ BiPredicate<ByteBuffer, ByteBuffer> getPredicate() {
+		return predicate;
+	}
+
+	/**
+	 * @return the native clauses, ready to be copied off-heap, or null if there is none
+	 */
+	/*package*/ byte[] getProgram() {
+		return program.position() == 0 ? null : Arrays.copyOf(program.array(), program.position());
+	}
+
+	private ScanFilter addIntClause(int flags, int offset, int width, ByteOrder order, boolean signed,
+			Comparison comparison, long operand) {
+		checkArgNotNull(order, "order"); //$NON-NLS-1$
+		checkArgNotNull(comparison, "comparison"); //$NON-NLS-1$
+		if (width != 1 && width != 2 && width != 4 && width != 8) {
+			throw new IllegalArgumentException("The width argument must be 1, 2, 4 or 8"); //$NON-NLS-1$
+		}
+
+		flags |= MDBXJNI_FILTER_INT | width << MDBXJNI_FILTER_WIDTH_SHIFT | comparison.flag();
+		if (order == ByteOrder.BIG_ENDIAN) {
+			flags |= MDBXJNI_FILTER_BIG_ENDIAN;
+		}
+		if (signed) {
+			flags |= MDBXJNI_FILTER_SIGNED;
+		}
+		byte[] bytes = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.nativeOrder()).putLong(operand).array();
+		return addClause(flags, offset, bytes, null);
+	}
+
+	private ScanFilter addClause(int flags, int offset, byte[] operand1, byte[] operand2) {
+		if (offset < 0) {
+			throw new IllegalArgumentException("The offset argument must not be negative"); //$NON-NLS-1$
+		}
+
+		int len1 = operand1 == null ? 0 : operand1.length;
+		int len2 = operand2 == null ? 0 : operand2.length;
+		int size = HEADER_SIZE + (len1 + len2 + 3 & ~3);
+		if (program.remaining() < size) {
+			ByteBuffer grown = ByteBuffer.allocate(Math.max(program.capacity() * 2, program.position() + size))
+					.order(ByteOrder.nativeOrder());
+			program.flip();
+			grown.put(program);
+			program = grown;
+		}
+
+		lastClause = program.position();
+		program.putInt(flags).putInt(offset).putInt(len1).putInt(len2);
+		if (operand1 != null) {
+			program.put(operand1);
+		}
+		if (operand2 != null) {
+			program.put(operand2);
+		}
+		program.position(lastClause + size);
+		return this;
+	}
+}
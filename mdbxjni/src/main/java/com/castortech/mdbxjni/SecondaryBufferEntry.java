@@ -0,0 +1,27 @@
+package com.castortech.mdbxjni;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Primary entry reached through a secondary, along with the secondary key it was reached by.
+ * <p>
+ * The buffers are subject to the same lifetime rules as those of a {@link BufferEntry}.
+ * </p>
+ *
+ * @author Alain Picard
+ */
+public class SecondaryBufferEntry extends BufferEntry {
+	private final ByteBuffer secondaryKey;
+
+	public SecondaryBufferEntry(ByteBuffer secondaryKey, ByteBuffer key, ByteBuffer value) {
+		super(key, value);
+		this.secondaryKey = secondaryKey;
+	}
+
+	/**
+	 * @return the key of the entry in the secondary
+	 */
+	public ByteBuffer getSecondaryKey() {
+		return secondaryKey;
+	}
+}
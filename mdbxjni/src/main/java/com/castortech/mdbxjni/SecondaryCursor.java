@@ -5,6 +5,8 @@ import static com.castortech.mdbxjni.JNI.*;
 import static com.castortech.mdbxjni.Util.checkArgNotNull;
 import static com.castortech.mdbxjni.Util.checkErrorCode;
 
+import java.nio.ByteBuffer;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,6 +30,11 @@ public class SecondaryCursor extends Cursor {
 		return getSecondaryDatabase().getPrimaryDatabase();
 	}
 
+	/**
+	 * Move the cursor and read the entry it lands on, along with the primary value it refers to. For a covering
+	 * secondary, {@link CursorOp#GET_BOTH} matches pKey against the primary key stored at the start of the
+	 * values, and {@link CursorOp#GET_BOTH_RANGE} lands on the first value greater than or equal to it.
+	 */
 	public OperationStatus get(CursorOp op, DatabaseEntry key, DatabaseEntry pKey, DatabaseEntry value) {
 		checkArgNotNull(op, "op"); //$NON-NLS-1$
 		NativeBuffer keyBuffer = NativeBuffer.create(key.getData());
@@ -38,16 +45,23 @@ public class SecondaryCursor extends Cursor {
 			Value pkeyValue = pkeyBuffer != null ? new Value(pkeyBuffer) : new Value();
 			if (log.isTraceEnabled())
 				log.trace("Calling sec cursor get op/de key/pkey/val for {}", this); //$NON-NLS-1$
-			int rc = mdbx_cursor_get(pointer(), keyValue, pkeyValue, op.getValue());
+			int rc = cursorGet(op, keyValue, pkeyValue, pKey.getData());
 			if (rc == MDBX_NOTFOUND) {
 				return OperationStatus.NOTFOUND;
 			}
 			checkErrorCode(null, rc);
 
 			key.setData(keyValue.toByteArray());
-			pKey.setData(pkeyValue.toByteArray());
-			value.setData(getSecondaryDatabase().getPrimaryDatabase()
-					.get(getTransaction(), pkeyValue));
+			if (getSecondaryDatabase().isCovering()) {
+				byte[] primaryKey = getSecondaryDatabase().getPrimaryKey(pkeyValue.toByteArray());
+				pKey.setData(primaryKey);
+				value.setData(getPrimaryDatabase().get(getTransaction(), primaryKey));
+			}
+			else {
+				pKey.setData(pkeyValue.toByteArray());
+				value.setData(getSecondaryDatabase().getPrimaryDatabase()
+						.get(getTransaction(), pkeyValue));
+			}
 			return OperationStatus.SUCCESS;
 		}
 		finally {
@@ -58,6 +72,73 @@ public class SecondaryCursor extends Cursor {
 		}
 	}
 
+	/**
+	 * Move the cursor as with {@link #get(CursorOp, DatabaseEntry, DatabaseEntry, DatabaseEntry)} within a
+	 * covering secondary, answering with the projection stored in the secondary instead of looking the primary
+	 * value up.
+	 *
+	 * @param projection set to the projection stored with the primary key
+	 * @see SecondaryDbConfig#setProjection(SecondaryKeyCreator)
+	 */
+	public OperationStatus getCovered(CursorOp op, DatabaseEntry key, DatabaseEntry pKey, DatabaseEntry projection) {
+		checkArgNotNull(op, "op"); //$NON-NLS-1$
+		if (!getSecondaryDatabase().isCovering()) {
+			throw new IllegalStateException("The secondary has no projection"); //$NON-NLS-1$
+		}
+
+		NativeArena arena = NativeArena.get();
+		long mark = arena.mark();
+		try {
+			Value keyValue = key.getData() != null ? arena.slice(key.getData()) : new Value();
+			Value storedValue = pKey.getData() != null ? arena.slice(pKey.getData()) : new Value();
+			if (log.isTraceEnabled())
+				log.trace("Calling sec cursor get covered for {}", this); //$NON-NLS-1$
+			int rc = cursorGet(op, keyValue, storedValue, pKey.getData());
+			if (rc == MDBX_NOTFOUND) {
+				return OperationStatus.NOTFOUND;
+			}
+			checkErrorCode(null, rc);
+
+			key.setData(keyValue.toByteArray());
+			ByteBuffer stored = DirectBuffers.wrap(storedValue.iov_base, storedValue.iov_len);
+			byte[] primaryKey = new byte[SecondaryEntries.primaryKeyLength(stored)];
+			byte[] projected = new byte[stored.remaining() - primaryKey.length - Short.BYTES];
+			stored.get(primaryKey).get(projected);
+			pKey.setData(primaryKey);
+			projection.setData(projected);
+			return OperationStatus.SUCCESS;
+		}
+		finally {
+			arena.release(mark);
+		}
+	}
+
+	/**
+	 * Same as mdbx_cursor_get, except for {@link CursorOp#GET_BOTH} on a covering secondary, whose values are
+	 * the primary key followed by the projection and can't be matched exactly.
+	 */
+	private int cursorGet(CursorOp op, Value keyValue, Value dataValue, byte[] pKey) {
+		if (op != CursorOp.GET_BOTH || pKey == null || !getSecondaryDatabase().isCovering()) {
+			return mdbx_cursor_get(pointer(), keyValue, dataValue, op.getValue());
+		}
+
+		// the stored values start with the primary key, possibly a prefix of the primary key of others
+		ByteBuffer prefix = ByteBuffer.wrap(pKey);
+		ByteBuffer stored = DirectBuffers.wrap(0, 0);
+		int rc = mdbx_cursor_get(pointer(), keyValue, dataValue, CursorOp.GET_BOTH_RANGE.getValue());
+		while (rc == MDBX_SUCCESS) {
+			DirectBuffers.retarget(stored, dataValue.iov_base, dataValue.iov_len);
+			if (stored.remaining() < pKey.length || !stored.duplicate().limit(pKey.length).equals(prefix)) {
+				return MDBX_NOTFOUND;
+			}
+			if (SecondaryEntries.primaryKeyLength(stored) == pKey.length) {
+				return MDBX_SUCCESS;
+			}
+			rc = mdbx_cursor_get(pointer(), keyValue, dataValue, CursorOp.NEXT_DUP.getValue());
+		}
+		return rc;
+	}
+
 	@Override
 	public byte[] put(byte[] key, byte[] value, int flags) {
 		throw new UnsupportedOperationException();
@@ -1,13 +1,25 @@
 package com.castortech.mdbxjni;
 
+import static com.castortech.mdbxjni.Util.checkArgNotNull;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 public class SecondaryDatabase extends Database {
+	private static final int DEFAULT_FETCH_BLOCK_SIZE = 1024;
+
 	private final Database primaryDatabase;
 	private final SecondaryDbConfig config;
+	private final int maxKeySize;
 
 	/* package */SecondaryDatabase(Env env, Database primaryDatabase, long self, String name, SecondaryDbConfig config) {
 		super(env, self, name);
 		this.primaryDatabase = primaryDatabase;
 		this.config = config;
+		// secondary keys of a DUPSORT secondary are bounded by the smaller limit of its sorted duplicates
+		this.maxKeySize = (int)env.getMaxKeySize(config.isDupSort() ? Constants.DUPSORT : 0);
 	}
 
 	@Override
@@ -32,6 +44,18 @@ public class SecondaryDatabase extends Database {
 	public byte[] get(Transaction tx, byte[] key, byte[] pKey) {
 		Cursor cursor = openCursor(tx);
 		try {
+			if (isCovering()) {
+				// the stored values start with the primary key, possibly a prefix of the primary key of others
+				Entry entry = cursor.get(CursorOp.GET_BOTH_RANGE, key, pKey);
+				while (entry != null && entry.getValue().length >= pKey.length
+						&& Arrays.equals(entry.getValue(), 0, pKey.length, pKey, 0, pKey.length)) {
+					if (Arrays.equals(getPrimaryKey(entry.getValue()), pKey)) {
+						return pKey;
+					}
+					entry = cursor.get(CursorOp.NEXT_DUP);
+				}
+				return null;
+			}
 			Entry entry = cursor.get(CursorOp.GET_BOTH, key, pKey);
 		return entry.getValue();
 		}
@@ -40,10 +64,126 @@ public class SecondaryDatabase extends Database {
 		}
 	}
 
+	/**
+	 * @return true if the secondary stores a projection of the primary entries with their keys
+	 * @see SecondaryDbConfig#setProjection(SecondaryKeyCreator)
+	 */
+	public boolean isCovering() {
+		return config.getProjection() != null;
+	}
+
+	/**
+	 * @param stored a value of the secondary
+	 * @return the primary key within it
+	 */
+	public byte[] getPrimaryKey(byte[] stored) {
+		return isCovering() ? SecondaryEntries.primaryKey(stored) : stored;
+	}
+
+	/**
+	 * @param stored a value of the secondary
+	 * @return the projection within it, null if the secondary isn't covering
+	 */
+	public byte[] getProjection(byte[] stored) {
+		return isCovering() ? SecondaryEntries.projection(stored) : null;
+	}
+
 	public byte[] internalPut(Transaction tx, byte[] key, byte[] value) {
 		return super.put(tx, key, value, 0);
 	}
 
+	/* package */void internalPut(Transaction tx, Value keySlice, Value valueSlice) {
+		super.put(tx, keySlice, valueSlice, 0);
+	}
+
+	/**
+	 * Rebuild the secondary from its primary, on the pool shared by the parallel scans of the environment.
+	 *
+	 * @see #rebuild(int, BulkLoaderConfig, Executor)
+	 */
+	public long rebuild(int partitions) {
+		return rebuild(partitions, new BulkLoaderConfig(), getEnv().getScanExecutor());
+	}
+
+	/**
+	 * <p>
+	 * Rebuild the secondary from its primary, replacing its content with the keys derived from all the primary
+	 * entries, e.g. to index the existing entries when adding a secondary.
+	 * </p>
+	 *
+	 * The primary is scanned in partitions running concurrently as with
+	 * {@link Database#parallelScan(int, ScanFilter, Executor, java.util.function.Function)}, each deriving and
+	 * sorting the keys of its entries off-heap, and the sorted keys are then merged and appended to the
+	 * secondary. Everything is done within a single write transaction, so other writers wait for the rebuild
+	 * and a failed rebuild leaves the secondary unchanged. This must be called from a thread without any
+	 * transaction opened.
+	 *
+	 * @param partitions
+	 *            number of partitions to scan the primary in, fewer are used for small databases
+	 * @param config
+	 *            buffer size, shared by the partitions, and comparators of the secondary keys and primary keys
+	 *            if the secondary doesn't use the default order. The commit size is not used.
+	 * @param executor
+	 *            executor running the partitions, which must be able to run all of them at once
+	 * @return number of entries written to the secondary
+	 */
+	public long rebuild(int partitions, BulkLoaderConfig config, Executor executor) {
+		checkArgNotNull(config, "config"); //$NON-NLS-1$
+		checkArgNotNull(executor, "executor"); //$NON-NLS-1$
+		if (partitions <= 0) {
+			throw new IllegalArgumentException("The partitions argument must be positive"); //$NON-NLS-1$
+		}
+		return new SecondaryRebuild(this, config, partitions).run(partitions, executor);
+	}
+
+	/**
+	 * Scan a range of secondary keys along with the primary entries they refer to, fetching the primary
+	 * entries by blocks of 1024.
+	 *
+	 * @see #primaryRange(Transaction, KeyRange, int)
+	 */
+	public Stream<SecondaryBufferEntry> primaryRange(Transaction tx, KeyRange range) {
+		return primaryRange(tx, range, DEFAULT_FETCH_BLOCK_SIZE);
+	}
+
+	/**
+	 * <p>
+	 * Scan a range of secondary keys along with the primary entries they refer to.
+	 * </p>
+	 *
+	 * The primary keys of a block of hits of the range are sorted and looked up in the primary with a single
+	 * cursor moving forward, so that large results read the pages of the primary in order rather than at
+	 * random. The entries still come in the order of the range, keyed by their primary key, with the secondary
+	 * key as {@link SecondaryBufferEntry#getSecondaryKey()}, all being read-only views subject to the same
+	 * lifetime rules as the one returned by {@link #getBuffer(Transaction, byte[])}. Hits without a primary
+	 * entry are skipped. The stream holds a cursor until it is exhausted, so it should be closed if it may not
+	 * be, typically with a try-with-resources.
+	 *
+	 * @param tx
+	 *            transaction handle
+	 * @param range
+	 *            range of the secondary keys to scan, along with the scan order
+	 * @param blockSize
+	 *            number of hits whose primary entries are fetched together
+	 * @return stream of the primary entries of the hits within the range
+	 */
+	public Stream<SecondaryBufferEntry> primaryRange(Transaction tx, KeyRange range, int blockSize) {
+		checkArgNotNull(tx, "tx"); //$NON-NLS-1$
+		checkArgNotNull(range, "range"); //$NON-NLS-1$
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("The blockSize argument must be positive"); //$NON-NLS-1$
+		}
+		PrimaryFetchSpliterator spliterator = new PrimaryFetchSpliterator(this, tx, range, blockSize);
+		return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+	}
+
+	/**
+	 * @return room to leave for the keys written by a {@link BufferSecondaryKeyCreator}
+	 */
+	/* package */int getMaxKeySize() {
+		return maxKeySize;
+	}
+
 	public byte[] getSearchBoth(Transaction tx, byte[] key, byte[] pKey) {
 		return null;
 	}
@@ -4,6 +4,7 @@ public class SecondaryDbConfig extends DatabaseConfig implements Cloneable {
 	private boolean allowPopulate = false;
 	private boolean immutableSecondaryKey = false;
 	private SecondaryKeyCreator keyCreator = DefaultSecondaryKeyCreator.getInstance();
+	private SecondaryKeyCreator projection;
 
 	public SecondaryDbConfig() {
 	}
@@ -31,4 +32,25 @@ public class SecondaryDbConfig extends DatabaseConfig implements Cloneable {
 	public SecondaryKeyCreator getKeyCreator() {
 		return keyCreator;
 	}
+
+	/**
+	 * Make the secondary covering: the projection derives from each primary entry the bytes stored along with
+	 * the primary key in the secondary, e.g. the few fields of the primary value some queries need, which
+	 * {@link SecondaryCursor#getCovered(CursorOp, DatabaseEntry, DatabaseEntry, DatabaseEntry)} then returns
+	 * without looking the primary up. A null or false output stores an empty projection.
+	 * <p>
+	 * The values of a covering secondary no longer are the bare primary keys, see
+	 * {@link SecondaryDatabase#getPrimaryKey(byte[])}, and must fit the maximum size of a
+	 * {@link #isDupSort() duplicate}. The projection must be set whenever the secondary is opened.
+	 * </p>
+	 *
+	 * @param projection the projection, null for a secondary storing only primary keys
+	 */
+	public void setProjection(final SecondaryKeyCreator projection) {
+		this.projection = projection;
+	}
+
+	public SecondaryKeyCreator getProjection() {
+		return projection;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,147 @@
+package com.castortech.mdbxjni;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Derivation of the entries of a primary key/value pair in its secondaries, into the arena of the current
+ * thread.
+ * <p>
+ * The entry of a secondary has the secondary key as key and the primary key as value, or for a covering
+ * secondary, one with a {@link SecondaryDbConfig#getProjection() projection}, the primary key followed by the
+ * projection and the length of the primary key as 2 bytes big-endian, so that both can be told apart.
+ * </p>
+ * <p>
+ * A {@link BufferSecondaryKeyCreator} reads the pair in place and writes its output straight into the arena,
+ * while the pair is copied to arrays once for all the other creators, if there are any. A derivation can be
+ * pointed at another pair to reuse its views.
+ * </p>
+ *
+ * @author Alain Picard
+ */
+/*package*/ final class SecondaryEntries {
+	private static final int LENGTH_BYTES = Short.BYTES;
+
+	private Value keySlice;
+	private Value valueSlice;
+	private byte[] pKey;
+	private byte[] data;
+	private ByteBuffer keyView;
+	private ByteBuffer dataView;
+	private ByteBuffer out;
+	private ByteBuffer readView;
+
+	/**
+	 * @return the entry of each secondary, key at 2 * i and value at 2 * i + 1 in the order of the
+	 *         secondaries, nulls where the pair has none
+	 */
+	static Value[] of(List<SecondaryDatabase> secondaries, Value keySlice, Value valueSlice) {
+		SecondaryEntries entries = new SecondaryEntries().on(keySlice, valueSlice);
+		Value[] rc = new Value[secondaries.size() * 2];
+		for (int i = 0; i < secondaries.size(); i++) {
+			entries.derive(secondaries.get(i), rc, i * 2);
+		}
+		return rc;
+	}
+
+	/**
+	 * Point the derivation at a pair.
+	 */
+	SecondaryEntries on(Value keySlice, Value valueSlice) {
+		this.keySlice = keySlice;
+		this.valueSlice = valueSlice;
+		pKey = null;
+		data = null;
+		return this;
+	}
+
+	/**
+	 * Derive the entry of the pair in a secondary into rc, key at offset and value right after.
+	 *
+	 * @return false if the pair has no entry in the secondary
+	 */
+	boolean derive(SecondaryDatabase secDb, Value[] rc, int offset) {
+		SecondaryDbConfig config = (SecondaryDbConfig)secDb.getConfig();
+		Value secKey = create(secDb, config.getKeyCreator());
+		if (secKey == null) {
+			return false;
+		}
+		rc[offset] = secKey;
+		rc[offset + 1] = config.getProjection() == null ? keySlice : cover(secDb, config.getProjection());
+		return true;
+	}
+
+	/**
+	 * @return the primary key stored in a value of a covering secondary
+	 */
+	static byte[] primaryKey(byte[] stored) {
+		return Arrays.copyOf(stored, primaryKeyLength(ByteBuffer.wrap(stored)));
+	}
+
+	/**
+	 * @return the projection stored in a value of a covering secondary
+	 */
+	static byte[] projection(byte[] stored) {
+		return Arrays.copyOfRange(stored, primaryKeyLength(ByteBuffer.wrap(stored)), stored.length - LENGTH_BYTES);
+	}
+
+	/**
+	 * @return the length of the primary key stored at the start of a value of a covering secondary
+	 */
+	static int primaryKeyLength(ByteBuffer stored) {
+		int length = stored.remaining() < LENGTH_BYTES ? -1
+				: stored.getShort(stored.limit() - LENGTH_BYTES) & 0xFFFF;
+		if (length < 0 || length > stored.remaining() - LENGTH_BYTES) {
+			throw new MDBXException("Not a value of a covering secondary"); //$NON-NLS-1$
+		}
+		return length;
+	}
+
+	private Value cover(SecondaryDatabase secDb, SecondaryKeyCreator projection) {
+		Value projected = create(secDb, projection);
+		long projectedLength = projected == null ? 0 : projected.iov_len;
+		long length = keySlice.iov_len + projectedLength + LENGTH_BYTES;
+
+		long address = NativeArena.get().allocate(length);
+		ByteBuffer stored = DirectBuffers.wrapWritable(address, length);
+		stored.put(view(keySlice));
+		if (projected != null) {
+			stored.put(view(projected));
+		}
+		stored.putShort((short)keySlice.iov_len);
+		return new Value(address, length);
+	}
+
+	private Value create(SecondaryDatabase secDb, SecondaryKeyCreator creator) {
+		NativeArena arena = NativeArena.get();
+		if (creator instanceof BufferSecondaryKeyCreator) {
+			if (out == null) {
+				keyView = DirectBuffers.wrap(0, 0);
+				dataView = DirectBuffers.wrap(0, 0);
+				out = DirectBuffers.wrapWritable(0, 0);
+			}
+			DirectBuffers.retarget(keyView, keySlice.iov_base, keySlice.iov_len);
+			DirectBuffers.retarget(dataView, valueSlice.iov_base, valueSlice.iov_len);
+			long address = arena.allocate(secDb.getMaxKeySize());
+			DirectBuffers.retarget(out, address, secDb.getMaxKeySize());
+			if (!((BufferSecondaryKeyCreator)creator).createSecondaryKey(secDb, keyView, dataView, out)) {
+				return null;
+			}
+			return new Value(address, out.position());
+		}
+
+		if (pKey == null) {
+			pKey = keySlice.toByteArray();
+			data = valueSlice.toByteArray();
+		}
+		return arena.slice(creator.createSecondaryKey(secDb, pKey, data));
+	}
+
+	private ByteBuffer view(Value slice) {
+		if (readView == null) {
+			readView = DirectBuffers.wrap(0, 0);
+		}
+		return DirectBuffers.retarget(readView, slice.iov_base, slice.iov_len);
+	}
+}
@@ -0,0 +1,285 @@
+package com.castortech.mdbxjni;
+
+import static com.castortech.mdbxjni.JNI.*;
+import static com.castortech.mdbxjni.Util.checkErrorCode;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rebuild of a secondary database from the entries of its primary.
+ * <p>
+ * The primary is scanned by a {@link ParallelScan}, each partition deriving the secondary entries of its
+ * entries on its own thread into an off-heap run of secondary key/value pairs, which is sorted in the
+ * secondary order once the partition is scanned. The runs are then merged and written through a single
+ * cursor with {@link Constants#APPEND} (and {@link Constants#APPENDDUP} for {@link Constants#DUPSORT}
+ * secondaries), falling back to a regular put for the pairs that can't be appended, e.g. when the comparators
+ * don't match the order of the secondary.
+ * </p>
+ * <p>
+ * The secondary is emptied, the partitions begun and the pairs written within a single write transaction,
+ * so that the writes to the primary made meanwhile, which would maintain the secondary concurrently with the
+ * load, wait for the rebuild to be committed, and so that a failed rebuild leaves the secondary as it was.
+ * </p>
+ *
+ * @author Alain Picard
+ */
+/*package*/ final class SecondaryRebuild {
+	private static final Logger log = LoggerFactory.getLogger(SecondaryRebuild.class);
+	private static final int INITIAL_RECORDS = 1024;
+	private static final long MIN_CHUNK_SIZE = 1L << 20;
+
+	private final SecondaryDatabase secDb;
+	private final Env env;
+	private final Comparator<ByteBuffer> keyComparator;
+	private final Comparator<ByteBuffer> dataComparator;
+	private final long chunkSize;
+	private final Queue<Run> runs = new ConcurrentLinkedQueue<>();
+	private boolean dupSort;
+
+	SecondaryRebuild(SecondaryDatabase secDb, BulkLoaderConfig config, int partitions) {
+		this.secDb = secDb;
+		this.env = secDb.getEnv();
+		this.keyComparator = config.getKeyComparator() != null ? config.getKeyComparator()
+				: SecondaryRebuild::compareUnsigned;
+		this.dataComparator = config.getDataComparator() != null ? config.getDataComparator()
+				: SecondaryRebuild::compareUnsigned;
+		this.chunkSize = Math.max(MIN_CHUNK_SIZE, config.getBufferSize() / Math.max(1, partitions));
+	}
+
+	/**
+	 * @return number of pairs written to the secondary
+	 */
+	long run(int partitions, Executor executor) {
+		Transaction tx = env.createWriteTransaction();
+		boolean ok = false;
+		try {
+			dupSort = (secDb.getFlags(tx) & MDBX_DUPSORT) != 0;
+			secDb.drop(tx, false);
+			List<Run> sorted = new ParallelScan<>(secDb.getPrimaryDatabase(), null, this::collect).run(tx,
+					partitions, executor);
+			long rc = load(tx, sorted);
+			ok = true;
+			return rc;
+		}
+		finally {
+			try {
+				if (ok) {
+					tx.commit();
+				}
+				else {
+					tx.abort();
+				}
+			}
+			finally {
+				runs.forEach(Run::free);
+			}
+		}
+	}
+
+	/**
+	 * Derive the secondary entries of a partition, sorting them once it is scanned.
+	 */
+	private Run collect(Stream<BufferEntry> entries) {
+		Run run = new Run();
+		runs.add(run);  // freed by the rebuild whatever happens to the partition
+
+		NativeArena arena = NativeArena.get();
+		SecondaryEntries secEntries = new SecondaryEntries();
+		Value[] secEntry = new Value[2];
+		entries.forEach(entry -> {
+			long mark = arena.mark();
+			try {
+				if (secEntries.on(slice(entry.getKey()), slice(entry.getValue())).derive(secDb, secEntry, 0)) {
+					run.add(secEntry[0], secEntry[1]);
+				}
+			}
+			finally {
+				arena.release(mark);
+			}
+		});
+
+		run.sort();
+		if (log.isTraceEnabled())
+			log.trace("Sorted {} entries of a partition for {}", run.count, secDb); //$NON-NLS-1$
+		return run;
+	}
+
+	/**
+	 * Merge the runs into the secondary.
+	 */
+	private long load(Transaction tx, List<Run> sorted) {
+		PriorityQueue<Run> heads = new PriorityQueue<>(Math.max(1, sorted.size()),
+				(run1, run2) -> compare(run1, run1.head(), run2, run2.head()));
+		for (Run run : sorted) {
+			if (run.count > 0) {
+				heads.add(run);
+			}
+		}
+
+		int appendFlags = dupSort ? MDBX_APPEND | MDBX_APPENDDUP : MDBX_APPEND;
+		Value key = new Value();
+		Value data = new Value();
+		Value previousKey = new Value();
+		Value previousData = new Value();
+		long rc = 0;
+
+		long[] cursor = new long[1];
+		checkErrorCode(env, tx, mdbx_cursor_open(tx.pointer(), secDb.pointer(), cursor));
+		try {
+			while (!heads.isEmpty()) {
+				Run run = heads.poll();
+				run.slices(run.head(), key, data);
+				if (run.advance()) {
+					heads.add(run);
+				}
+
+				// a dupsort primary may hold several values with the same secondary key
+				if (dupSort && rc > 0 && Database.sameBytes(key, previousKey)
+						&& Database.sameBytes(data, previousData)) {
+					continue;
+				}
+
+				int put = mdbx_cursor_put(cursor[0], key, data, appendFlags);
+				if (put == MDBX_EKEYMISMATCH) {
+					put = mdbx_put(tx.pointer(), secDb.pointer(), key, data, 0);
+				}
+				checkErrorCode(env, tx, put);
+				previousKey.iov_base = key.iov_base;
+				previousKey.iov_len = key.iov_len;
+				previousData.iov_base = data.iov_base;
+				previousData.iov_len = data.iov_len;
+				rc++;
+			}
+		}
+		finally {
+			mdbx_cursor_close(cursor[0]);
+		}
+
+		if (log.isTraceEnabled())
+			log.trace("Rebuilt {} with {} entries", secDb, rc); //$NON-NLS-1$
+		return rc;
+	}
+
+	private int compare(Run run1, int record1, Run run2, int record2) {
+		int rc = keyComparator.compare(run1.key(run1.view1, record1), run2.key(run2.view2, record2));
+		if (rc == 0 && dupSort) {
+			rc = dataComparator.compare(run1.data(run1.view1, record1), run2.data(run2.view2, record2));
+		}
+		return rc;
+	}
+
+	private static Value slice(ByteBuffer buffer) {
+		if (buffer == null) {
+			return new Value();
+		}
+		return new Value(DirectBuffers.address(buffer) + buffer.position(), buffer.remaining());
+	}
+
+	/**
+	 * Unsigned lexicographic order, shorter first on a common prefix, i.e. the default MDBX order.
+	 */
+	private static int compareUnsigned(ByteBuffer b1, ByteBuffer b2) {
+		int i = b1.mismatch(b2);
+		if (i < 0) {
+			return 0;
+		}
+		if (i < b1.remaining() && i < b2.remaining()) {
+			return Integer.compare(b1.get(b1.position() + i) & 0xFF, b2.get(b2.position() + i) & 0xFF);
+		}
+		return b1.remaining() - b2.remaining();
+	}
+
+	/**
+	 * Secondary key/value pairs of a partition, stored back to back in off-heap chunks and sorted through a
+	 * primitive index of their records, so that sorting allocates nothing per pair.
+	 */
+	private final class Run {
+		private final List<NativeBuffer> chunks = new ArrayList<>();
+		private long pos;
+		private long limit;
+		private int count;
+		private long[] addresses = new long[INITIAL_RECORDS];
+		private int[] keyLengths = new int[INITIAL_RECORDS];
+		private int[] dataLengths = new int[INITIAL_RECORDS];
+		private int[] order;
+		private int next;
+
+		private final ByteBuffer writeView = DirectBuffers.wrapWritable(0, 0);
+		private final ByteBuffer view1 = DirectBuffers.wrap(0, 0);
+		private final ByteBuffer view2 = DirectBuffers.wrap(0, 0);
+
+		void add(Value key, Value data) {
+			int keyLength = (int)key.iov_len;
+			int dataLength = (int)data.iov_len;
+			long size = (long)keyLength + dataLength;
+			if (limit - pos < size) {
+				NativeBuffer chunk = NativeBuffer.create(Math.max(chunkSize, size));
+				chunks.add(chunk);
+				pos = chunk.pointer();
+				limit = pos + chunk.capacity();
+			}
+			if (count == addresses.length) {
+				int capacity = count * 2;
+				addresses = Arrays.copyOf(addresses, capacity);
+				keyLengths = Arrays.copyOf(keyLengths, capacity);
+				dataLengths = Arrays.copyOf(dataLengths, capacity);
+			}
+
+			DirectBuffers.retarget(writeView, pos, size)
+					.put(DirectBuffers.retarget(view1, key.iov_base, keyLength))
+					.put(DirectBuffers.retarget(view2, data.iov_base, dataLength));
+			addresses[count] = pos;
+			keyLengths[count] = keyLength;
+			dataLengths[count] = dataLength;
+			count++;
+			pos += size;
+		}
+
+		void sort() {
+			order = IndexSort.sort(count, (record1, record2) -> compare(this, record1, this, record2));
+		}
+
+		int head() {
+			return order[next];
+		}
+
+		/**
+		 * @return false once all the pairs have been taken
+		 */
+		boolean advance() {
+			return ++next < count;
+		}
+
+		void slices(int record, Value key, Value data) {
+			key.iov_base = addresses[record];
+			key.iov_len = keyLengths[record];
+			data.iov_base = addresses[record] + keyLengths[record];
+			data.iov_len = dataLengths[record];
+		}
+
+		ByteBuffer key(ByteBuffer view, int record) {
+			return DirectBuffers.retarget(view, addresses[record], keyLengths[record]);
+		}
+
+		ByteBuffer data(ByteBuffer view, int record) {
+			return DirectBuffers.retarget(view, addresses[record] + keyLengths[record], dataLengths[record]);
+		}
+
+		void free() {
+			chunks.forEach(NativeBuffer::delete);
+			chunks.clear();
+		}
+	}
+}
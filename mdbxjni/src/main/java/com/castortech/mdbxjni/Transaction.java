@@ -19,6 +19,10 @@
 package com.castortech.mdbxjni;
 
 import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,6 +43,8 @@ public class Transaction extends NativeObject implements Closeable {
 	private final boolean readOnly;
 	private final long threadId;
 	private final Env env;
+	/** Cache owning this transaction, or null if it is not a cached read transaction */
+	private final ReadTransactionCache cache;
 
 	/**
 	 * Special user controlled object that can be added to a transaction to capture various information or
@@ -48,11 +54,30 @@ public class Transaction extends NativeObject implements Closeable {
 	 */
 	private Object logData;
 
+	/** Buffer views handed out by this transaction, only tracked in debug mode */
+	private List<ByteBuffer> views;
+
+	/** Pooled cursors closed while this transaction is live, left bound to it until it ends */
+	private List<Cursor> releasedCursors;
+
+	/** True if this transaction has a parent */
+	private final boolean nested;
+
 	Transaction(Env env, long self, boolean readOnly) {
+		this(env, self, readOnly, false, null);
+	}
+
+	Transaction(Env env, long self, boolean readOnly, ReadTransactionCache cache) {
+		this(env, self, readOnly, false, cache);
+	}
+
+	Transaction(Env env, long self, boolean readOnly, boolean nested, ReadTransactionCache cache) {
 		super(self);
 		threadId = Thread.currentThread().getId();
 		this.env = env;
 		this.readOnly = readOnly;
+		this.nested = nested;
+		this.cache = cache;
 	}
 
 	/**
@@ -62,6 +87,13 @@ public class Transaction extends NativeObject implements Closeable {
 		return readOnly;
 	}
 
+	/**
+	 * @return true if the transaction is nested within a parent transaction
+	 */
+	public boolean isNested() {
+		return nested;
+	}
+
 	/**
 	 * Transaction are associated with a specific thread and will throw an MDBX_THREAD_MISMATCH if used with the
 	 * wrong thread. This method provides visibility into the creating thread.
@@ -98,10 +130,150 @@ public class Transaction extends NativeObject implements Closeable {
 		checkErrorCode(env, this, mdbx_txn_renew(pointer()));
 	}
 
+	/**
+	 * <p>
+	 * Park a read-only transaction.
+	 * </p>
+	 *
+	 * A parked transaction keeps its snapshot, but no longer prevents writers from recycling the pages of older
+	 * snapshots: if it gets in their way, it is ousted. Parking is therefore the way to keep a long-lived
+	 * snapshot, such as one used for a streaming export, without letting the database grow while it is idle.
+	 * Data previously read within the transaction, including buffer views, must not be accessed until it is
+	 * unparked.
+	 *
+	 * @param autoUnpark
+	 *          true to have the transaction unparked automatically by the next read, in which case an ousted
+	 *          transaction fails with {@link JNI#MDBX_OUSTED}
+	 * @see #unpark(boolean)
+	 */
+	public void park(boolean autoUnpark) {
+		if (log.isTraceEnabled())
+			log.trace("Calling txn park for {}", this); //$NON-NLS-1$
+		checkErrorCode(env, this, mdbx_txn_park(pointer(), autoUnpark ? 1 : 0));
+	}
+
+	/**
+	 * <p>
+	 * Unpark a transaction parked by {@link #park(boolean)}.
+	 * </p>
+	 *
+	 * If the transaction was ousted while parked, it is either restarted on the latest snapshot or left reset,
+	 * ready for {@link #renew()}, in which case an {@link MDBXException} with {@link JNI#MDBX_OUSTED} is thrown.
+	 *
+	 * @param restartIfOusted
+	 *          true to restart an ousted transaction on the latest snapshot
+	 * @return true if the transaction still reads the same snapshot, false if it was ousted and restarted
+	 */
+	public boolean unpark(boolean restartIfOusted) {
+		if (log.isTraceEnabled())
+			log.trace("Calling txn unpark for {}", this); //$NON-NLS-1$
+		int rc = mdbx_txn_unpark(pointer(), restartIfOusted ? 1 : 0);
+		if (rc == MDBX_RESULT_TRUE) {
+			return false;
+		}
+		checkErrorCode(env, rc);  // an ousted transaction is reset, so it can't be used to report the error
+		return true;
+	}
+
+	/**
+	 * @return true if the transaction is parked
+	 */
+	public boolean isParked() {
+		return (getFlags() & MDBX_TXN_PARKED) != 0;
+	}
+
+	/**
+	 * @return true if the transaction was ousted by a writer while parked
+	 */
+	public boolean isOusted() {
+		return (getFlags() & MDBX_TXN_OUSTED) != 0;
+	}
+
 	public int releaseCursors() {
 		return mdbx_txn_release_all_cursors(pointer(), 0);
 	}
 
+	/**
+	 * Unbind all the cursors of this transaction, and of its parent transactions if any, in a single call,
+	 * leaving them ready to be bound to another transaction.
+	 *
+	 * @return 0 on success, otherwise an error code
+	 */
+	public int unbindCursors() {
+		long[] count = new long[1];
+		return mdbx_txn_release_all_cursors_ex(pointer(), 1, count);
+	}
+
+	/**
+	 * Keep a pooled cursor closed while this transaction is live, so that it is unbound along with all the
+	 * others when the transaction ends. Only meant for use by the cursor pool.
+	 *
+	 * @param cursor cursor bound to this transaction
+	 * @return false if the transaction has already ended, in which case the cursor is left to the caller
+	 */
+	public boolean addReleasedCursor(Cursor cursor) {
+		if (self == 0) {
+			return false;
+		}
+		if (releasedCursors == null) {
+			releasedCursors = new ArrayList<>();
+		}
+		releasedCursors.add(cursor);
+		return true;
+	}
+
+	/**
+	 * Take back one of the cursors kept by {@link #addReleasedCursor(Cursor)} to reuse it within this
+	 * transaction. Only meant for use by the cursor pool.
+	 *
+	 * @param db database the cursor must be opened on
+	 * @param secondary true for a {@link SecondaryCursor}
+	 * @return a released cursor still bound to this transaction, or null if there is none
+	 */
+	public Cursor takeReleasedCursor(Database db, boolean secondary) {
+		if (releasedCursors != null) {
+			for (int i = releasedCursors.size() - 1; i >= 0; i--) {
+				Cursor cursor = releasedCursors.get(i);
+				if (cursor.getDatabase() == db && cursor instanceof SecondaryCursor == secondary) {
+					int last = releasedCursors.size() - 1;
+					releasedCursors.set(i, releasedCursors.get(last));
+					releasedCursors.remove(last);
+					return cursor;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Hand over the cursors kept by {@link #addReleasedCursor(Cursor)}, which are still bound to this
+	 * transaction. Only meant for use by the cursor pool.
+	 *
+	 * @return the released cursors, possibly empty
+	 */
+	public List<Cursor> takeReleasedCursors() {
+		if (releasedCursors == null || releasedCursors.isEmpty()) {
+			return Collections.emptyList();
+		}
+		List<Cursor> rc = releasedCursors;
+		releasedCursors = null;
+		return rc;
+	}
+
+	/**
+	 * Let the cursor pool take back the cursors of this transaction while it is still live.
+	 */
+	/*package*/ void releasePooledCursors() {
+		if (env.usePooledCursors()) {
+			try {
+				env.getCursorPool().closeTransaction(this);
+			}
+			catch (Exception e) {
+				log.error("Exception occurred", e); //$NON-NLS-1$
+			}
+		}
+	}
+
 	/**
 	 * <p>
 	 * Commit all the operations of a transaction into the database.
@@ -115,40 +287,36 @@ public class Transaction extends NativeObject implements Closeable {
 	 *
 	 */
 	public void commit() {
+		if (cache != null) {
+			cache.release(this);
+			return;
+		}
 		if (self != 0) {
+			releasePooledCursors();
 			try {
 				checkErrorCode(env, this, mdbx_txn_commit(self));
 			}
 			finally {
-				if (env.usePooledCursors()) {
-					try {
-						env.getCursorPool().closeTransaction(this);
-					}
-					catch (Exception e) {
-						log.error("Exception occurred", e); //$NON-NLS-1$
-					}
-				}
+				invalidateViews();
 				self = 0;
 			}
 		}
 	}
 
 	public CommitLatency commitWithLatency() {
+		if (cache != null) {
+			cache.release(this);
+			return null;
+		}
 		if (self != 0) {
+			releasePooledCursors();
 			try {
 				MDBX_commit_latency rc = new MDBX_commit_latency();
 				checkErrorCode(env, this, mdbx_txn_commit_ex(self, rc));
 				return new CommitLatency(rc);
 			}
 			finally {
-				if (env.usePooledCursors()) {
-					try {
-						env.getCursorPool().closeTransaction(this);
-					}
-					catch (Exception e) {
-						log.error("Exception occurred", e); //$NON-NLS-1$
-					}
-				}
+				invalidateViews();
 				self = 0;
 			}
 		}
@@ -172,6 +340,8 @@ public class Transaction extends NativeObject implements Closeable {
 	 */
 	public void reset() {
 		checkAllocated();
+		releasePooledCursors();
+		invalidateViews();
 		mdbx_txn_reset(pointer());
 	}
 
@@ -185,9 +355,17 @@ public class Transaction extends NativeObject implements Closeable {
 	 *
 	 * <b>Note</b> Earlier documentation incorrectly said all cursors would be freed. Only write-transactions
 	 * free cursors.
+	 * <b>Note</b> A transaction obtained from {@link Env#acquireReadTransaction()} is given back to its cache
+	 * instead.
 	 */
 	public void abort() {
+		if (cache != null) {
+			cache.release(this);
+			return;
+		}
 		if (self != 0) {
+			releasePooledCursors();
+			invalidateViews();
 			mdbx_txn_abort(self);
 			self = 0;
 		}
@@ -234,8 +412,40 @@ public class Transaction extends NativeObject implements Closeable {
 		this.logData = logData;
 	}
 
+	/**
+	 * Register a buffer view so that it can be invalidated when this transaction ends. Does nothing unless
+	 * {@link Env#isDebugBufferViews()} is set.
+	 *
+	 * @param view view over memory owned by this transaction
+	 * @return the view
+	 */
+	/*package*/ ByteBuffer track(ByteBuffer view) {
+		if (view != null && env.isDebugBufferViews()) {
+			if (views == null) {
+				views = new ArrayList<>();
+			}
+			views.add(view);
+		}
+		return view;
+	}
+
+	/*package*/ void invalidateViews() {
+		if (views != null) {
+			views.forEach(DirectBuffers::invalidate);
+			views = null;
+		}
+	}
+
+	/**
+	 * Commit the transaction, or abort it if it is read only. A transaction obtained from
+	 * {@link Env#acquireReadTransaction()} is given back to its cache instead, as it is on commit or abort.
+	 */
 	@Override
 	public void close() {
+		if (cache != null) {
+			cache.release(this);
+			return;
+		}
 		if (isReadOnly())
 			abort();
 		commit();
@@ -18,6 +18,9 @@
 
 package com.castortech.mdbxjni;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.nio.charset.Charset;
 
 import org.slf4j.Logger;
@@ -38,6 +41,9 @@ class Util {
 
 	public static final boolean isAndroid = isAndroid();
 
+	/** Thread.isVirtual(), looked up as the library is built for runtimes that predate virtual threads */
+	private static final MethodHandle IS_VIRTUAL = isVirtualHandle();
+
 	private Util() { }
 
 	/**
@@ -103,6 +109,31 @@ class Util {
 		}
 	}
 
+	/**
+	 * @return true if the thread is a virtual thread
+	 */
+	static boolean isVirtual(Thread thread) {
+		if (IS_VIRTUAL == null) {
+			return false;
+		}
+		try {
+			return (boolean)IS_VIRTUAL.invokeExact(thread);
+		}
+		catch (Throwable e) {
+			return false;
+		}
+	}
+
+	private static MethodHandle isVirtualHandle() {
+		try {
+			return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual", //$NON-NLS-1$
+					MethodType.methodType(boolean.class));
+		}
+		catch (ReflectiveOperationException ignored) {
+			return null;
+		}
+	}
+
 	public static String format(String format, Object... params) {
 		return MessageFormatter.arrayFormat(format, params).getMessage();
 	}
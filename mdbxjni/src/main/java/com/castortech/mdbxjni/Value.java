@@ -18,6 +18,7 @@
 
 package com.castortech.mdbxjni;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
@@ -36,6 +37,28 @@ class Value extends JNI.MDBX_val {
 		this(buffer.pointer(), buffer.capacity());
 	}
 
+	/**
+	 * Slice covering the remaining bytes of a direct buffer, i.e. from its position to its limit. The buffer's
+	 * memory is used in place, so it must not be released while the slice is in use.
+	 *
+	 * @param buffer a direct buffer
+	 */
+	public Value(ByteBuffer buffer) {
+		if (!buffer.isDirect()) {
+			throw new IllegalArgumentException("The buffer argument must be a direct buffer"); //$NON-NLS-1$
+		}
+		this.iov_base = DirectBuffers.address(buffer) + buffer.position();
+		this.iov_len = buffer.remaining();
+	}
+
+	public static Value create(ByteBuffer buffer) {
+		if (buffer == null) {
+			return null;
+		} else {
+			return new Value(buffer);
+		}
+	}
+
 	public static Value create(NativeBuffer buffer) {
 		if (buffer == null) {
 			return null;
@@ -56,6 +79,20 @@ class Value extends JNI.MDBX_val {
 		return rc;
 	}
 
+	/**
+	 * Expose the slice as a read-only direct buffer without copying it. The buffer is only valid as long as the
+	 * memory it points to is, i.e. for data returned by MDBX, until the end of the transaction or the next
+	 * update within a write transaction.
+	 *
+	 * @return a read-only view over the slice or null if the slice is not set
+	 */
+	public ByteBuffer toByteBuffer() {
+		if (iov_base == 0) {
+			return null;
+		}
+		return DirectBuffers.wrap(iov_base, iov_len);
+	}
+
 	public long getOffendingSize(long maxSize) {
 		if (iov_base == 0) {
 			return 0;
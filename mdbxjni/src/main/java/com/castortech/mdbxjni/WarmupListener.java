@@ -0,0 +1,37 @@
+package com.castortech.mdbxjni;
+
+import java.time.Duration;
+
+/**
+ * Callback notified of the progress of a background warm-up, see
+ * {@link Env#warmupInBackground(int, Duration, WarmupListener)}. The methods are called on the warm-up thread.
+ * <p>
+ * mdbx_env_warmup doesn't report its progress while it runs, so the listener is told how much it is going to
+ * load when it starts, and how it ended.
+ * </p>
+ *
+ * @author Alain Picard
+ */
+public interface WarmupListener {
+	/**
+	 * @param env environment being warmed up
+	 * @param bytes size of the allocated portion of the database that is being loaded
+	 */
+	default void warmupStarted(Env env, long bytes) {
+	}
+
+	/**
+	 * @param env environment warmed up
+	 * @param completed true if all the pages were loaded, false if the time budget ran out before
+	 * @param elapsed time spent warming up
+	 */
+	default void warmupEnded(Env env, boolean completed, Duration elapsed) {
+	}
+
+	/**
+	 * @param env environment that failed warming up
+	 * @param error cause of the failure
+	 */
+	default void warmupFailed(Env env, Throwable error) {
+	}
+}
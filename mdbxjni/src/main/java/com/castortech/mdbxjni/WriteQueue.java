@@ -0,0 +1,225 @@
+package com.castortech.mdbxjni;
+
+import static com.castortech.mdbxjni.JNI.MDBX_WRITEMAP;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Queue of writes run on a dedicated platform thread, grouped into shared transactions.
+ * <p>
+ * MDBX serializes writers with a lock held for the whole write transaction and, unless the environment has no
+ * sticky threads, ties the transaction to the thread that began it. A virtual thread blocked on that lock or
+ * running the transaction within native calls pins its carrier, so with many virtual threads writing the
+ * carriers are all pinned waiting on each other. Submitting the writes here instead leaves the submitting
+ * threads free to unmount while they wait for the result.
+ * </p>
+ * <p>
+ * The writer takes all the writes queued while it was busy, up to a maximum batch size, optionally waiting a
+ * little for more, and runs them within a single transaction and a single commit, so that the cost of the
+ * commit and its sync is shared by the batch and throughput grows with the number of writers. Each write runs
+ * in a nested transaction, so one failing only rolls back its own changes. With {@link JNI#MDBX_WRITEMAP},
+ * which doesn't support nested transactions, each write gets its own transaction.
+ * </p>
+ *
+ * @author Alain Picard
+ */
+/*package*/ final class WriteQueue implements AutoCloseable {
+	private static final Logger log = LoggerFactory.getLogger(WriteQueue.class);
+
+	private static final class Task<R> {
+		private final Function<Transaction, R> work;
+		private final CompletableFuture<R> result = new CompletableFuture<>();
+		private R value;
+
+		private Task(Function<Transaction, R> work) {
+			this.work = work;
+		}
+
+		/**
+		 * Run the work within a transaction, completing the result with its failure if any.
+		 *
+		 * @return true if the work succeeded, its result waiting for the commit
+		 */
+		private boolean run(Transaction tx) {
+			try {
+				value = work.apply(tx);
+				tx.commit();
+				return true;
+			}
+			catch (Throwable e) {
+				tx.abort();
+				if (log.isDebugEnabled())
+					log.debug("Write failed, aborted", e); //$NON-NLS-1$
+				result.completeExceptionally(e);
+				return false;
+			}
+		}
+
+		private void complete() {
+			result.complete(value);
+		}
+	}
+
+	/** Marks the end of the queue */
+	private static final Task<Void> END = new Task<>(tx -> null);
+
+	private final Env env;
+	private final int maxBatchSize;
+	private final long maxLatencyNanos;
+	private final boolean nesting;
+	private final LinkedBlockingQueue<Task<?>> tasks = new LinkedBlockingQueue<>();
+	private final Thread writer;
+	private volatile boolean closed;
+
+	/**
+	 * @param maxBatchSize maximum number of writes grouped in a transaction
+	 * @param maxLatency time to wait for more writes before running a batch that isn't full, zero not to wait
+	 */
+	WriteQueue(Env env, int maxBatchSize, Duration maxLatency) {
+		this.env = env;
+		this.maxBatchSize = Math.max(1, maxBatchSize);
+		this.maxLatencyNanos = maxLatency == null ? 0 : maxLatency.toNanos();
+		this.nesting = (env.getFlags() & MDBX_WRITEMAP) == 0;
+		writer = new Thread(this::drain, "mdbx-writer"); //$NON-NLS-1$
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * @return future completed with the result of the work once its transaction is committed
+	 */
+	<R> CompletableFuture<R> submit(Function<Transaction, R> work) {
+		if (Thread.currentThread() == writer) {
+			throw new IllegalStateException("Write submitted from a write, use the transaction at hand"); //$NON-NLS-1$
+		}
+		Task<R> task = new Task<>(work);
+		synchronized (this) {
+			if (closed) {
+				throw new IllegalStateException("The write queue is closed"); //$NON-NLS-1$
+			}
+			tasks.add(task);
+		}
+		return task.result;
+	}
+
+	/**
+	 * Stop accepting writes and wait for the queued ones to be done.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			tasks.add(END);
+		}
+		try {
+			writer.join();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void drain() {
+		List<Task<?>> batch = new ArrayList<>(Math.min(maxBatchSize, 1024));
+		boolean end = false;
+		while (!end) {
+			try {
+				batch.add(tasks.take());
+				tasks.drainTo(batch, maxBatchSize - batch.size());
+				if (maxLatencyNanos > 0) {
+					long deadline = System.nanoTime() + maxLatencyNanos;
+					long wait;
+					while (batch.size() < maxBatchSize && batch.get(batch.size() - 1) != END
+							&& (wait = deadline - System.nanoTime()) > 0) {
+						Task<?> task = tasks.poll(wait, TimeUnit.NANOSECONDS);
+						if (task == null) {
+							break;
+						}
+						batch.add(task);
+						tasks.drainTo(batch, maxBatchSize - batch.size());
+					}
+				}
+			}
+			catch (InterruptedException e) {
+				// only stopped by the end marker, so that no queued write is lost
+			}
+
+			end = batch.remove(END);
+			if (!batch.isEmpty()) {
+				run(batch);
+			}
+			batch.clear();
+		}
+	}
+
+	private void run(List<Task<?>> batch) {
+		if (batch.size() == 1 || !nesting) {
+			for (Task<?> task : batch) {
+				runAlone(task);
+			}
+			return;
+		}
+
+		Transaction tx;
+		try {
+			tx = env.createWriteTransaction();
+		}
+		catch (RuntimeException e) {
+			batch.forEach(task -> task.result.completeExceptionally(e));
+			return;
+		}
+
+		List<Task<?>> done = new ArrayList<>(batch.size());
+		try {
+			for (Task<?> task : batch) {
+				Transaction nested;
+				try {
+					nested = env.createTransaction(tx);
+				}
+				catch (RuntimeException e) {
+					task.result.completeExceptionally(e);
+					continue;
+				}
+				if (task.run(nested)) {
+					done.add(task);
+				}
+			}
+			tx.commit();
+		}
+		catch (Throwable e) {
+			tx.abort();
+			done.forEach(task -> task.result.completeExceptionally(e));
+			return;
+		}
+
+		if (log.isTraceEnabled())
+			log.trace("Committed {} writes out of {} in a single transaction", done.size(), batch.size()); //$NON-NLS-1$
+		done.forEach(Task::complete);
+	}
+
+	private void runAlone(Task<?> task) {
+		Transaction tx;
+		try {
+			tx = env.createWriteTransaction();
+		}
+		catch (RuntimeException e) {
+			task.result.completeExceptionally(e);
+			return;
+		}
+		if (task.run(tx)) {
+			task.complete();
+		}
+	}
+}
@@ -1,6 +1,8 @@
 package com.castortech.mdbxjni.pool;
 
 import com.castortech.mdbxjni.Cursor;
+import com.castortech.mdbxjni.Database;
+import com.castortech.mdbxjni.Env;
 import com.castortech.mdbxjni.SecondaryCursor;
 import com.castortech.mdbxjni.Transaction;
 
@@ -28,6 +30,34 @@ public interface CursorPool {
 	 */
 	SecondaryCursor borrowSecondary(CursorKey key) throws Exception;
 
+	/**
+	 * Borrow a cursor from the pool, bound to the database and transaction. Implementations should override
+	 * this to avoid allocating a key.
+	 *
+	 * @param env environment
+	 * @param db cursor database
+	 * @param txn cursor transaction
+	 * @return borrowed cursor
+	 * @throws Exception exceptions from pool library
+	 */
+	default Cursor borrow(Env env, Database db, Transaction txn) throws Exception {
+		return borrow(new CursorKey(env, db, txn));
+	}
+
+	/**
+	 * Borrow a secondary database cursor from the pool, bound to the database and transaction. Implementations
+	 * should override this to avoid allocating a key.
+	 *
+	 * @param env environment
+	 * @param db cursor secondary database
+	 * @param txn cursor transaction
+	 * @return borrowed secondary cursor
+	 * @throws Exception exceptions from pool library
+	 */
+	default SecondaryCursor borrowSecondary(Env env, Database db, Transaction txn) throws Exception {
+		return borrowSecondary(new CursorKey(env, db, txn));
+	}
+
 	/**
 	 * Release a borrowed cursor from the pool
 	 * @param cursor the cursor to release
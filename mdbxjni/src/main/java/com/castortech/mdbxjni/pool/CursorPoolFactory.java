@@ -16,7 +16,9 @@ import com.castortech.mdbxjni.Transaction;
  * Cursor pool factory
  *
  * @author Alain Picard
+ * @deprecated only used by the deprecated {@link CursorPoolImpl}
  */
+@Deprecated
 public class CursorPoolFactory extends BaseKeyedPooledObjectFactory<CursorKey, Cursor> {
 	private static final Logger log = LoggerFactory.getLogger(CursorPoolFactory.class);
 
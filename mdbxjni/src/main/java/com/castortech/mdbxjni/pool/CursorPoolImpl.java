@@ -18,7 +18,10 @@ import com.castortech.mdbxjni.Transaction;
  * Cursor pool implementation
  *
  * @author Alain Picard
+ * @deprecated replaced by {@link ThreadLocalCursorPool}, only used when
+ *             {@link com.castortech.mdbxjni.EnvConfig#setUseCommonsCursorPool(boolean)} is set
  */
+@Deprecated
 public class CursorPoolImpl implements CursorPool, Closeable {
 	private static final Logger log = LoggerFactory.getLogger(CursorPoolImpl.class);
 
@@ -0,0 +1,352 @@
+package com.castortech.mdbxjni.pool;
+
+import static com.castortech.mdbxjni.JNI.MDBX_SUCCESS;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.castortech.mdbxjni.Cursor;
+import com.castortech.mdbxjni.Database;
+import com.castortech.mdbxjni.Env;
+import com.castortech.mdbxjni.SecondaryCursor;
+import com.castortech.mdbxjni.Transaction;
+
+/**
+ * Cursor pool keeping idle cursors per thread and per database handle.
+ * <p>
+ * Released cursors are unbound from their transaction and pushed on a stack owned by the releasing thread,
+ * borrowed ones are popped from the stack of the borrowing thread and bound to the new transaction. Both are
+ * plain array operations without any lock, key allocation or evictor thread. Since unbound cursors are not tied
+ * to any thread nor transaction, they can be closed from any thread when the pool closes.
+ * </p>
+ * <p>
+ * Cursors released while their transaction is live are left bound and kept by the transaction, then unbound
+ * all at once with {@link Transaction#unbindCursors()} when it ends, so the cost of ending a transaction
+ * doesn't depend on the number of cursors it used.
+ * </p>
+ * <p>
+ * The cursors kept by threads that have since terminated are closed whenever a new thread starts using the
+ * pool, so that pool threads being replaced don't accumulate native cursors until the pool closes.
+ * </p>
+ *
+ * @author Alain Picard
+ */
+public class ThreadLocalCursorPool implements CursorPool {
+	private static final Logger log = LoggerFactory.getLogger(ThreadLocalCursorPool.class);
+	private static final int INITIAL_DBIS = 16;
+	private static final int INITIAL_CURSORS = 4;
+
+	/** Idle cursors of a thread, indexed by database handle */
+	private static final class LocalCursors {
+		private final WeakReference<Thread> owner = new WeakReference<>(Thread.currentThread());
+		private Cursor[][] cursors = new Cursor[INITIAL_DBIS][];
+		private int[] counts = new int[INITIAL_DBIS];
+		private SecondaryCursor[][] secondaryCursors = new SecondaryCursor[INITIAL_DBIS][];
+		private int[] secondaryCounts = new int[INITIAL_DBIS];
+	}
+
+	private final Env env;
+	private final int maxIdlePerDbi;
+	private final ThreadLocal<LocalCursors> local;
+	/** All per thread caches, kept to close their cursors when the pool closes */
+	private final Set<LocalCursors> allLocals = ConcurrentHashMap.newKeySet();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder discarded = new LongAdder();
+	private volatile boolean closed;
+
+	/**
+	 * Constructor
+	 * @param poolConfig pool configuration, of which only the maximum idle per key is used, here per thread and
+	 *          database
+	 * @param env environment
+	 */
+	public ThreadLocalCursorPool(CursorPoolConfig poolConfig, Env env) {
+		this.env = env;
+		int maxIdle = poolConfig.getMaxIdlePerKey();
+		this.maxIdlePerDbi = maxIdle < 0 ? Integer.MAX_VALUE : maxIdle;
+		this.local = ThreadLocal.withInitial(() -> {
+			purgeTerminated();
+			LocalCursors cursors = new LocalCursors();
+			allLocals.add(cursors);
+			return cursors;
+		});
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Cursor borrow(CursorKey key) throws Exception {
+		return borrow(env, key.getDb(), key.getTxn());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public SecondaryCursor borrowSecondary(CursorKey key) throws Exception {
+		return borrowSecondary(env, key.getDb(), key.getTxn());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Cursor borrow(Env cursorEnv, Database db, Transaction txn) throws Exception {
+		int dbi = db.getDbi();
+		LocalCursors cursors = local.get();
+		Cursor cursor = null;
+		if (dbi < cursors.counts.length && cursors.counts[dbi] > 0) {
+			Cursor[] stack = cursors.cursors[dbi];
+			cursor = stack[--cursors.counts[dbi]];
+			stack[cursors.counts[dbi]] = null;
+		}
+		if (cursor == null) {
+			cursor = reclaim(txn, db, false);
+		}
+		return bind(cursor != null ? cursor : env.createCursor(), cursor != null, db, txn);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public SecondaryCursor borrowSecondary(Env cursorEnv, Database db, Transaction txn) throws Exception {
+		int dbi = db.getDbi();
+		LocalCursors cursors = local.get();
+		SecondaryCursor cursor = null;
+		if (dbi < cursors.secondaryCounts.length && cursors.secondaryCounts[dbi] > 0) {
+			SecondaryCursor[] stack = cursors.secondaryCursors[dbi];
+			cursor = stack[--cursors.secondaryCounts[dbi]];
+			stack[cursors.secondaryCounts[dbi]] = null;
+		}
+		if (cursor == null) {
+			cursor = (SecondaryCursor)reclaim(txn, db, true);
+		}
+		return (SecondaryCursor)bind(cursor != null ? cursor : (SecondaryCursor)env.createSecondaryCursor(),
+				cursor != null, db, txn);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void release(Cursor cursor) throws Exception {
+		if (cursor == null) {
+			return;
+		}
+
+		if (closed) {
+			cursor.mdbxClose();
+			return;
+		}
+
+		Transaction txn = cursor.getTransaction();
+		if (txn != null && txn.addReleasedCursor(cursor)) {
+			return;  // unbound with the others when the transaction ends
+		}
+		if (unbind(cursor)) {
+			push(local.get(), cursor);
+		}
+	}
+
+	/**
+	 * Unbind all the cursors released while the transaction was live in a single call, and keep them for the
+	 * next transactions of the current thread.
+	 */
+	@Override
+	public void closeTransaction(Transaction txn) throws Exception {
+		List<Cursor> released = txn.takeReleasedCursors();
+		if (released.isEmpty()) {
+			return;
+		}
+
+		if (closed) {
+			released.forEach(Cursor::mdbxClose);
+			return;
+		}
+
+		// the bulk call also unbinds the cursors of the parents, so it is only used for top level transactions
+		boolean unbound = false;
+		if (!txn.isNested()) {
+			int rc = txn.unbindCursors();
+			unbound = rc == MDBX_SUCCESS;
+			if (!unbound && log.isDebugEnabled()) {
+				log.debug("Failed releasing all cursors of {}, rc:{}", txn, rc); //$NON-NLS-1$
+			}
+		}
+
+		LocalCursors cursors = local.get();
+		for (Cursor cursor : released) {
+			if (unbound || unbind(cursor)) {
+				push(cursors, cursor);
+			}
+		}
+		if (log.isTraceEnabled()) {
+			log.trace("Released {} cursors of {}", released.size(), txn); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * @return a cursor released earlier within the same transaction, unbound so that it is bound anew
+	 */
+	private Cursor reclaim(Transaction txn, Database db, boolean secondary) {
+		Cursor cursor = txn.takeReleasedCursor(db, secondary);
+		return cursor != null && unbind(cursor) ? cursor : null;
+	}
+
+	private boolean unbind(Cursor cursor) {
+		try {
+			cursor.unbind();
+			return true;
+		}
+		catch (RuntimeException e) {
+			log.warn("Failed unbinding cursor {}, closing it", cursor, e); //$NON-NLS-1$
+			discard(cursor);
+			return false;
+		}
+	}
+
+	private void push(LocalCursors cursors, Cursor cursor) {
+		int dbi = cursor.getDatabase().getDbi();
+		if (cursor instanceof SecondaryCursor) {
+			ensureCapacity(cursors, dbi);
+			SecondaryCursor[] stack = cursors.secondaryCursors[dbi];
+			int count = cursors.secondaryCounts[dbi];
+			if (count >= maxIdlePerDbi) {
+				discard(cursor);
+				return;
+			}
+			if (stack == null || count == stack.length) {
+				stack = cursors.secondaryCursors[dbi] = stack == null ? new SecondaryCursor[INITIAL_CURSORS]
+						: Arrays.copyOf(stack, Math.min(count * 2, maxIdlePerDbi));
+			}
+			stack[cursors.secondaryCounts[dbi]++] = (SecondaryCursor)cursor;
+		}
+		else {
+			ensureCapacity(cursors, dbi);
+			Cursor[] stack = cursors.cursors[dbi];
+			int count = cursors.counts[dbi];
+			if (count >= maxIdlePerDbi) {
+				discard(cursor);
+				return;
+			}
+			if (stack == null || count == stack.length) {
+				stack = cursors.cursors[dbi] = stack == null ? new Cursor[INITIAL_CURSORS]
+						: Arrays.copyOf(stack, Math.min(count * 2, maxIdlePerDbi));
+			}
+			stack[cursors.counts[dbi]++] = cursor;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		for (LocalCursors cursors : allLocals) {
+			if (allLocals.remove(cursors)) {
+				closeAll(cursors);
+			}
+		}
+	}
+
+	/**
+	 * @return number of borrows served by an idle cursor
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return number of borrows that had to create a cursor
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@SuppressWarnings("nls")
+	@Override
+	public String getStats() {
+		return "ThreadLocalCursorPool [threads=" + allLocals.size() + ", hits=" + getHits() + ", misses=" +
+				getMisses() + ", discarded=" + discarded.sum() + "]";
+	}
+
+	private Cursor bind(Cursor cursor, boolean hit, Database db, Transaction txn) {
+		if (hit) {
+			hits.increment();
+		}
+		else {
+			misses.increment();
+		}
+
+		try {
+			cursor.bind(db, txn);
+		}
+		catch (RuntimeException e) {
+			cursor.mdbxClose();
+			throw e;
+		}
+		if (log.isTraceEnabled()) {
+			log.trace("Bound cursor:{}, hit:{}", cursor, hit); //$NON-NLS-1$
+		}
+		return cursor;
+	}
+
+	private void discard(Cursor cursor) {
+		discarded.increment();
+		cursor.mdbxClose();
+	}
+
+	private static void ensureCapacity(LocalCursors cursors, int dbi) {
+		if (dbi >= cursors.counts.length) {
+			int capacity = Math.max(dbi + 1, cursors.counts.length * 2);
+			cursors.cursors = Arrays.copyOf(cursors.cursors, capacity);
+			cursors.counts = Arrays.copyOf(cursors.counts, capacity);
+			cursors.secondaryCursors = Arrays.copyOf(cursors.secondaryCursors, capacity);
+			cursors.secondaryCounts = Arrays.copyOf(cursors.secondaryCounts, capacity);
+		}
+	}
+
+	/**
+	 * Close the idle cursors of the threads that have terminated, which can't be borrowed anymore.
+	 */
+	private void purgeTerminated() {
+		for (LocalCursors cursors : allLocals) {
+			Thread owner = cursors.owner.get();
+			if ((owner == null || !owner.isAlive()) && allLocals.remove(cursors)) {
+				closeAll(cursors);
+				if (log.isTraceEnabled()) {
+					log.trace("Closed the idle cursors of a terminated thread"); //$NON-NLS-1$
+				}
+			}
+		}
+	}
+
+	private static void closeAll(LocalCursors cursors) {
+		closeAll(cursors.cursors, cursors.counts);
+		closeAll(cursors.secondaryCursors, cursors.secondaryCounts);
+	}
+
+	private static void closeAll(Cursor[][] stacks, int[] counts) {
+		for (int dbi = 0; dbi < stacks.length; dbi++) {
+			for (int i = 0; i < counts[dbi]; i++) {
+				stacks[dbi][i].mdbxClose();
+				stacks[dbi][i] = null;
+			}
+			counts[dbi] = 0;
+		}
+	}
+}
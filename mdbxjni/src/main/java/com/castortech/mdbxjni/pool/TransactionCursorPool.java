@@ -0,0 +1,293 @@
+package com.castortech.mdbxjni.pool;
+
+import static com.castortech.mdbxjni.JNI.MDBX_SUCCESS;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.castortech.mdbxjni.Cursor;
+import com.castortech.mdbxjni.Database;
+import com.castortech.mdbxjni.Env;
+import com.castortech.mdbxjni.SecondaryCursor;
+import com.castortech.mdbxjni.Transaction;
+
+/**
+ * Cursor pool that doesn't depend on the thread using it, for environments used from virtual threads.
+ * <p>
+ * Cursors released while their transaction is live are kept by the transaction and reused by its next
+ * borrows, then unbound all at once when it ends, as with {@link ThreadLocalCursorPool}. Unbound cursors are
+ * then kept in lock-free queues shared by all the threads, per database handle, instead of per thread caches
+ * that thousands of short lived virtual threads would each fill and never reuse.
+ * </p>
+ *
+ * @author Alain Picard
+ */
+public class TransactionCursorPool implements CursorPool {
+	private static final Logger log = LoggerFactory.getLogger(TransactionCursorPool.class);
+	private static final int INITIAL_DBIS = 16;
+
+	/** Idle cursors of a database handle */
+	private static final class IdleCursors {
+		private final ConcurrentLinkedQueue<Cursor> cursors = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger count = new AtomicInteger();
+	}
+
+	private final Env env;
+	private final int maxIdlePerDbi;
+	/** Idle cursors indexed by database handle, primary ones at even indexes and secondary ones at odd ones */
+	private volatile IdleCursors[] idle = new IdleCursors[INITIAL_DBIS * 2];
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder discarded = new LongAdder();
+	private volatile boolean closed;
+
+	/**
+	 * Constructor
+	 * @param poolConfig pool configuration, of which only the maximum idle per key is used, here per database
+	 * @param env environment
+	 */
+	public TransactionCursorPool(CursorPoolConfig poolConfig, Env env) {
+		this.env = env;
+		int maxIdle = poolConfig.getMaxIdlePerKey();
+		this.maxIdlePerDbi = maxIdle < 0 ? Integer.MAX_VALUE : maxIdle;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Cursor borrow(CursorKey key) throws Exception {
+		return borrow(env, key.getDb(), key.getTxn());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public SecondaryCursor borrowSecondary(CursorKey key) throws Exception {
+		return borrowSecondary(env, key.getDb(), key.getTxn());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Cursor borrow(Env cursorEnv, Database db, Transaction txn) throws Exception {
+		Cursor cursor = take(txn, db, false);
+		return bind(cursor != null ? cursor : env.createCursor(), cursor != null, db, txn);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public SecondaryCursor borrowSecondary(Env cursorEnv, Database db, Transaction txn) throws Exception {
+		Cursor cursor = take(txn, db, true);
+		return (SecondaryCursor)bind(cursor != null ? cursor : env.createSecondaryCursor(), cursor != null, db,
+				txn);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void release(Cursor cursor) throws Exception {
+		if (cursor == null) {
+			return;
+		}
+
+		if (closed) {
+			cursor.mdbxClose();
+			return;
+		}
+
+		Transaction txn = cursor.getTransaction();
+		if (txn != null && txn.addReleasedCursor(cursor)) {
+			return;  // unbound with the others when the transaction ends
+		}
+		if (unbind(cursor)) {
+			push(cursor);
+		}
+	}
+
+	/**
+	 * Unbind all the cursors released while the transaction was live in a single call, and share them with
+	 * the next transactions.
+	 */
+	@Override
+	public void closeTransaction(Transaction txn) throws Exception {
+		List<Cursor> released = txn.takeReleasedCursors();
+		if (released.isEmpty()) {
+			return;
+		}
+
+		if (closed) {
+			released.forEach(Cursor::mdbxClose);
+			return;
+		}
+
+		// the bulk call also unbinds the cursors of the parents, so it is only used for top level transactions
+		boolean unbound = false;
+		if (!txn.isNested()) {
+			int rc = txn.unbindCursors();
+			unbound = rc == MDBX_SUCCESS;
+			if (!unbound && log.isDebugEnabled()) {
+				log.debug("Failed releasing all cursors of {}, rc:{}", txn, rc); //$NON-NLS-1$
+			}
+		}
+
+		for (Cursor cursor : released) {
+			if (unbound || unbind(cursor)) {
+				push(cursor);
+			}
+		}
+		if (log.isTraceEnabled()) {
+			log.trace("Released {} cursors of {}", released.size(), txn); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		for (IdleCursors cursors : idle) {
+			if (cursors != null) {
+				Cursor cursor;
+				while ((cursor = cursors.cursors.poll()) != null) {
+					cursor.mdbxClose();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return number of borrows served by an idle cursor
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return number of borrows that had to create a cursor
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@SuppressWarnings("nls")
+	@Override
+	public String getStats() {
+		return "TransactionCursorPool [hits=" + getHits() + ", misses=" + getMisses() + ", discarded=" +
+				discarded.sum() + "]";
+	}
+
+	/**
+	 * @return a cursor released earlier within the same transaction or an idle one, unbound, or null if there
+	 *         is none
+	 */
+	private Cursor take(Transaction txn, Database db, boolean secondary) {
+		Cursor cursor = txn.takeReleasedCursor(db, secondary);
+		if (cursor != null) {
+			return unbind(cursor) ? cursor : null;
+		}
+
+		int index = index(db.getDbi(), secondary);
+		IdleCursors[] all = idle;
+		IdleCursors cursors = index < all.length ? all[index] : null;
+		if (cursors == null) {
+			return null;
+		}
+		cursor = cursors.cursors.poll();
+		if (cursor != null) {
+			cursors.count.decrementAndGet();
+		}
+		return cursor;
+	}
+
+	private void push(Cursor cursor) {
+		IdleCursors cursors = idleCursors(index(cursor.getDatabase().getDbi(), cursor instanceof SecondaryCursor));
+		if (cursors.count.incrementAndGet() > maxIdlePerDbi) {
+			cursors.count.decrementAndGet();
+			discard(cursor);
+			return;
+		}
+		cursors.cursors.offer(cursor);
+		if (closed && cursors.cursors.remove(cursor)) {
+			cursor.mdbxClose();  // raced with close
+		}
+	}
+
+	private IdleCursors idleCursors(int index) {
+		IdleCursors[] all = idle;
+		if (index < all.length && all[index] != null) {
+			return all[index];
+		}
+		synchronized (this) {
+			all = idle;
+			if (index >= all.length) {
+				all = Arrays.copyOf(all, Math.max(index + 1, all.length * 2));
+			}
+			else {
+				all = all.clone();
+			}
+			if (all[index] == null) {
+				all[index] = new IdleCursors();
+			}
+			idle = all;
+			return all[index];
+		}
+	}
+
+	private boolean unbind(Cursor cursor) {
+		try {
+			cursor.unbind();
+			return true;
+		}
+		catch (RuntimeException e) {
+			log.warn("Failed unbinding cursor {}, closing it", cursor, e); //$NON-NLS-1$
+			discard(cursor);
+			return false;
+		}
+	}
+
+	private Cursor bind(Cursor cursor, boolean hit, Database db, Transaction txn) {
+		if (hit) {
+			hits.increment();
+		}
+		else {
+			misses.increment();
+		}
+
+		try {
+			cursor.bind(db, txn);
+		}
+		catch (RuntimeException e) {
+			cursor.mdbxClose();
+			throw e;
+		}
+		if (log.isTraceEnabled()) {
+			log.trace("Bound cursor:{}, hit:{}", cursor, hit); //$NON-NLS-1$
+		}
+		return cursor;
+	}
+
+	private void discard(Cursor cursor) {
+		discarded.increment();
+		cursor.mdbxClose();
+	}
+
+	private static int index(int dbi, boolean secondary) {
+		return dbi * 2 + (secondary ? 1 : 0);
+	}
+}
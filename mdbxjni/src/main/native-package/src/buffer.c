@@ -37,6 +37,56 @@ int mdbx_put_multiple(MDBX_txn *txn, MDBX_dbi dbi, const MDBX_val *key, MDBX_val
 	return mdbx_put(txn, dbi, key, &data[0], flags);
 }
 
+/*
+ * Position the cursor on each of the keys in turn, filling the matching value. Keys that are not found get
+ * a value with a null base and a length of MDBXJNI_NOTFOUND_LEN. Keys should be sorted in the database order
+ * so that the cursor walks forward over pages that are already in cache.
+ */
+int mdbxjni_get_multiple(MDBX_cursor *cursor, const MDBX_val *keys, MDBX_val *values, size_t count) {
+	size_t i;
+	for (i = 0; i < count; i++) {
+		MDBX_val key = keys[i];
+		int rc = mdbx_cursor_get(cursor, &key, &values[i], MDBX_SET_KEY);
+		if (rc == MDBX_NOTFOUND) {
+			values[i].iov_base = NULL;
+			values[i].iov_len = MDBXJNI_NOTFOUND_LEN;
+		}
+		else if (rc != MDBX_SUCCESS) {
+			return rc;
+		}
+	}
+	return MDBX_SUCCESS;
+}
+
+/*
+ * Move the cursor with op, then check the key reached against the bound that ends a range scan. Once past the
+ * bound, MDBX_NOTFOUND is returned as if the end of the database was reached. The bound is compared with the
+ * database comparator, or as a prefix of the key with MDBXJNI_BOUND_PREFIX. A null bound is never reached.
+ */
+int mdbxjni_cursor_get_bounded(MDBX_cursor *cursor, MDBX_val *key, MDBX_val *data, MDBX_cursor_op op,
+		const MDBX_val *bound, int flags) {
+	int rc = mdbx_cursor_get(cursor, key, data, op);
+	if (rc != MDBX_SUCCESS || bound == NULL) {
+		return rc;
+	}
+
+	if (flags & MDBXJNI_BOUND_PREFIX) {
+		if (key->iov_len < bound->iov_len || memcmp(key->iov_base, bound->iov_base, bound->iov_len) != 0) {
+			return MDBX_NOTFOUND;
+		}
+		return MDBX_SUCCESS;
+	}
+
+	int cmp = mdbx_cmp(mdbx_cursor_txn(cursor), mdbx_cursor_dbi(cursor), key, bound);
+	if (flags & MDBXJNI_BOUND_DESCENDING) {
+		cmp = -cmp;
+	}
+	if (cmp > 0 || (cmp == 0 && !(flags & MDBXJNI_BOUND_INCLUSIVE))) {
+		return MDBX_NOTFOUND;
+	}
+	return MDBX_SUCCESS;
+}
+
 char* map_printf(char *buf, int size, const char * format, void *args) {
 	static char buffer[8096];
 	int buflen = vsprintf(buffer,format, args);
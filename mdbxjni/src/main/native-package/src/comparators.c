@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2018, Castor Technologies Inc.
+ *
+ *    http://www.castortech.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/*
+ * Catalog of comparators evaluated natively, so that common orderings never
+ * have to call back into the JVM. See com.castortech.mdbxjni.NativeComparator.
+ */
+
+#include "mdbxjni.h"
+
+#define SEGMENT_PREFIX_SIZE 2
+
+static int cmp_bytes(const uint8_t *a, size_t alen, const uint8_t *b, size_t blen) {
+	size_t len = alen < blen ? alen : blen;
+	int diff = len ? memcmp(a, b, len) : 0;
+	if (diff)
+		return diff < 0 ? -1 : 1;
+	return alen == blen ? 0 : (alen < blen ? -1 : 1);
+}
+
+static uint64_t load_be64(const uint8_t *p) {
+	return ((uint64_t)p[0] << 56) | ((uint64_t)p[1] << 48) | ((uint64_t)p[2] << 40) | ((uint64_t)p[3] << 32)
+			| ((uint64_t)p[4] << 24) | ((uint64_t)p[5] << 16) | ((uint64_t)p[6] << 8) | (uint64_t)p[7];
+}
+
+static int cmp_u64(uint64_t a, uint64_t b) {
+	return a == b ? 0 : (a < b ? -1 : 1);
+}
+
+static int cmp_s64(uint64_t a, uint64_t b) {
+	/* flipping the sign bit maps two's complement order onto unsigned order */
+	return cmp_u64(a ^ 0x8000000000000000ULL, b ^ 0x8000000000000000ULL);
+}
+
+int mdbxjni_cmp_lexicographic(const MDBX_val *a, const MDBX_val *b) {
+	return cmp_bytes((const uint8_t *)a->iov_base, a->iov_len, (const uint8_t *)b->iov_base, b->iov_len);
+}
+
+int mdbxjni_cmp_reverse(const MDBX_val *a, const MDBX_val *b) {
+	return -mdbxjni_cmp_lexicographic(a, b);
+}
+
+int mdbxjni_cmp_unsigned_long(const MDBX_val *a, const MDBX_val *b) {
+	if (a->iov_len != 8 || b->iov_len != 8)
+		return mdbxjni_cmp_lexicographic(a, b);
+	return cmp_u64(load_be64((const uint8_t *)a->iov_base), load_be64((const uint8_t *)b->iov_base));
+}
+
+int mdbxjni_cmp_signed_long(const MDBX_val *a, const MDBX_val *b) {
+	if (a->iov_len != 8 || b->iov_len != 8)
+		return mdbxjni_cmp_lexicographic(a, b);
+	return cmp_s64(load_be64((const uint8_t *)a->iov_base), load_be64((const uint8_t *)b->iov_base));
+}
+
+/* Same ordering as java.util.UUID.compareTo, i.e. signed comparison of the most then least significant bits */
+int mdbxjni_cmp_uuid(const MDBX_val *a, const MDBX_val *b) {
+	const uint8_t *pa = (const uint8_t *)a->iov_base;
+	const uint8_t *pb = (const uint8_t *)b->iov_base;
+	int rc;
+
+	if (a->iov_len != 16 || b->iov_len != 16)
+		return mdbxjni_cmp_lexicographic(a, b);
+
+	rc = cmp_s64(load_be64(pa), load_be64(pb));
+	return rc ? rc : cmp_s64(load_be64(pa + 8), load_be64(pb + 8));
+}
+
+/*
+ * Keys are a sequence of segments, each prefixed by its length as a 2 bytes big-endian unsigned value.
+ * Segments are compared in turn as unsigned bytes, in ascending or descending order, and a key that is a
+ * prefix of the other sorts first. A truncated segment is compared on the bytes available.
+ */
+static int cmp_segments(const MDBX_val *a, const MDBX_val *b, int direction) {
+	const uint8_t *pa = (const uint8_t *)a->iov_base;
+	const uint8_t *pb = (const uint8_t *)b->iov_base;
+	size_t ra = a->iov_len;
+	size_t rb = b->iov_len;
+
+	while (ra >= SEGMENT_PREFIX_SIZE && rb >= SEGMENT_PREFIX_SIZE) {
+		size_t la = ((size_t)pa[0] << 8) | pa[1];
+		size_t lb = ((size_t)pb[0] << 8) | pb[1];
+		int rc;
+
+		pa += SEGMENT_PREFIX_SIZE;
+		pb += SEGMENT_PREFIX_SIZE;
+		ra -= SEGMENT_PREFIX_SIZE;
+		rb -= SEGMENT_PREFIX_SIZE;
+		if (la > ra)
+			la = ra;
+		if (lb > rb)
+			lb = rb;
+
+		rc = cmp_bytes(pa, la, pb, lb);
+		if (rc)
+			return rc * direction;
+
+		pa += la;
+		pb += lb;
+		ra -= la;
+		rb -= lb;
+	}
+
+	if (ra >= SEGMENT_PREFIX_SIZE || rb >= SEGMENT_PREFIX_SIZE)
+		return ra >= SEGMENT_PREFIX_SIZE ? 1 : -1;
+	return cmp_bytes(pa, ra, pb, rb);
+}
+
+int mdbxjni_cmp_composite(const MDBX_val *a, const MDBX_val *b) {
+	return cmp_segments(a, b, 1);
+}
+
+int mdbxjni_cmp_composite_desc(const MDBX_val *a, const MDBX_val *b) {
+	return cmp_segments(a, b, -1);
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright (C) 2018, Castor Technologies Inc.
+ *
+ *    http://www.castortech.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/*
+ * Filters evaluated natively while scanning with mdbx_cursor_scan, so that records that don't match never
+ * reach the JVM. See com.castortech.mdbxjni.ScanFilter.
+ *
+ * A filter is a sequence of clauses that must all match. Each clause starts with 4 native 32 bits words:
+ * the clause flags, the offset in the key or value, and the lengths of its 2 operands, which follow as bytes,
+ * padded to a multiple of 4 bytes.
+ */
+
+#include "mdbxjni.h"
+
+#define CLAUSE_HEADER_SIZE 16
+
+typedef struct filter_ctx {
+	MDBX_cursor *cursor;
+	const MDBX_val *bound;
+	int bound_flags;
+	const uint8_t *program;
+	size_t size;
+} filter_ctx;
+
+static int cmp_slice(const uint8_t *field, size_t len, const uint8_t *operand, size_t operand_len) {
+	size_t n = len < operand_len ? len : operand_len;
+	int diff = n ? memcmp(field, operand, n) : 0;
+	if (diff)
+		return diff;
+	return len == operand_len ? 0 : (len < operand_len ? -1 : 1);
+}
+
+static uint64_t load_int(const uint8_t *p, int width, int big_endian, int is_signed) {
+	uint64_t rc = 0;
+	int i;
+	for (i = 0; i < width; i++) {
+		rc |= (uint64_t)p[big_endian ? i : width - 1 - i] << (8 * (width - 1 - i));
+	}
+	if (is_signed && width < 8 && (rc >> (8 * width - 1)) & 1) {
+		rc |= ~(uint64_t)0 << (8 * width);
+	}
+	return rc;
+}
+
+static int match_int(const uint8_t *field, size_t len, uint32_t flags, const uint8_t *operand) {
+	int width = (flags & MDBXJNI_FILTER_WIDTH_MASK) >> MDBXJNI_FILTER_WIDTH_SHIFT;
+	uint64_t value, target;
+	int cmp;
+
+	if (len < (size_t)width)
+		return 0;
+
+	value = load_int(field, width, flags & MDBXJNI_FILTER_BIG_ENDIAN, flags & MDBXJNI_FILTER_SIGNED);
+	memcpy(&target, operand, sizeof(target));
+	if (flags & MDBXJNI_FILTER_SIGNED) {
+		cmp = (int64_t)value == (int64_t)target ? 0 : ((int64_t)value < (int64_t)target ? -1 : 1);
+	}
+	else {
+		cmp = value == target ? 0 : (value < target ? -1 : 1);
+	}
+
+	switch (flags & MDBXJNI_FILTER_CMP_MASK) {
+	case MDBXJNI_FILTER_EQ: return cmp == 0;
+	case MDBXJNI_FILTER_NE: return cmp != 0;
+	case MDBXJNI_FILTER_LT: return cmp < 0;
+	case MDBXJNI_FILTER_LE: return cmp <= 0;
+	case MDBXJNI_FILTER_GT: return cmp > 0;
+	case MDBXJNI_FILTER_GE: return cmp >= 0;
+	default: return 0;
+	}
+}
+
+static int match_clause(uint32_t flags, uint32_t offset, const uint8_t *operand1, uint32_t len1,
+		const uint8_t *operand2, uint32_t len2, const MDBX_val *key, const MDBX_val *value) {
+	const MDBX_val *target = (flags & MDBXJNI_FILTER_ON_VALUE) ? value : key;
+	const uint8_t *field;
+	size_t len;
+
+	if (target->iov_len < offset)
+		return 0;
+	field = (const uint8_t *)target->iov_base + offset;
+	len = target->iov_len - offset;
+
+	switch (flags & MDBXJNI_FILTER_KIND_MASK) {
+	case MDBXJNI_FILTER_PREFIX:
+		return len >= len1 && memcmp(field, operand1, len1) == 0;
+	case MDBXJNI_FILTER_RANGE:
+		/* the field is truncated to the length of each bound, so a bound is also matched by its extensions */
+		if (len1 && cmp_slice(field, len < len1 ? len : len1, operand1, len1) < 0)
+			return 0;
+		return !len2 || cmp_slice(field, len < len2 ? len : len2, operand2, len2) <= 0;
+	case MDBXJNI_FILTER_INT:
+		return len1 == sizeof(uint64_t) && match_int(field, len, flags, operand1);
+	default:
+		return 0;
+	}
+}
+
+static int filter_predicate(void *context, MDBX_val *key, MDBX_val *value, void *arg) {
+	const filter_ctx *ctx = (const filter_ctx *)context;
+	size_t pos = 0;
+	(void)arg;
+
+	if (ctx->bound != NULL) {
+		if (ctx->bound_flags & MDBXJNI_BOUND_PREFIX) {
+			if (key->iov_len < ctx->bound->iov_len || memcmp(key->iov_base, ctx->bound->iov_base,
+					ctx->bound->iov_len) != 0)
+				return MDBX_NOTFOUND;
+		}
+		else {
+			int cmp = mdbx_cmp(mdbx_cursor_txn(ctx->cursor), mdbx_cursor_dbi(ctx->cursor), key, ctx->bound);
+			if (ctx->bound_flags & MDBXJNI_BOUND_DESCENDING)
+				cmp = -cmp;
+			if (cmp > 0 || (cmp == 0 && !(ctx->bound_flags & MDBXJNI_BOUND_INCLUSIVE)))
+				return MDBX_NOTFOUND;
+		}
+	}
+
+	while (pos + CLAUSE_HEADER_SIZE <= ctx->size) {
+		uint32_t header[4];
+		const uint8_t *operand1;
+		int match;
+
+		memcpy(header, ctx->program + pos, CLAUSE_HEADER_SIZE);
+		operand1 = ctx->program + pos + CLAUSE_HEADER_SIZE;
+		match = match_clause(header[0], header[1], operand1, header[2], operand1 + header[2], header[3], key,
+				value);
+		if (header[0] & MDBXJNI_FILTER_NOT)
+			match = !match;
+		if (!match)
+			return MDBX_RESULT_FALSE;
+		pos += CLAUSE_HEADER_SIZE + ((header[2] + header[3] + 3) & ~(size_t)3);
+	}
+	return MDBX_RESULT_TRUE;
+}
+
+/*
+ * Move the cursor with start_op, then with turn_op until reaching a record that matches the filter, all
+ * within mdbx_cursor_scan. The matching record is returned in key and data, and MDBX_NOTFOUND once past the
+ * bound or the end of the data.
+ */
+int mdbxjni_cursor_filter(MDBX_cursor *cursor, MDBX_val *key, MDBX_val *data, MDBX_cursor_op start_op,
+		MDBX_cursor_op turn_op, const uint8_t *program, size_t size, const MDBX_val *bound, int bound_flags) {
+	filter_ctx ctx = { cursor, bound, bound_flags, program, size };
+	int rc;
+
+	switch (start_op) {
+	case MDBX_FIRST:
+	case MDBX_LAST:
+	case MDBX_GET_CURRENT:
+		break;
+	default:
+		/* mdbx_cursor_scan only starts from these, so move first and scan from there */
+		rc = mdbx_cursor_get(cursor, key, data, start_op);
+		if (rc != MDBX_SUCCESS)
+			return rc;
+		start_op = MDBX_GET_CURRENT;
+	}
+
+	rc = mdbx_cursor_scan(cursor, filter_predicate, &ctx, start_op, turn_op, NULL);
+	if (rc == MDBX_RESULT_TRUE)
+		return mdbx_cursor_get(cursor, key, data, MDBX_GET_CURRENT);
+	if (rc == MDBX_RESULT_FALSE)
+		return MDBX_NOTFOUND;
+	return rc;
+}
@@ -61,16 +61,65 @@
 extern "C" {
 #endif
 
+/* value length flagging a key that was not found by mdbxjni_get_multiple */
+#define MDBXJNI_NOTFOUND_LEN ((size_t)-1)
+
+/* flags of mdbxjni_cursor_get_bounded */
+#define MDBXJNI_BOUND_INCLUSIVE 1
+#define MDBXJNI_BOUND_DESCENDING 2
+#define MDBXJNI_BOUND_PREFIX 4
+
+/* clause flags of the filters of mdbxjni_cursor_filter */
+#define MDBXJNI_FILTER_KIND_MASK 0xFF
+#define MDBXJNI_FILTER_PREFIX 1
+#define MDBXJNI_FILTER_RANGE 2
+#define MDBXJNI_FILTER_INT 3
+#define MDBXJNI_FILTER_ON_VALUE 0x100
+#define MDBXJNI_FILTER_NOT 0x200
+#define MDBXJNI_FILTER_BIG_ENDIAN 0x400
+#define MDBXJNI_FILTER_SIGNED 0x800
+#define MDBXJNI_FILTER_WIDTH_SHIFT 12
+#define MDBXJNI_FILTER_WIDTH_MASK 0xF000
+#define MDBXJNI_FILTER_CMP_MASK 0x70000
+#define MDBXJNI_FILTER_EQ 0x00000
+#define MDBXJNI_FILTER_NE 0x10000
+#define MDBXJNI_FILTER_LT 0x20000
+#define MDBXJNI_FILTER_LE 0x30000
+#define MDBXJNI_FILTER_GT 0x40000
+#define MDBXJNI_FILTER_GE 0x50000
+
 void buffer_copy(const void *source, size_t source_pos, void *dest, size_t dest_pos, size_t length);
 
 void map_val(MDBX_val *in, MDBX_val *out);
 
+int mdbxjni_get_multiple(MDBX_cursor *cursor, const MDBX_val *keys, MDBX_val *values, size_t count);
+
+int mdbxjni_cursor_get_bounded(MDBX_cursor *cursor, MDBX_val *key, MDBX_val *data, MDBX_cursor_op op,
+		const MDBX_val *bound, int flags);
+
+int mdbxjni_cursor_filter(MDBX_cursor *cursor, MDBX_val *key, MDBX_val *data, MDBX_cursor_op start_op,
+		MDBX_cursor_op turn_op, const uint8_t *program, size_t size, const MDBX_val *bound, int bound_flags);
+
 char* map_printf(char *buf, int size, const char * format, void *args);
 
 int ptr_2_cursor(MDBX_cursor * ptr, MDBX_cursor * cursor, size_t bytes);
 
 int get_mdbx_build_info(void *arg, size_t bytes);
 
+int mdbxjni_cmp_lexicographic(const MDBX_val *a, const MDBX_val *b);
+
+int mdbxjni_cmp_reverse(const MDBX_val *a, const MDBX_val *b);
+
+int mdbxjni_cmp_unsigned_long(const MDBX_val *a, const MDBX_val *b);
+
+int mdbxjni_cmp_signed_long(const MDBX_val *a, const MDBX_val *b);
+
+int mdbxjni_cmp_uuid(const MDBX_val *a, const MDBX_val *b);
+
+int mdbxjni_cmp_composite(const MDBX_val *a, const MDBX_val *b);
+
+int mdbxjni_cmp_composite_desc(const MDBX_val *a, const MDBX_val *b);
+
 #ifdef __cplusplus
 } /* extern "C" */
 #endif
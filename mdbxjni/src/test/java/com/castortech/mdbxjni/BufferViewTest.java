@@ -0,0 +1,155 @@
+package com.castortech.mdbxjni;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+@SuppressWarnings("nls")
+public class BufferViewTest {
+	static {
+		Setup.setLibraryPaths();
+	}
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	Env env;
+	Database db;
+
+	@Before
+	public void before() throws IOException {
+		String path = tmp.newFolder().getCanonicalPath();
+		EnvConfig config = new EnvConfig();
+		config.setDebugBufferViews(true);
+		env = new Env();
+		env.open(path, config);
+		db = env.openDatabase();
+		for (long i = 0; i < 10; i++) {
+			db.put(Bytes.fromLong(i), new byte[4096]);
+		}
+	}
+
+	@After
+	public void after() {
+		db.close();
+		env.close();
+	}
+
+	@Test
+	public void testGetBuffer() {
+		try (Transaction tx = env.createReadTransaction()) {
+			ByteBuffer value = db.getBuffer(tx, Bytes.fromLong(3));
+			assertTrue(value.isReadOnly());
+			assertTrue(value.isDirect());
+			assertEquals(4096, value.remaining());
+			assertNull(db.getBuffer(tx, Bytes.fromLong(99)));
+		}
+	}
+
+	@Test
+	public void testGetAll() {
+		db.put(Bytes.fromLong(20), Bytes.fromLong(200));
+		db.put(Bytes.fromLong(21), new byte[0]);
+		List<byte[]> keys = Arrays.asList(Bytes.fromLong(20), Bytes.fromLong(99), Bytes.fromLong(3),
+				Bytes.fromLong(21), Bytes.fromLong(20));
+
+		List<byte[]> values = db.getAll(keys);
+		assertEquals(5, values.size());
+		assertArrayEquals(Bytes.fromLong(200), values.get(0));
+		assertNull(values.get(1));
+		assertEquals(4096, values.get(2).length);
+		assertEquals(0, values.get(3).length);
+		assertArrayEquals(Bytes.fromLong(200), values.get(4));
+
+		try (Transaction tx = env.createReadTransaction()) {
+			List<ByteBuffer> buffers = db.getAllBuffers(tx, keys);
+			assertEquals(200, buffers.get(0).getLong(0));
+			assertNull(buffers.get(1));
+			assertEquals(4096, buffers.get(2).remaining());
+			assertEquals(200, buffers.get(4).getLong(0));
+		}
+	}
+
+	@Test
+	public void testCursorGetBuffer() {
+		try (Transaction tx = env.createReadTransaction(); Cursor cursor = db.openCursor(tx)) {
+			BufferEntry entry = cursor.getBuffer(CursorOp.SET, Bytes.fromLong(5));
+			assertArrayEquals(Bytes.fromLong(5), entry.toEntry().getKey());
+			assertEquals(4096, entry.getValue().remaining());
+
+			entry = cursor.getBuffer(CursorOp.NEXT);
+			assertArrayEquals(Bytes.fromLong(6), entry.toEntry().getKey());
+		}
+	}
+
+	@Test
+	public void testScanBatches() {
+		try (Transaction tx = env.createReadTransaction();
+				Cursor cursor = db.openCursor(tx);
+				CursorBatch batch = new CursorBatch(3)) {
+			assertEquals(3, cursor.getBatch(batch, CursorOp.FIRST));
+			assertArrayEquals(Bytes.fromLong(2), batch.getEntry(2).getKey());
+
+			long expected = 0;
+			Iterator<BufferEntry> it = cursor.scanBatches(batch);
+			while (it.hasNext()) {
+				BufferEntry entry = it.next();
+				assertEquals(expected++, entry.getKey().getLong(0));
+				assertEquals(4096, entry.getValue().remaining());
+			}
+			assertEquals(10, expected);
+		}
+	}
+
+	@Test
+	public void testDirectBufferPutGetDelete() {
+		ByteBuffer key = ByteBuffer.allocateDirect(8);
+		ByteBuffer value = ByteBuffer.allocateDirect(16);
+		key.putLong(0, 42L);
+		value.putLong(8, 7L);
+
+		try (Transaction tx = env.createWriteTransaction()) {
+			assertNull(db.put(tx, key, value, 0));
+			assertEquals(0, key.position());
+
+			ByteBuffer found = db.get(tx, key);
+			assertEquals(16, found.remaining());
+			assertEquals(7L, found.getLong(8));
+
+			ByteBuffer existing = db.put(tx, key, ByteBuffer.allocateDirect(4), Constants.NOOVERWRITE);
+			assertEquals(16, existing.remaining());
+
+			assertTrue(db.delete(tx, key, null));
+			assertNull(db.get(tx, key));
+			tx.commit();
+		}
+	}
+
+	@Test
+	public void testViewsInvalidatedOnAbort() {
+		Transaction tx = env.createReadTransaction();
+		ByteBuffer value = db.getBuffer(tx, Bytes.fromLong(1));
+		tx.abort();
+		try {
+			value.get(0);
+			fail("view should have been invalidated");
+		}
+		catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package com.castortech.mdbxjni;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+@SuppressWarnings("nls")
+public class BulkLoaderTest {
+	static {
+		Setup.setLibraryPaths();
+	}
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	Env env;
+
+	@Before
+	public void before() throws IOException {
+		String path = tmp.newFolder().getCanonicalPath();
+		env = new Env();
+		env.setMaxDbs(10);
+		env.open(path);
+	}
+
+	@After
+	public void after() {
+		env.close();
+	}
+
+	private static BulkLoaderConfig smallConfig() {
+		BulkLoaderConfig config = new BulkLoaderConfig();
+		config.setBufferSize(4096);
+		config.setCommitSize(100);
+		return config;
+	}
+
+	@Test
+	public void testLoadUnsorted() {
+		List<Long> ids = new ArrayList<>();
+		for (long i = 0; i < 2000; i++) {
+			ids.add(i);
+		}
+		Collections.shuffle(ids, new Random(42));
+
+		try (Database db = env.openDatabase("primary")) {
+			db.put(Bytes.fromLong(500), Bytes.fromLong(-1));
+
+			try (BulkLoader loader = new BulkLoader(db, smallConfig())) {
+				for (long id : ids) {
+					loader.add(Bytes.fromLong(id), Bytes.fromLong(id * 2));
+				}
+				loader.add(Bytes.fromLong(7), Bytes.fromLong(77));
+				loader.flush();
+				assertEquals(2001, loader.getCount());
+				assertTrue(loader.getAppendedCount() > 0);
+			}
+
+			assertEquals(2000, db.stat().ms_entries);
+			assertArrayEquals(Bytes.fromLong(1000), db.get(Bytes.fromLong(500)));
+			assertArrayEquals(Bytes.fromLong(77), db.get(Bytes.fromLong(7)));
+			assertArrayEquals(Bytes.fromLong(3998), db.get(Bytes.fromLong(1999)));
+		}
+	}
+
+	@Test
+	public void testLoadInDatabaseOrder() {
+		DatabaseConfig config = new DatabaseConfig();
+		config.setCreate(true);
+		config.setReverseKey(true);
+
+		try (Database db = env.openDatabase("reverse", config)) {
+			try (BulkLoader loader = new BulkLoader(db, smallConfig())) {
+				for (long i = 0; i < 1000; i++) {
+					loader.add(Bytes.fromLong(i * 7919 % 1000), Bytes.fromLong(i));
+				}
+				loader.flush();
+				assertEquals(1000, loader.getCount());
+				assertEquals(1000, loader.getAppendedCount());
+			}
+
+			assertEquals(1000, db.stat().ms_entries);
+		}
+	}
+
+	@Test
+	public void testSecondaries() {
+		SecondaryDbConfig secConfig = new SecondaryDbConfig();
+		secConfig.setCreate(true);
+		secConfig.setDupSort(true);
+		secConfig.setKeyCreator((secondary, key, data) -> new byte[] { (byte)(Bytes.getLong(data, 0) % 10) });
+
+		try (Database db = env.openDatabase("primary");
+				SecondaryDatabase secDb = env.openSecondaryDatabase(db, "secondary", secConfig)) {
+			List<Entry> entries = new ArrayList<>();
+			for (long i = 999; i >= 0; i--) {
+				entries.add(new Entry(Bytes.fromLong(i), Bytes.fromLong(i)));
+			}
+			assertEquals(1000, db.putAll(entries, smallConfig()));
+
+			assertEquals(1000, db.stat().ms_entries);
+			assertEquals(1000, secDb.stat().ms_entries);
+			try (Transaction tx = env.createReadTransaction(); Cursor cursor = secDb.openCursor(tx)) {
+				assertNotNull(cursor.get(CursorOp.SET, new byte[] { 3 }));
+				assertEquals(100, cursor.count());
+			}
+		}
+	}
+
+	@Test
+	public void testCoveringSecondary() {
+		SecondaryDbConfig secConfig = new SecondaryDbConfig();
+		secConfig.setCreate(true);
+		secConfig.setDupSort(true);
+		secConfig.setKeyCreator((secondary, key, data) -> new byte[] { (byte)(Bytes.getLong(data, 0) % 10) });
+		secConfig.setProjection((secondary, key, data) -> data);
+
+		try (Database db = env.openDatabase("primary");
+				SecondaryDatabase secDb = env.openSecondaryDatabase(db, "covering", secConfig)) {
+			try (BulkLoader loader = new BulkLoader(db, smallConfig())) {
+				for (long i = 0; i < 1000; i++) {
+					loader.add(Bytes.fromLong(i), Bytes.fromLong(i * 3));
+				}
+			}
+
+			assertEquals(1000, secDb.stat().ms_entries);
+			try (Transaction tx = env.createReadTransaction(); SecondaryCursor cursor = secDb.openSecondaryCursor(tx)) {
+				DatabaseEntry key = new DatabaseEntry(new byte[] { 3 });
+				DatabaseEntry pKey = new DatabaseEntry();
+				DatabaseEntry projection = new DatabaseEntry();
+				assertEquals(OperationStatus.SUCCESS, cursor.getCovered(CursorOp.SET, key, pKey, projection));
+				assertArrayEquals(Bytes.fromLong(1), pKey.getData());
+				assertArrayEquals(Bytes.fromLong(3), projection.getData());
+				assertEquals(100, cursor.count());
+			}
+		}
+	}
+}
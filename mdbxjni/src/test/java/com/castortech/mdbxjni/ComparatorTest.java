@@ -0,0 +1,161 @@
+package com.castortech.mdbxjni;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+@SuppressWarnings("nls")
+public class ComparatorTest {
+	static {
+		Setup.setLibraryPaths();
+	}
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	Env env;
+
+	@Before
+	public void before() throws IOException {
+		String path = tmp.newFolder().getCanonicalPath();
+		env = new Env();
+		env.setMaxDbs(10);
+		env.open(path);
+	}
+
+	@After
+	public void after() {
+		env.close();
+	}
+
+	private List<byte[]> keys(Database db) {
+		List<byte[]> rc = new ArrayList<>();
+		try (Transaction tx = env.createReadTransaction(); Cursor cursor = db.openCursor(tx)) {
+			for (Entry entry = cursor.get(CursorOp.FIRST); entry != null; entry = cursor.get(CursorOp.NEXT)) {
+				rc.add(entry.getKey());
+			}
+		}
+		return rc;
+	}
+
+	private Database open(String name, NativeComparator comparator) {
+		DatabaseConfig config = new DatabaseConfig(Constants.CREATE);
+		config.setKeyNativeComparator(comparator);
+		return env.openDatabase(name, config);
+	}
+
+	@Test
+	public void testSignedLong() {
+		Database db = open("signed", NativeComparator.SIGNED_LONG);
+		for (long i = -5; i <= 5; i++) {
+			db.put(Bytes.fromLong(i), new byte[] { 1 });
+		}
+
+		long expected = -5;
+		for (byte[] key : keys(db)) {
+			assertEquals(expected++, Bytes.getLong(key, 0));
+		}
+		assertEquals(6, expected);
+		db.close();
+	}
+
+	@Test
+	public void testUuid() {
+		Database db = open("uuid", NativeComparator.UUID);
+		List<UUID> uuids = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			UUID uuid = UUID.randomUUID();
+			uuids.add(uuid);
+			db.put(UuidAdapter.getBytesFromUUID(uuid), new byte[] { 1 });
+		}
+		uuids.sort(null);
+
+		List<byte[]> keys = keys(db);
+		for (int i = 0; i < uuids.size(); i++) {
+			assertEquals(uuids.get(i), UuidAdapter.getUUIDFromBytes(keys.get(i)));
+		}
+		db.close();
+	}
+
+	@Test
+	public void testBufferComparator() {
+		DatabaseConfig config = new DatabaseConfig(Constants.CREATE);
+		config.setKeyBufferComparator((a, b) -> Long.compare(b.getLong(0), a.getLong(0)));
+		Database db = env.openDatabase("buffer", config);
+		for (long i = 0; i < 100; i++) {
+			db.put(Bytes.fromLong(i), new byte[] { 1 });
+		}
+
+		long expected = 99;
+		for (byte[] key : keys(db)) {
+			assertEquals(expected--, Bytes.getLong(key, 0));
+		}
+		assertEquals(-1, expected);
+		db.close();
+	}
+
+	@Test
+	public void testComparatorsPerDatabase() throws Exception {
+		Database asc = env.openDatabase("asc", Constants.CREATE, (a, b) -> Long.compare(Bytes.getLong(a, 0),
+				Bytes.getLong(b, 0)), null);
+		Database desc = env.openDatabase("desc", Constants.CREATE, (a, b) -> Long.compare(Bytes.getLong(b, 0),
+				Bytes.getLong(a, 0)), null);
+
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final int base = t * 100;
+			threads[t] = new Thread(() -> {
+				for (long i = base; i < base + 100; i++) {
+					asc.put(Bytes.fromLong(i), new byte[] { 1 });
+					desc.put(Bytes.fromLong(i), new byte[] { 1 });
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		List<byte[]> ascKeys = keys(asc);
+		List<byte[]> descKeys = keys(desc);
+		assertEquals(400, ascKeys.size());
+		assertEquals(400, descKeys.size());
+		for (int i = 0; i < 400; i++) {
+			assertEquals(i, Bytes.getLong(ascKeys.get(i), 0));
+			assertEquals(399 - i, Bytes.getLong(descKeys.get(i), 0));
+		}
+		asc.close();
+		desc.close();
+	}
+
+	@Test
+	public void testCompositeMatchesJava() {
+		Database db = open("composite", NativeComparator.COMPOSITE_DESC);
+		List<byte[]> expected = new ArrayList<>();
+		for (String a : new String[] { "b", "a", "ab" }) {
+			for (String b : new String[] { "x", "yz", "y" }) {
+				byte[] key = NativeComparator.segment(Constants.bytes(a), Constants.bytes(b));
+				expected.add(key);
+				db.put(key, new byte[] { 1 });
+			}
+		}
+		expected.sort(NativeComparator.COMPOSITE_DESC.comparator());
+
+		List<byte[]> keys = keys(db);
+		assertEquals(expected.size(), keys.size());
+		for (int i = 0; i < keys.size(); i++) {
+			assertTrue(NativeComparator.LEXICOGRAPHIC.compare(expected.get(i), keys.get(i)) == 0);
+		}
+		db.close();
+	}
+}
@@ -0,0 +1,132 @@
+package com.castortech.mdbxjni;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.castortech.mdbxjni.pool.ThreadLocalCursorPool;
+
+@SuppressWarnings("nls")
+public class CursorPoolTest {
+	static {
+		Setup.setLibraryPaths();
+	}
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	Env env;
+	Database db;
+
+	@Before
+	public void before() throws IOException {
+		String path = tmp.newFolder().getCanonicalPath();
+		EnvConfig config = new EnvConfig();
+		config.setUsePooledCursors(true);
+		env = new Env();
+		env.setMaxDbs(10);
+		env.open(path, config);
+		db = env.openDatabase("primary");
+		for (long i = 0; i < 10; i++) {
+			db.put(Bytes.fromLong(i), Bytes.fromLong(i * 2));
+		}
+	}
+
+	@After
+	public void after() {
+		db.close();
+		env.close();
+	}
+
+	@Test
+	public void testReuse() {
+		ThreadLocalCursorPool pool = (ThreadLocalCursorPool)env.getCursorPool();
+		for (int i = 0; i < 100; i++) {
+			try (Transaction tx = env.createReadTransaction(); Cursor cursor = db.openCursor(tx)) {
+				Entry entry = cursor.get(CursorOp.FIRST);
+				assertArrayEquals(Bytes.fromLong(0), entry.getKey());
+			}
+		}
+		assertEquals(1, pool.getMisses());
+		assertEquals(99, pool.getHits());
+	}
+
+	@Test
+	public void testReuseAcrossWrites() {
+		for (long i = 10; i < 20; i++) {
+			try (Transaction tx = env.createWriteTransaction()) {
+				try (Cursor cursor = db.openCursor(tx)) {
+					cursor.put(Bytes.fromLong(i), Bytes.fromLong(i * 2), 0);
+				}
+				tx.commit();
+			}
+		}
+		assertEquals(20, db.stat().ms_entries);
+		assertTrue(((ThreadLocalCursorPool)env.getCursorPool()).getHits() > 0);
+	}
+
+	@Test
+	public void testReuseWithinTransaction() {
+		ThreadLocalCursorPool pool = (ThreadLocalCursorPool)env.getCursorPool();
+		try (Transaction tx = env.createWriteTransaction()) {
+			for (long i = 10; i < 20; i++) {
+				try (Cursor cursor = db.openCursor(tx)) {
+					assertNull(cursor.get(CursorOp.SET, Bytes.fromLong(i)));
+					cursor.put(Bytes.fromLong(i), Bytes.fromLong(i * 2), 0);
+				}
+			}
+			tx.commit();
+		}
+		assertEquals(1, pool.getMisses());
+
+		try (Transaction tx = env.createReadTransaction();
+				Cursor cursor1 = db.openCursor(tx);
+				Cursor cursor2 = db.openCursor(tx)) {
+			assertArrayEquals(Bytes.fromLong(0), cursor1.get(CursorOp.FIRST).getKey());
+			assertArrayEquals(Bytes.fromLong(19), cursor2.get(CursorOp.LAST).getKey());
+		}
+		assertEquals(2, pool.getMisses());
+		assertEquals(10, pool.getHits());
+	}
+
+	@Test
+	public void testThreads() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			Future<?>[] futures = new Future<?>[4];
+			for (int t = 0; t < futures.length; t++) {
+				futures[t] = executor.submit(() -> {
+					for (int i = 0; i < 50; i++) {
+						try (Transaction tx = env.createReadTransaction(); Cursor cursor = db.openCursor(tx)) {
+							assertArrayEquals(Bytes.fromLong(18), cursor.get(CursorOp.LAST).getValue());
+						}
+					}
+				});
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		}
+		finally {
+			executor.shutdown();
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+		}
+
+		ThreadLocalCursorPool pool = (ThreadLocalCursorPool)env.getCursorPool();
+		assertTrue(pool.getMisses() <= 4);
+		assertEquals(200, pool.getHits() + pool.getMisses());
+	}
+}
@@ -24,8 +24,12 @@ import org.junit.rules.TemporaryFolder;
 
 import com.castortech.mdbxjni.JNIIntern.MDBX_cursor;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import static org.hamcrest.core.IsNot.not;
@@ -221,6 +225,42 @@ public class EnvTest {
 		}
 	}
 
+	@Test
+	public void testWarmup() throws Exception {
+		String path = tmp.newFolder().getCanonicalPath();
+		try (Env env = new Env()) {
+			env.open(path);
+			try (Database db = env.openDatabase()) {
+				db.put(new byte[]{1}, new byte[]{1});
+			}
+			assertTrue(env.warmup(WARMUP_DEFAULT, null));
+			assertTrue(env.warmup(WARMUP_FORCE | WARMUP_OOMSAFE, Duration.ofSeconds(10)));
+		}
+
+		AtomicLong bytes = new AtomicLong();
+		AtomicBoolean ended = new AtomicBoolean();
+		EnvConfig config = new EnvConfig();
+		config.setWarmupOnOpen(true);
+		config.setWarmupFlags(WARMUP_FORCE);
+		config.setWarmupListener(new WarmupListener() {
+			@Override
+			public void warmupStarted(Env env, long size) {
+				bytes.set(size);
+			}
+
+			@Override
+			public void warmupEnded(Env env, boolean completed, Duration elapsed) {
+				ended.set(completed);
+			}
+		});
+		try (Env env = new Env()) {
+			env.open(path, config);
+			assertTrue(env.getWarmup().get(10, TimeUnit.SECONDS));
+			assertTrue(bytes.get() > 0);
+			assertTrue(ended.get());
+		}
+	}
+
 	@Test
 	public void testMaxKeySize() throws Exception {
 		String path = tmp.newFolder().getCanonicalPath();
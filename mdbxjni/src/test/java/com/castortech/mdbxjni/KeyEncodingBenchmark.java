@@ -0,0 +1,129 @@
+package com.castortech.mdbxjni;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the byte[] API, which allocates and copies a native buffer for every key, with the direct
+ * {@link ByteBuffer} overloads that hand the caller's memory straight to MDBX.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeyEncodingBenchmark {
+	static {
+		com.castortech.mdbxjni.Setup.setLibraryPaths(com.castortech.mdbxjni.Setup.RELEASE_MODE);
+	}
+
+	@Param({ "10000" })
+	int entries;
+
+	@Param({ "4096" })
+	int valueSize;
+
+	private Env env;
+	private Database db;
+	private Transaction tx;
+	private int next;
+
+	private byte[][] keys;
+	private ByteBuffer keyBuffer;
+	private ByteBuffer valueBuffer;
+	private byte[] value;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		String path = Files.createTempDirectory("mdbxjni-bench").toString(); //$NON-NLS-1$
+		env = new Env();
+		env.setMapSize(1L << 30);
+		env.open(path);
+		db = env.openDatabase();
+
+		value = new byte[valueSize];
+		valueBuffer = ByteBuffer.allocateDirect(valueSize);
+		keyBuffer = ByteBuffer.allocateDirect(Long.BYTES);
+		keys = new byte[entries][];
+		for (int i = 0; i < entries; i++) {
+			keys[i] = Bytes.fromLong(i);
+			db.put(keys[i], value);
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void beginTransaction() {
+		tx = env.createWriteTransaction();
+	}
+
+	@TearDown(Level.Iteration)
+	public void endTransaction() {
+		tx.abort();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		db.close();
+		env.close();
+	}
+
+	private int nextIndex() {
+		next = (next + 1) % entries;
+		return next;
+	}
+
+	private ByteBuffer nextKeyBuffer() {
+		keyBuffer.clear();
+		keyBuffer.put(keys[nextIndex()]).flip();
+		return keyBuffer;
+	}
+
+	@Benchmark
+	public void getBytes(Blackhole bh) {
+		bh.consume(db.get(tx, keys[nextIndex()]));
+	}
+
+	@Benchmark
+	public void getBuffer(Blackhole bh) {
+		bh.consume(db.get(tx, nextKeyBuffer()));
+	}
+
+	@Benchmark
+	public void putBytes(Blackhole bh) {
+		bh.consume(db.put(tx, keys[nextIndex()], value));
+	}
+
+	@Benchmark
+	public void putBuffer(Blackhole bh) {
+		bh.consume(db.put(tx, nextKeyBuffer(), valueBuffer, 0));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(KeyEncodingBenchmark.class.getSimpleName())
+				.build();
+		new Runner(opt).run();
+	}
+}
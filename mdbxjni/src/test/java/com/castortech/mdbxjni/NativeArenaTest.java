@@ -0,0 +1,59 @@
+package com.castortech.mdbxjni;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class NativeArenaTest {
+	static {
+		Setup.setLibraryPaths();
+	}
+
+	@Test
+	public void testReuse() {
+		NativeArena arena = NativeArena.get();
+		long mark = arena.mark();
+		Value first = arena.slice(new byte[] { 1, 2, 3 });
+		Value second = arena.slice(new byte[] { 4 });
+		assertEquals(first.iov_base + 8, second.iov_base);
+		assertArrayEquals(new byte[] { 1, 2, 3 }, first.toByteArray());
+		arena.release(mark);
+
+		assertEquals(first.iov_base, arena.slice(new byte[] { 5 }).iov_base);
+		arena.release(mark);
+		assertNull(arena.slice((byte[])null));
+	}
+
+	@Test
+	public void testNested() {
+		NativeArena arena = NativeArena.get();
+		long outer = arena.mark();
+		Value kept = arena.slice(new byte[] { 1 });
+
+		long inner = arena.mark();
+		for (int i = 0; i < 100; i++) {
+			arena.slice(new byte[10_000]);  // spans several chunks
+		}
+		Value large = arena.slice(new byte[3 << 20]);
+		assertEquals(3 << 20, large.iov_len);
+		arena.release(inner);
+
+		assertArrayEquals(new byte[] { 1 }, kept.toByteArray());
+		assertEquals(kept.iov_base + 8, arena.slice(new byte[] { 2 }).iov_base);
+		arena.release(outer);
+	}
+
+	@Test
+	public void testLargeFirst() {
+		NativeArena arena = NativeArena.get();
+		long mark = arena.mark();
+		Value large = arena.slice(new byte[200_000]);
+		Value small = arena.slice(new byte[] { 1 });
+		assertNotEquals(large.iov_base, small.iov_base);
+		assertArrayEquals(new byte[] { 1 }, small.toByteArray());
+		arena.release(mark);
+	}
+}
@@ -0,0 +1,192 @@
+package com.castortech.mdbxjni;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.castortech.mdbxjni.ScanFilter.Comparison;
+
+@SuppressWarnings("nls")
+public class RangeTest {
+	static {
+		Setup.setLibraryPaths();
+	}
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	Env env;
+	Database db;
+
+	@Before
+	public void before() throws IOException {
+		String path = tmp.newFolder().getCanonicalPath();
+		env = new Env();
+		env.setMaxDbs(10);
+		env.open(path);
+		db = env.openDatabase("primary");
+		for (long i = 0; i < 100; i += 2) {
+			db.put(Bytes.fromLong(i), Bytes.fromLong(i * 10));
+		}
+	}
+
+	@After
+	public void after() {
+		db.close();
+		env.close();
+	}
+
+	private static List<Long> keys(Stream<BufferEntry> stream) {
+		try (Stream<BufferEntry> entries = stream) {
+			return entries.map(entry -> Bytes.getLong(entry.toEntry().getKey())).collect(Collectors.toList());
+		}
+	}
+
+	@Test
+	public void testAscending() {
+		try (Transaction tx = env.createReadTransaction()) {
+			assertEquals(Arrays.asList(10L, 12L, 14L), keys(db.range(tx, Bytes.fromLong(10), true, Bytes.fromLong(16),
+					false, false)));
+			assertEquals(Arrays.asList(12L, 14L, 16L), keys(db.range(tx, Bytes.fromLong(10), false, Bytes.fromLong(16),
+					true, false)));
+			assertEquals(Arrays.asList(12L, 14L), keys(db.range(tx, KeyRange.closedOpen(Bytes.fromLong(11),
+					Bytes.fromLong(15)))));
+			assertEquals(50, keys(db.range(tx, KeyRange.all())).size());
+			assertEquals(Arrays.asList(96L, 98L), keys(db.range(tx, KeyRange.atLeast(Bytes.fromLong(95)))));
+			assertEquals(0, keys(db.range(tx, KeyRange.atLeast(Bytes.fromLong(99)))).size());
+		}
+	}
+
+	@Test
+	public void testDescending() {
+		try (Transaction tx = env.createReadTransaction()) {
+			assertEquals(Arrays.asList(16L, 14L, 12L), keys(db.range(tx, Bytes.fromLong(10), false, Bytes.fromLong(16),
+					true, true)));
+			assertEquals(Arrays.asList(14L, 12L, 10L), keys(db.range(tx, Bytes.fromLong(10), true, Bytes.fromLong(16),
+					false, true)));
+			assertEquals(Arrays.asList(14L, 12L), keys(db.range(tx, KeyRange.closed(Bytes.fromLong(11),
+					Bytes.fromLong(15)).reverse())));
+			assertEquals(Arrays.asList(2L, 0L), keys(db.range(tx, KeyRange.lessThan(Bytes.fromLong(4)).reverse())));
+			assertEquals(98L, keys(db.range(tx, KeyRange.all().reverse())).get(0).longValue());
+		}
+	}
+
+	@Test
+	public void testPrefix() {
+		try (Database names = env.openDatabase("names")) {
+			for (String name : new String[] { "ab", "abc", "abd", "ac", "b", "a" }) {
+				names.put(name.getBytes(), name.getBytes());
+			}
+			try (Transaction tx = env.createReadTransaction()) {
+				assertEquals(Arrays.asList("ab", "abc", "abd"), names(names.prefix(tx, "ab".getBytes())));
+				assertEquals(Arrays.asList("abd", "abc", "ab"),
+						names(names.range(tx, KeyRange.prefix("ab".getBytes()).reverse())));
+				assertEquals(0, names(names.prefix(tx, "c".getBytes())).size());
+			}
+		}
+	}
+
+	@Test
+	public void testFilter() {
+		try (Transaction tx = env.createReadTransaction()) {
+			// values are big-endian longs, i * 10
+			ScanFilter filter = new ScanFilter().valueInt(0, 8, ByteOrder.BIG_ENDIAN, true, Comparison.GE, 300);
+			assertEquals(35, keys(db.range(tx, KeyRange.all(), filter)).size());
+
+			filter = new ScanFilter().valueInt(4, 4, ByteOrder.BIG_ENDIAN, false, Comparison.LT, 100).not();
+			assertEquals(Arrays.asList(98L, 96L, 94L, 92L, 90L, 88L, 86L, 84L, 82L, 80L, 78L, 76L, 74L, 72L, 70L, 68L,
+					66L, 64L, 62L, 60L, 58L, 56L, 54L, 52L, 50L, 48L, 46L, 44L, 42L, 40L, 38L, 36L, 34L, 32L, 30L, 28L, 26L,
+					24L, 22L, 20L, 18L, 16L, 14L, 12L, 10L), keys(db.range(tx, KeyRange.all().reverse(), filter)));
+
+			filter = new ScanFilter().keyBetween(7, new byte[] { 20 }, new byte[] { 30 })
+					.matching((key, value) -> key.getLong(0) % 4 == 0);
+			assertEquals(Arrays.asList(20L, 24L, 28L), keys(db.range(tx, KeyRange.atLeast(Bytes.fromLong(1)), filter)));
+
+			filter = new ScanFilter().valueBytesAt(6, new byte[] { 1 });
+			assertEquals(Arrays.asList(26L, 28L, 30L), keys(db.range(tx, KeyRange.closed(Bytes.fromLong(20),
+					Bytes.fromLong(30)), filter)));
+		}
+	}
+
+	@Test
+	public void testEstimate() {
+		try (Transaction tx = env.createReadTransaction()) {
+			// a single leaf page, estimates are exact
+			assertEquals(50, db.estimateRange(tx, null, null));
+			assertEquals(5, db.estimateRange(tx, Bytes.fromLong(10), Bytes.fromLong(20)));
+			assertEquals(-5, db.estimateRange(tx, Bytes.fromLong(20), Bytes.fromLong(10)));
+			assertEquals(5, db.estimateRange(tx, KeyRange.closedOpen(Bytes.fromLong(10), Bytes.fromLong(20)).reverse()));
+			assertEquals(3, db.estimateRange(tx, KeyRange.atLeast(Bytes.fromLong(94))));
+
+			try (Cursor first = db.openCursor(tx); Cursor last = db.openCursor(tx)) {
+				first.get(CursorOp.FIRST);
+				last.get(CursorOp.LAST);
+				assertEquals(49, first.estimateDistance(last));
+				assertEquals(-49, last.estimateDistance(first));
+				assertEquals(49, first.estimateMove(CursorOp.LAST));
+				assertEquals(10, first.estimateMove(CursorOp.SET_RANGE, Bytes.fromLong(20)));
+			}
+		}
+		assertEquals(50, db.estimateRange(null, null));
+	}
+
+	@Test
+	public void testParallelScan() {
+		for (long i = 1000; i < 20000; i++) {
+			db.put(Bytes.fromLong(i), Bytes.fromLong(i * 10));
+		}
+		List<List<Long>> partitions = db.parallelScan(4, RangeTest::keys);
+		long count = 0;
+		long previous = -1;
+		for (List<Long> partition : partitions) {
+			for (long key : partition) {
+				assertTrue(key > previous);
+				previous = key;
+			}
+			count += partition.size();
+		}
+		assertEquals(19050, count);
+
+		ScanFilter filter = new ScanFilter().keyInt(0, 8, ByteOrder.BIG_ENDIAN, false, Comparison.LT, 50);
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			List<Long> counts = db.parallelScan(3, filter, executor, Stream::count);
+			assertEquals(25L, counts.stream().mapToLong(Long::longValue).sum());
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testEarlyClose() {
+		try (Transaction tx = env.createReadTransaction()) {
+			try (Stream<BufferEntry> entries = db.range(tx, KeyRange.all())) {
+				assertEquals(0L, Bytes.getLong(entries.findFirst().get().toEntry().getKey()));
+			}
+			try (RangeSpliterator spliterator = db.rangeSpliterator(tx, KeyRange.atLeast(Bytes.fromLong(50)))) {
+				spliterator.tryAdvance(entry -> assertEquals(50L, Bytes.getLong(entry.toEntry().getKey())));
+			}
+		}
+	}
+
+	private static List<String> names(Stream<BufferEntry> stream) {
+		try (Stream<BufferEntry> entries = stream) {
+			return entries.map(entry -> new String(entry.toEntry().getKey())).collect(Collectors.toList());
+		}
+	}
+}
@@ -27,6 +27,7 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.core.IsNot.not;
@@ -71,6 +72,267 @@ public class SecondaryDbTest {
 		}
 	}
 
+	@Test
+	public void testSecondaryKeyChanges() throws Exception {
+		String path = tmp.newFolder().getCanonicalPath();
+		try (Env env = new Env()) {
+			env.setMaxDbs(3);
+			env.open(path);
+
+			SecondaryDbConfig byColor = new SecondaryDbConfig();
+			byColor.setCreate(true);
+			byColor.setDupSort(true);
+			SecondaryDbConfig byInitial = new SecondaryDbConfig();
+			byInitial.setCreate(true);
+			byInitial.setDupSort(true);
+			byInitial.setKeyCreator((secondary, key, data) -> Arrays.copyOf(data, 1));
+
+			try (Database db = env.openDatabase("primary");
+					SecondaryDatabase colorDb = env.openSecondaryDatabase(db, "color", byColor);
+					SecondaryDatabase initialDb = env.openSecondaryDatabase(db, "initial", byInitial)) {
+				assertNull(db.put(bytes("Tampa"), bytes("green")));
+
+				//only the color changes
+				assertNull(db.put(bytes("Tampa"), bytes("gray")));
+				assertNull(colorDb.get(bytes("green")));
+				assertArrayEquals(bytes("Tampa"), colorDb.get(bytes("gray")));
+				assertArrayEquals(bytes("Tampa"), initialDb.get(bytes("g")));
+
+				//both change, through replace
+				try (Transaction tx = env.createWriteTransaction()) {
+					assertArrayEquals(bytes("gray"), db.replace(tx, bytes("Tampa"), bytes("red")));
+					assertNull(db.replace(tx, bytes("London"), bytes("gold")));
+					tx.commit();
+				}
+				assertNull(colorDb.get(bytes("gray")));
+				assertArrayEquals(bytes("Tampa"), initialDb.get(bytes("r")));
+				assertArrayEquals(bytes("London"), initialDb.get(bytes("g")));
+
+				//nothing changes, through a cursor
+				try (Transaction tx = env.createWriteTransaction(); Cursor cursor = db.openCursor(tx)) {
+					cursor.put(bytes("Tampa"), bytes("red"), 0);
+					tx.commit();
+				}
+				assertEquals(2, colorDb.stat().ms_entries);
+				assertEquals(2, initialDb.stat().ms_entries);
+				assertArrayEquals(bytes("Tampa"), colorDb.get(bytes("red")));
+			}
+		}
+	}
+
+	@Test
+	public void testBufferKeyCreator() throws Exception {
+		String path = tmp.newFolder().getCanonicalPath();
+		try (Env env = new Env()) {
+			env.setMaxDbs(3);
+			env.open(path);
+
+			SecondaryDbConfig byInitial = new SecondaryDbConfig();
+			byInitial.setCreate(true);
+			byInitial.setDupSort(true);
+			//first byte of the value, no key for empty values
+			byInitial.setKeyCreator((BufferSecondaryKeyCreator)(secondary, key, data, out) -> {
+				if (!data.hasRemaining()) {
+					return false;
+				}
+				out.put(data.get(0));
+				return true;
+			});
+			SecondaryDbConfig byColor = new SecondaryDbConfig();
+			byColor.setCreate(true);
+			byColor.setDupSort(true);
+
+			try (Database db = env.openDatabase("primary");
+					SecondaryDatabase initialDb = env.openSecondaryDatabase(db, "initial", byInitial);
+					SecondaryDatabase colorDb = env.openSecondaryDatabase(db, "color", byColor)) {
+				assertNull(db.put(bytes("Tampa"), bytes("green")));
+				assertNull(db.put(bytes("London"), bytes("red")));
+				assertNull(db.put(bytes("Paris"), new byte[0]));
+				assertArrayEquals(bytes("Tampa"), initialDb.get(bytes("g")));
+				assertArrayEquals(bytes("London"), initialDb.get(bytes("r")));
+				assertEquals(2, initialDb.stat().ms_entries);
+				assertEquals(3, colorDb.stat().ms_entries);
+
+				assertNull(db.put(bytes("Paris"), bytes("gray")));
+				assertEquals(3, initialDb.stat().ms_entries);
+
+				try (Transaction tx = env.createWriteTransaction(); Cursor cursor = db.openCursor(tx)) {
+					assertNotNull(cursor.get(CursorOp.SET, bytes("Tampa")));
+					cursor.delete();
+					tx.commit();
+				}
+				assertArrayEquals(bytes("Paris"), initialDb.get(bytes("g")));
+				assertNull(colorDb.get(bytes("green")));
+
+				assertTrue(db.delete(bytes("London")));
+				assertNull(initialDb.get(bytes("r")));
+				assertEquals(1, initialDb.stat().ms_entries);
+
+				//array callers get the key through the adapter
+				assertArrayEquals(bytes("b"), byInitial.getKeyCreator().createSecondaryKey(initialDb, bytes("x"),
+						bytes("blue")));
+			}
+		}
+	}
+
+	@Test
+	public void testRebuild() throws Exception {
+		String path = tmp.newFolder().getCanonicalPath();
+		try (Env env = new Env()) {
+			env.setMaxDbs(2);
+			env.open(path);
+
+			try (Database db = env.openDatabase("primary")) {
+				for (long i = 0; i < 20000; i++) {
+					db.put(Bytes.fromLong(i), Bytes.fromLong(i % 100));
+				}
+
+				SecondaryDbConfig byValue = new SecondaryDbConfig();
+				byValue.setCreate(true);
+				byValue.setDupSort(true);
+				try (SecondaryDatabase secDb = env.openSecondaryDatabase(db, "byValue", byValue)) {
+					assertEquals(0, secDb.stat().ms_entries);
+					assertEquals(20000, secDb.rebuild(4));
+					assertEquals(20000, secDb.stat().ms_entries);
+
+					try (Transaction tx = env.createReadTransaction(); Cursor cursor = secDb.openCursor(tx)) {
+						assertNotNull(cursor.get(CursorOp.SET, Bytes.fromLong(42)));
+						assertEquals(200, cursor.count());
+						long previous = -1;
+						for (Entry entry = cursor.get(CursorOp.FIRST); entry != null; entry = cursor.get(CursorOp.NEXT)) {
+							long pKey = Bytes.getLong(entry.getValue());
+							assertEquals(pKey % 100, Bytes.getLong(entry.getKey()));
+							if (pKey >= 100) {
+								assertEquals(pKey - 100, previous);
+							}
+							previous = pKey;
+						}
+					}
+
+					//maintained afterwards, and a rebuild starts over
+					db.put(Bytes.fromLong(20000), Bytes.fromLong(7));
+					assertEquals(20001, secDb.stat().ms_entries);
+					assertEquals(20001, secDb.rebuild(2));
+					assertEquals(20001, secDb.stat().ms_entries);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testPrimaryRange() throws Exception {
+		String path = tmp.newFolder().getCanonicalPath();
+		try (Env env = new Env()) {
+			env.setMaxDbs(2);
+			env.open(path);
+
+			SecondaryDbConfig byValue = new SecondaryDbConfig();
+			byValue.setCreate(true);
+			byValue.setDupSort(true);
+			try (Database db = env.openDatabase("primary");
+					SecondaryDatabase secDb = env.openSecondaryDatabase(db, "byValue", byValue)) {
+				for (long i = 0; i < 3000; i++) {
+					db.put(Bytes.fromLong(i), Bytes.fromLong(i % 10));
+				}
+
+				KeyRange range = KeyRange.closed(Bytes.fromLong(2), Bytes.fromLong(3));
+				try (Transaction tx = env.createReadTransaction();
+						Stream<SecondaryBufferEntry> entries = secDb.primaryRange(tx, range, 64)) {
+					long[] count = new long[1];
+					long[] previous = { 2, -1 };
+					entries.forEach(entry -> {
+						long secKey = Bytes.getLong(BufferEntry.toBytes(entry.getSecondaryKey()));
+						Entry primary = entry.toEntry();
+						long pKey = Bytes.getLong(primary.getKey());
+						assertEquals(secKey, Bytes.getLong(primary.getValue()));
+						assertEquals(secKey, pKey % 10);
+						if (secKey == previous[0]) {
+							assertTrue(pKey > previous[1]);
+						}
+						else {
+							assertEquals(previous[0] + 1, secKey);
+						}
+						previous[0] = secKey;
+						previous[1] = pKey;
+						count[0]++;
+					});
+					assertEquals(600, count[0]);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testCoveringSecondary() throws Exception {
+		String path = tmp.newFolder().getCanonicalPath();
+		try (Env env = new Env()) {
+			env.setMaxDbs(2);
+			env.open(path);
+
+			SecondaryDbConfig byInitial = new SecondaryDbConfig();
+			byInitial.setCreate(true);
+			byInitial.setDupSort(true);
+			byInitial.setKeyCreator((BufferSecondaryKeyCreator)(secondary, key, data, out) -> {
+				out.put(data.get(0));
+				return true;
+			});
+			byInitial.setProjection((secondary, key, data) -> data);
+
+			try (Database db = env.openDatabase("primary");
+					SecondaryDatabase secDb = env.openSecondaryDatabase(db, "initial", byInitial)) {
+				assertTrue(secDb.isCovering());
+				assertNull(db.put(bytes("Tampa"), bytes("green")));
+				assertNull(db.put(bytes("London"), bytes("red")));
+				assertNull(db.put(bytes("Lyon"), bytes("gold")));
+
+				//same secondary key, new projection
+				assertNull(db.put(bytes("Tampa"), bytes("gray")));
+				assertEquals(3, secDb.stat().ms_entries);
+
+				try (Transaction tx = env.createReadTransaction(); SecondaryCursor cursor = secDb.openSecondaryCursor(tx)) {
+					DatabaseEntry key = new DatabaseEntry(bytes("g"));
+					DatabaseEntry pKey = new DatabaseEntry();
+					DatabaseEntry projection = new DatabaseEntry();
+					assertEquals(OperationStatus.SUCCESS, cursor.getCovered(CursorOp.SET, key, pKey, projection));
+					assertEquals("Lyon", string(pKey.getData()));
+					assertEquals("gold", string(projection.getData()));
+					assertEquals(OperationStatus.SUCCESS, cursor.getCovered(CursorOp.NEXT_DUP, key, pKey, projection));
+					assertEquals("Tampa", string(pKey.getData()));
+					assertEquals("gray", string(projection.getData()));
+					assertEquals(OperationStatus.NOTFOUND, cursor.getCovered(CursorOp.NEXT_DUP, key, pKey, projection));
+
+					DatabaseEntry value = new DatabaseEntry();
+					key.setData(bytes("r"));
+					assertEquals(OperationStatus.SUCCESS, cursor.get(CursorOp.SET, key, pKey, value));
+					assertEquals("London", string(pKey.getData()));
+					assertEquals("red", string(value.getData()));
+
+					assertArrayEquals(bytes("Tampa"), secDb.get(tx, bytes("g"), bytes("Tampa")));
+					assertNull(secDb.get(tx, bytes("g"), bytes("London")));
+
+					//exact matches on the stored primary key
+					key.setData(bytes("g"));
+					pKey.setData(bytes("Tampa"));
+					assertEquals(OperationStatus.SUCCESS, cursor.get(CursorOp.GET_BOTH, key, pKey, value));
+					assertEquals("Tampa", string(pKey.getData()));
+					assertEquals("gray", string(value.getData()));
+					pKey.setData(bytes("Lyo"));
+					assertEquals(OperationStatus.NOTFOUND, cursor.get(CursorOp.GET_BOTH, key, pKey, value));
+					pKey.setData(bytes("Lyon"));
+					assertEquals(OperationStatus.SUCCESS, cursor.getCovered(CursorOp.GET_BOTH, key, pKey, projection));
+					assertEquals("gold", string(projection.getData()));
+				}
+				assertArrayEquals(bytes("London"), secDb.getPrimaryKey(secDb.get(bytes("r"))));
+				assertArrayEquals(bytes("red"), secDb.getProjection(secDb.get(bytes("r"))));
+
+				assertTrue(db.delete(bytes("Tampa")));
+				assertEquals(2, secDb.stat().ms_entries);
+				assertEquals(2, secDb.rebuild(2));
+				assertArrayEquals(bytes("Lyon"), secDb.getPrimaryKey(secDb.get(bytes("g"))));
+			}
+		}
+	}
+
 	@Test
 	public void testBackup() throws Exception {
 		String path = tmp.newFolder().getCanonicalPath();
@@ -7,6 +7,7 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
+import java.time.Duration;
 import static org.junit.Assert.*;
 
 public class TransactionTest {
@@ -100,4 +101,147 @@ public class TransactionTest {
 			assertArrayEquals(data, db.get(tx, data));
 		}
 	}
+
+	@Test
+	public void testCachedReadTransaction() {
+		Transaction first;
+		try (Transaction tx = env.acquireReadTransaction()) {
+			first = tx;
+			assertTrue(tx.isReadOnly());
+			assertNull(db.get(tx, data));
+			try (Transaction nested = env.acquireReadTransaction()) {
+				assertSame(tx, nested);
+			}
+		}
+
+		db.put(data, data);
+		try (Transaction tx = env.acquireReadTransaction()) {
+			assertSame(first, tx);
+			assertArrayEquals(data, db.get(tx, data));
+		}
+		assertArrayEquals(data, db.get(data));
+	}
+
+	@Test
+	public void testReleaseCachedReadTransaction() {
+		Transaction first;
+		try (Transaction tx = env.acquireReadTransaction()) {
+			first = tx;
+			try {
+				env.releaseCachedReadTransaction();
+				fail("should fail since the transaction is in use");
+			}
+			catch (MDBXException e) {
+				// ok
+			}
+		}
+
+		env.releaseCachedReadTransaction();
+		try (Transaction tx = env.acquireReadTransaction()) {
+			assertNotSame(first, tx);
+			assertNull(db.get(tx, data));
+		}
+	}
+
+	@Test
+	public void testCachedReadTransactionLimits() throws Exception {
+		String path = tmp.newFolder().getCanonicalPath();
+		EnvConfig config = new EnvConfig();
+		config.setNoStickyThreads(true);
+		config.setReadTransactionIdleTimeout(Duration.ofMillis(20));
+		try (Env env2 = new Env()) {
+			env2.open(path, config);
+			Database db2 = env2.openDatabase();
+			db2.put(data, data);
+
+			// freed from the background once idle
+			Transaction first;
+			try (Transaction tx = env2.acquireReadTransaction()) {
+				first = tx;
+			}
+			Thread.sleep(200);
+			try (Transaction tx = env2.acquireReadTransaction()) {
+				assertNotSame(first, tx);
+				assertArrayEquals(data, db2.get(tx, data));
+			}
+			db2.close();
+		}
+
+		path = tmp.newFolder().getCanonicalPath();
+		config = new EnvConfig();
+		config.setMaxCachedReadTransactions(0);
+		try (Env env2 = new Env()) {
+			env2.open(path, config);
+			Database db2 = env2.openDatabase();
+
+			// beyond the cap, the transaction is only shared by nested acquisitions
+			Transaction first;
+			try (Transaction tx = env2.acquireReadTransaction()) {
+				first = tx;
+				try (Transaction nested = env2.acquireReadTransaction()) {
+					assertSame(tx, nested);
+				}
+			}
+			try (Transaction tx = env2.acquireReadTransaction()) {
+				assertNotSame(first, tx);
+				assertNull(db2.get(tx, data));
+			}
+			db2.close();
+		}
+	}
+
+	@Test
+	public void testCachedReadTransactionMaxAge() throws Exception {
+		String path = tmp.newFolder().getCanonicalPath();
+		EnvConfig config = new EnvConfig();
+		config.setReadTransactionMaxAge(Duration.ofHours(1));
+		try (Env env2 = new Env()) {
+			env2.open(path, config);
+			Database db2 = env2.openDatabase();
+			assertNull(db2.get(data));
+
+			// a commit from another thread is not seen by the snapshot kept by this one
+			Thread writer = new Thread(() -> db2.put(data, data));
+			writer.start();
+			writer.join();
+			assertNull(db2.get(data));
+
+			// beginning a transaction on this thread releases the snapshot
+			db2.put(new byte[] { 4 }, data);
+			assertArrayEquals(data, db2.get(data));
+			db2.close();
+		}
+	}
+
+	@Test
+	public void testParkUnpark() {
+		db.put(data, data);
+		try (Transaction tx = env.createReadTransaction()) {
+			tx.park(false);
+			assertTrue(tx.isParked());
+			assertTrue(tx.unpark(true));
+			assertFalse(tx.isParked());
+			assertArrayEquals(data, db.get(tx, data));
+
+			tx.park(true);
+			assertArrayEquals(data, db.get(tx, data));
+		}
+	}
+
+	@Test
+	public void testParkIdleCachedReadTransaction() throws Exception {
+		String path = tmp.newFolder().getCanonicalPath();
+		EnvConfig config = new EnvConfig();
+		config.setReadTransactionMaxAge(Duration.ofHours(1));
+		config.setParkIdleReadersAfter(Duration.ZERO);
+		try (Env env2 = new Env()) {
+			env2.open(path, config);
+			Database db2 = env2.openDatabase();
+			db2.put(data, data);
+			assertArrayEquals(data, db2.get(data));
+			// the idle snapshot is parked between reads and transparently unparked
+			assertArrayEquals(data, db2.get(data));
+			db2.close();
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,194 @@
+package com.castortech.mdbxjni;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.castortech.mdbxjni.pool.TransactionCursorPool;
+
+@SuppressWarnings("nls")
+public class VirtualThreadModeTest {
+	static {
+		Setup.setLibraryPaths();
+	}
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	Env env;
+	Database db;
+
+	@Before
+	public void before() throws IOException {
+		String path = tmp.newFolder().getCanonicalPath();
+		EnvConfig config = new EnvConfig();
+		config.setVirtualThreads(true);
+		config.setUsePooledCursors(true);
+		config.setWriteBatchLatency(Duration.ofMillis(20));
+		env = new Env();
+		env.setMaxDbs(10);
+		env.open(path, config);
+		db = env.openDatabase("primary");
+	}
+
+	@After
+	public void after() {
+		db.close();
+		env.close();
+	}
+
+	@Test
+	public void testWrite() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		try {
+			List<CompletableFuture<Long>> futures = new ArrayList<>();
+			for (long i = 0; i < 200; i++) {
+				long key = i;
+				futures.add(CompletableFuture.supplyAsync(() -> env.write(tx -> {
+					db.put(tx, Bytes.fromLong(key), Bytes.fromLong(key * 2));
+					return key;
+				}), executor));
+			}
+			for (CompletableFuture<Long> future : futures) {
+				future.get(30, TimeUnit.SECONDS);
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+
+		try (Transaction tx = env.createReadTransaction()) {
+			assertEquals(200, db.stat(tx).ms_entries);
+			assertArrayEquals(Bytes.fromLong(198), db.get(tx, Bytes.fromLong(99)));
+		}
+		assertEquals(Long.valueOf(7), env.writeAsync(tx -> 7L).get());
+	}
+
+	@Test
+	public void testWriteFailure() {
+		try {
+			env.write(tx -> {
+				db.put(tx, Bytes.fromLong(1), Bytes.fromLong(1));
+				throw new IllegalArgumentException("rejected");
+			});
+			fail();
+		}
+		catch (IllegalArgumentException e) {
+			assertEquals("rejected", e.getMessage());
+		}
+		assertNull(db.get(Bytes.fromLong(1)));
+
+		try {
+			env.write(tx -> env.write(nested -> null));
+			fail();
+		}
+		catch (IllegalStateException e) {
+			// expected, writes can't be nested
+		}
+	}
+
+	@Test
+	public void testGroupCommit() throws Exception {
+		long before;
+		try (Transaction tx = env.createReadTransaction()) {
+			before = env.info(tx).getRecentTxnId();
+		}
+
+		List<CompletableFuture<?>> futures = new ArrayList<>();
+		for (long i = 0; i < 100; i++) {
+			futures.add(db.putAsync(Bytes.fromLong(i), Bytes.fromLong(i), 0));
+		}
+		CompletableFuture<Object> failed = env.writeAsync(tx -> {
+			db.put(tx, Bytes.fromLong(1000), Bytes.fromLong(1000));
+			throw new IllegalStateException("rejected");
+		});
+		futures.add(db.deleteAsync(Bytes.fromLong(0), null));
+		for (CompletableFuture<?> future : futures) {
+			future.get(30, TimeUnit.SECONDS);
+		}
+		assertTrue(failed.isCompletedExceptionally());
+
+		try (Transaction tx = env.createReadTransaction()) {
+			assertTrue(env.info(tx).getRecentTxnId() - before < 50);
+			assertEquals(99, db.stat(tx).ms_entries);
+			assertNull(db.get(tx, Bytes.fromLong(1000)));
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void testCloseWhileQueuing() throws Exception {
+		db.close();
+		CompletableFuture<Boolean> queued = env.writeAsync(tx -> {
+			try {
+				Thread.sleep(200);  // so that close is waiting for this write
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			try {
+				env.writeAsync(nested -> null);
+				return false;
+			}
+			catch (IllegalStateException e) {
+				return true;  // expected, rather than blocking the close
+			}
+		});
+		env.close();
+		assertTrue(queued.get());
+	}
+
+	@Test
+	public void testTransactionAcrossThreads() throws Exception {
+		db.put(Bytes.fromLong(1), Bytes.fromLong(2));
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try (Transaction tx = env.createReadTransaction()) {
+			byte[] value = executor.submit(() -> db.get(tx, Bytes.fromLong(1))).get();
+			assertArrayEquals(Bytes.fromLong(2), value);
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testCursorsShared() throws Exception {
+		db.put(Bytes.fromLong(1), Bytes.fromLong(2));
+		TransactionCursorPool pool = (TransactionCursorPool)env.getCursorPool();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<CompletableFuture<Void>> futures = new ArrayList<>();
+			for (int i = 0; i < 100; i++) {
+				futures.add(CompletableFuture.runAsync(() -> {
+					try (Transaction tx = env.createReadTransaction(); Cursor cursor = db.openCursor(tx)) {
+						assertArrayEquals(Bytes.fromLong(1), cursor.get(CursorOp.FIRST).getKey());
+					}
+				}, executor));
+			}
+			for (CompletableFuture<Void> future : futures) {
+				future.get(30, TimeUnit.SECONDS);
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+		assertTrue(pool.getMisses() <= 4);
+		assertTrue(pool.getHits() >= 96);
+	}
+}